@@ -0,0 +1,217 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.CaseInsensitiveMap;
+import com.cedarsoftware.util.FlatCaseInsensitiveMap;
+import com.cedarsoftware.util.FrozenMap;
+import com.cedarsoftware.util.StringUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CaseInsensitiveMap against a plain HashMap holding the same String keys.  Lookups on the
+ * CaseInsensitiveMap are performed with keys in a different case than they were stored with,
+ * which is the situation it exists for (HTTP headers, JSON field names).  wrappedKeyGet is a HashMap of
+ * CaseInsensitiveString keys looked up with a new CaseInsensitiveString, the way CaseInsensitiveMap.get() used to
+ * work; run with -prof gc to see that caseInsensitiveGet and caseInsensitiveContainsKey no longer allocate.
+ * hashCodeIgnoreCase, equalsIgnoreCase and jdkEqualsIgnoreCase measure the case folding on its own.  The flat*
+ * benchmarks run the same operations on FlatCaseInsensitiveMap (flat arrays instead of LinkedHashMap nodes).
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseInsensitiveMapBenchmark
+{
+    @Param({"8", "64", "1024"})
+    public int size;
+
+    private Map<String, Object> ciMap;
+    private Map<String, Object> flatMap;
+    private FrozenMap<String, Object> frozenMap;
+    private Map<String, Object> hashMap;
+    private Map<Object, Object> wrappedMap;
+    private String[] keys;
+    private String[] upperKeys;
+    private int idx;
+
+    @Setup
+    public void setup()
+    {
+        keys = new String[size];
+        upperKeys = new String[size];
+        ciMap = new CaseInsensitiveMap<>();
+        flatMap = new FlatCaseInsensitiveMap<>();
+        hashMap = new HashMap<>();
+        wrappedMap = new HashMap<>();
+        for (int i = 0; i < size; i++)
+        {
+            keys[i] = "Content-Header-" + i;
+            upperKeys[i] = keys[i].toUpperCase();
+            ciMap.put(keys[i], i);
+            flatMap.put(keys[i], i);
+            hashMap.put(keys[i], i);
+            wrappedMap.put(new CaseInsensitiveMap.CaseInsensitiveString(keys[i]), i);
+        }
+        frozenMap = ((CaseInsensitiveMap<String, Object>) ciMap).freeze();
+    }
+
+    private int nextIndex()
+    {
+        int i = idx++;
+        if (idx >= size)
+        {
+            idx = 0;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public Object caseInsensitiveGet()
+    {
+        return ciMap.get(upperKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object frozenGet()
+    {
+        return frozenMap.get(upperKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Map<String, Object> freeze()
+    {
+        return ((CaseInsensitiveMap<String, Object>) ciMap).freeze();
+    }
+
+    @Benchmark
+    public Object flatGet()
+    {
+        return flatMap.get(upperKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean flatContainsKey()
+    {
+        return flatMap.containsKey(upperKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Map<String, Object> flatPopulate()
+    {
+        Map<String, Object> map = new FlatCaseInsensitiveMap<>();
+        for (int i = 0; i < keys.length; i++)
+        {
+            map.put(keys[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Object wrappedKeyGet()
+    {
+        return wrappedMap.get(new CaseInsensitiveMap.CaseInsensitiveString(upperKeys[nextIndex()]));
+    }
+
+    @Benchmark
+    public int hashCodeIgnoreCase()
+    {
+        return StringUtilities.hashCodeIgnoreCase(upperKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean equalsIgnoreCase()
+    {
+        int i = nextIndex();
+        return StringUtilities.equalsIgnoreCase(keys[i], upperKeys[i]);
+    }
+
+    @Benchmark
+    public boolean jdkEqualsIgnoreCase()
+    {
+        int i = nextIndex();
+        return keys[i].equalsIgnoreCase(upperKeys[i]);
+    }
+
+    @Benchmark
+    public Object hashMapGet()
+    {
+        return hashMap.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean caseInsensitiveContainsKey()
+    {
+        return ciMap.containsKey(upperKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean hashMapContainsKey()
+    {
+        return hashMap.containsKey(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Map<String, Object> caseInsensitivePopulate()
+    {
+        Map<String, Object> map = new CaseInsensitiveMap<>();
+        for (int i = 0; i < keys.length; i++)
+        {
+            map.put(keys[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<String, Object> hashMapPopulate()
+    {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keys.length; i++)
+        {
+            map.put(keys[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<String, Object> caseInsensitiveCopy()
+    {
+        return new CaseInsensitiveMap<>(ciMap);
+    }
+
+    @Benchmark
+    public Map<String, Object> caseInsensitiveCopyFromHashMap()
+    {   // every key wrapped (interned CaseInsensitiveStrings are reused)
+        return new CaseInsensitiveMap<>(hashMap);
+    }
+}
@@ -0,0 +1,140 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.CaseInsensitiveMap;
+import com.cedarsoftware.util.CaseInsensitiveSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk operations between CaseInsensitiveSets (permission sets), where both sides already hold CaseInsensitiveStrings,
+ * against the same operations with a plain List argument, where every element is wrapped and hashed again.  The
+ * "granted" side has 'size' names, the "required" side has 1/4 of them (in a different case) plus as many others.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseInsensitiveSetBenchmark
+{
+    @Param({"100", "10000"})
+    public int size;
+
+    private Set<String> granted;
+    private Set<String> required;
+    private Set<String> requiredKeys;
+    private List<String> requiredList;
+    private Set<String> subset;
+    private List<String> subsetList;
+
+    @Setup
+    public void setup()
+    {
+        granted = new CaseInsensitiveSet<>();
+        required = new CaseInsensitiveSet<>();
+        Map<String, Object> requiredMap = new CaseInsensitiveMap<>();
+        subset = new CaseInsensitiveSet<>();
+        for (int i = 0; i < size; i++)
+        {
+            granted.add("app.resource" + i + ".read");
+        }
+        for (int i = 0; i < size / 4; i++)
+        {
+            String name = "APP.RESOURCE" + (i * 4) + ".READ";
+            required.add(name);
+            required.add("app.other" + i + ".write");
+            subset.add(name);
+        }
+        for (String name : required)
+        {
+            requiredMap.put(name, Boolean.TRUE);
+        }
+        requiredKeys = requiredMap.keySet();
+        requiredList = new ArrayList<>(required);
+        subsetList = new ArrayList<>(subset);
+    }
+
+    @Benchmark
+    public Set<String> intersect()
+    {
+        Set<String> result = new CaseInsensitiveSet<>(granted);
+        result.retainAll(required);
+        return result;
+    }
+
+    @Benchmark
+    public Set<String> intersectKeySet()
+    {
+        Set<String> result = new CaseInsensitiveSet<>(granted);
+        result.retainAll(requiredKeys);
+        return result;
+    }
+
+    @Benchmark
+    public Set<String> intersectList()
+    {
+        Set<String> result = new CaseInsensitiveSet<>(granted);
+        result.retainAll(requiredList);
+        return result;
+    }
+
+    @Benchmark
+    public Set<String> removeAll()
+    {
+        Set<String> result = new CaseInsensitiveSet<>(granted);
+        result.removeAll(required);
+        return result;
+    }
+
+    @Benchmark
+    public Set<String> removeAllList()
+    {
+        Set<String> result = new CaseInsensitiveSet<>(granted);
+        result.removeAll(requiredList);
+        return result;
+    }
+
+    @Benchmark
+    public boolean containsAll()
+    {
+        return granted.containsAll(subset);
+    }
+
+    @Benchmark
+    public boolean containsAllList()
+    {
+        return granted.containsAll(subsetList);
+    }
+}
@@ -0,0 +1,127 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.CompactLongMap;
+import com.cedarsoftware.util.CompactMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures get / populate on CompactLongMap (primitive long keys) against CompactMap&lt;Long, V&gt; and
+ * HashMap&lt;Long, V&gt;, using spread-out long keys like those from UniqueIdGenerator.  Run with
+ * -prof gc to compare the allocation of populate.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactLongMapBenchmark
+{
+    @Param({"1", "10", "80", "1000"})
+    public int size;
+
+    @Param({"CompactLongMap", "CompactMap", "HashMap"})
+    public String mapType;
+
+    private Map<Long, Object> map;
+    private CompactLongMap<Object> longMap;
+    private long[] keys;
+    private int idx;
+
+    @Setup
+    public void setup()
+    {
+        keys = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            keys[i] = 637_000_000_000_000_000L + i * 1_000_003L;
+        }
+        map = newMap(mapType);
+        fill(map, keys);
+        longMap = map instanceof CompactLongMap ? (CompactLongMap<Object>) map : null;
+    }
+
+    static Map<Long, Object> newMap(String mapType)
+    {
+        if ("CompactLongMap".equals(mapType))
+        {
+            return new CompactLongMap<>();
+        }
+        else if ("CompactMap".equals(mapType))
+        {
+            return new CompactMap<>();
+        }
+        return new HashMap<>();
+    }
+
+    static void fill(Map<Long, Object> map, long[] keys)
+    {
+        if (map instanceof CompactLongMap)
+        {
+            CompactLongMap<Object> longMap = (CompactLongMap<Object>) map;
+            for (int i = 0; i < keys.length; i++)
+            {
+                longMap.put(keys[i], Boolean.TRUE);
+            }
+            return;
+        }
+        for (int i = 0; i < keys.length; i++)
+        {
+            map.put(keys[i], Boolean.TRUE);
+        }
+    }
+
+    private long nextKey()
+    {
+        long key = keys[idx++];
+        if (idx >= size)
+        {
+            idx = 0;
+        }
+        return key;
+    }
+
+    @Benchmark
+    public Object getHit()
+    {
+        return longMap != null ? longMap.get(nextKey()) : map.get(nextKey());
+    }
+
+    @Benchmark
+    public Map<Long, Object> populate()
+    {
+        Map<Long, Object> fresh = newMap(mapType);
+        fill(fresh, keys);
+        return fresh;
+    }
+}
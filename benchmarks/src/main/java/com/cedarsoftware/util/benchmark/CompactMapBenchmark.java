@@ -0,0 +1,183 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.CompactCIHashMap;
+import com.cedarsoftware.util.CompactLinkedMap;
+import com.cedarsoftware.util.CompactSortedMap;
+import com.cedarsoftware.util.CompactMap;
+import com.cedarsoftware.util.MapCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures get / put / iterate on CompactMap at sizes that exercise each storage tier: 1 (single entry),
+ * 2 through compactSize() (Object[]), and compactSize() + 1 (backing Map).  HashMap is included as the
+ * reference point.  CompactMapHashIndexed is a CompactMap with isHashIndexed() turned on, which compares key
+ * hashes before calling equals() while in the Object[] state.
+ * iterateCursor walks the Map with a reused MapCursor, which allocates nothing per entry.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactMapBenchmark
+{
+    @Param({"1", "2", "10", "40", "80", "81"})
+    public int size;
+
+    @Param({"CompactMap", "CompactMapHashIndexed", "CompactLinkedMap", "CompactSortedMap", "CompactCIHashMap", "HashMap"})
+    public String mapType;
+
+    private Map<String, Object> map;
+    private String[] keys;
+    private String[] missKeys;
+    private int idx;
+    private final MapCursor<String, Object> cursor = new MapCursor<>();
+
+    @Setup
+    public void setup()
+    {
+        keys = new String[size];
+        missKeys = new String[size];
+        for (int i = 0; i < size; i++)
+        {
+            keys[i] = "field" + i;
+            missKeys[i] = "absent" + i;
+        }
+        map = newMap(mapType);
+        fill(map, keys);
+    }
+
+    static Map<String, Object> newMap(String mapType)
+    {
+        if ("CompactMap".equals(mapType))
+        {
+            return new CompactMap<>();
+        }
+        else if ("CompactMapHashIndexed".equals(mapType))
+        {
+            return new CompactMap<String, Object>()
+            {
+                protected boolean isHashIndexed() { return true; }
+            };
+        }
+        else if ("CompactLinkedMap".equals(mapType))
+        {
+            return new CompactLinkedMap<>();
+        }
+        else if ("CompactSortedMap".equals(mapType))
+        {
+            return new CompactSortedMap<>();
+        }
+        else if ("CompactCIHashMap".equals(mapType))
+        {
+            return new CompactCIHashMap<>();
+        }
+        return new HashMap<>();
+    }
+
+    static void fill(Map<String, Object> map, String[] keys)
+    {
+        for (int i = 0; i < keys.length; i++)
+        {
+            map.put(keys[i], i);
+        }
+    }
+
+    private int nextIndex()
+    {
+        int i = idx++;
+        if (idx >= size)
+        {
+            idx = 0;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public Object getHit()
+    {
+        return map.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object getMiss()
+    {
+        return map.get(missKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean containsKey()
+    {
+        return map.containsKey(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Map<String, Object> populate()
+    {
+        Map<String, Object> fresh = newMap(mapType);
+        fill(fresh, keys);
+        return fresh;
+    }
+
+    @Benchmark
+    public void iterateEntries(Blackhole bh)
+    {
+        for (Map.Entry<String, Object> entry : map.entrySet())
+        {
+            bh.consume(entry.getKey());
+            bh.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void iterateCursor(Blackhole bh)
+    {
+        MapCursor<String, Object> c = cursor.reset(map);
+        while (c.advance())
+        {
+            bh.consume(c.key());
+            bh.consume(c.value());
+        }
+    }
+
+    @Benchmark
+    public void iterateKeys(Blackhole bh)
+    {
+        for (String key : map.keySet())
+        {
+            bh.consume(key);
+        }
+    }
+}
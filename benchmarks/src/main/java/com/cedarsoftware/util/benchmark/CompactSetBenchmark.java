@@ -0,0 +1,162 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.CompactCIHashSet;
+import com.cedarsoftware.util.CompactLongSet;
+import com.cedarsoftware.util.CompactSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * contains() (hit and miss) and populate for small Sets.  "CompactSet", "HashIndexedCompactSet" (isHashIndexed()
+ * returns true), "CompactCIHashSet" and "HashSet" hold String tags (looked up in upper case by CompactCIHashSet).
+ * "CompactLongSet" and "CompactSetOfLong" hold long ids, primitive and boxed.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactSetBenchmark
+{
+    @Param({"1", "10", "40", "80"})
+    public int size;
+
+    @Param({"CompactSet", "HashIndexedCompactSet", "CompactCIHashSet", "HashSet", "CompactLongSet", "CompactSetOfLong"})
+    public String setType;
+
+    private Set<?> set;
+    private CompactLongSet longSet;
+    private Object[] hits;
+    private Object[] misses;
+    private long[] ids;
+    private int idx;
+
+    @Setup
+    public void setup()
+    {
+        hits = new Object[size];
+        misses = new Object[size];
+        ids = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            ids[i] = 637_000_000_000_000_000L + i * 1_000_003L;
+            if (isIdSet())
+            {
+                hits[i] = ids[i];
+                misses[i] = ids[i] + 1;
+            }
+            else
+            {
+                String tag = "tag-" + (char) ('a' + i % 26) + i;
+                hits[i] = "CompactCIHashSet".equals(setType) ? tag.toUpperCase() : tag;
+                misses[i] = tag + 'x';
+            }
+        }
+        set = populate();
+        longSet = set instanceof CompactLongSet ? (CompactLongSet) set : null;
+    }
+
+    private boolean isIdSet()
+    {
+        return "CompactLongSet".equals(setType) || "CompactSetOfLong".equals(setType);
+    }
+
+    private Set<?> newSet()
+    {
+        if ("CompactSet".equals(setType) || "CompactSetOfLong".equals(setType))
+        {
+            return new CompactSet<>();
+        }
+        else if ("HashIndexedCompactSet".equals(setType))
+        {
+            return new CompactSet<Object>()
+            {
+                protected boolean isHashIndexed() { return true; }
+            };
+        }
+        else if ("CompactCIHashSet".equals(setType))
+        {
+            return new CompactCIHashSet<>();
+        }
+        else if ("CompactLongSet".equals(setType))
+        {
+            return new CompactLongSet();
+        }
+        return new HashSet<>();
+    }
+
+    private int nextIndex()
+    {
+        int i = idx++;
+        if (idx >= size)
+        {
+            idx = 0;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public boolean containsHit()
+    {
+        int i = nextIndex();
+        return longSet != null ? longSet.contains(ids[i]) : set.contains(hits[i]);
+    }
+
+    @Benchmark
+    public boolean containsMiss()
+    {
+        int i = nextIndex();
+        return longSet != null ? longSet.contains(ids[i] + 1) : set.contains(misses[i]);
+    }
+
+    @Benchmark
+    public Set<?> populate()
+    {
+        Set<?> fresh = newSet();
+        if (fresh instanceof CompactLongSet)
+        {
+            CompactLongSet primitive = (CompactLongSet) fresh;
+            for (int i = 0; i < ids.length; i++)
+            {
+                primitive.add(ids[i]);
+            }
+            return fresh;
+        }
+        Set<Object> objects = (Set<Object>) fresh;
+        for (int i = 0; i < hits.length; i++)
+        {
+            objects.add(hits[i]);
+        }
+        return fresh;
+    }
+}
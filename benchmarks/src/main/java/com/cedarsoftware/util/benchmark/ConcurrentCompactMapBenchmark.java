@@ -0,0 +1,120 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.CompactMap;
+import com.cedarsoftware.util.ConcurrentCaseInsensitiveMap;
+import com.cedarsoftware.util.ConcurrentCompactMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-mostly access to one shared Map from many threads: ConcurrentCompactMap against
+ * Collections.synchronizedMap(CompactMap) and ConcurrentHashMap, plus ConcurrentCaseInsensitiveMap.  'read' runs on 8 threads (override with -t);
+ * 'readWrite' runs 7 reader threads alongside 1 writer thread.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentCompactMapBenchmark
+{
+    @Param({"10", "40"})
+    public int size;
+
+    @Param({"ConcurrentCompactMap", "SynchronizedCompactMap", "ConcurrentCaseInsensitiveMap", "ConcurrentHashMap"})
+    public String mapType;
+
+    private Map<String, Object> map;
+    private String[] keys;
+
+    @Setup
+    public void setup()
+    {
+        if ("ConcurrentCompactMap".equals(mapType))
+        {
+            map = new ConcurrentCompactMap<>();
+        }
+        else if ("SynchronizedCompactMap".equals(mapType))
+        {
+            map = Collections.synchronizedMap(new CompactMap<String, Object>());
+        }
+        else if ("ConcurrentCaseInsensitiveMap".equals(mapType))
+        {
+            map = new ConcurrentCaseInsensitiveMap<>();
+        }
+        else
+        {
+            map = new ConcurrentHashMap<>();
+        }
+
+        keys = new String[size];
+        for (int i = 0; i < size; i++)
+        {
+            keys[i] = "config.setting" + i;
+            map.put(keys[i], i);
+        }
+    }
+
+    private String randomKey()
+    {
+        return keys[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object read()
+    {
+        return map.get(randomKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(7)
+    public Object readWrite_get()
+    {
+        return map.get(randomKey());
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public Object readWrite_put()
+    {
+        return map.put(randomKey(), Boolean.TRUE);
+    }
+}
@@ -0,0 +1,112 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.Converter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converter.convert() across its type matrix.  For each target type, every source value that the
+ * Converter accepts for that target is converted once per benchmark invocation.  Pairs that the
+ * Converter rejects are dropped during setup so that exception cost does not pollute the numbers.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark
+{
+    private static final Map<String, Class<?>> TARGETS = new HashMap<>();
+
+    static
+    {
+        TARGETS.put("String", String.class);
+        TARGETS.put("int", int.class);
+        TARGETS.put("Integer", Integer.class);
+        TARGETS.put("long", long.class);
+        TARGETS.put("Long", Long.class);
+        TARGETS.put("double", double.class);
+        TARGETS.put("boolean", boolean.class);
+        TARGETS.put("BigDecimal", BigDecimal.class);
+        TARGETS.put("BigInteger", BigInteger.class);
+        TARGETS.put("Date", Date.class);
+        TARGETS.put("AtomicLong", AtomicLong.class);
+    }
+
+    @Param({"String", "int", "Integer", "long", "Long", "double", "boolean", "BigDecimal", "BigInteger", "Date", "AtomicLong"})
+    public String target;
+
+    private Object[] sources;
+    private Class<?> targetType;
+
+    @Setup
+    public void setup()
+    {
+        targetType = TARGETS.get(target);
+        Object[] candidates = new Object[] {
+                "12345", "123.45", "true", (byte) 12, (short) 1234, 12345, 1234567890123L, 123.45f, 123.45d,
+                true, 'x', new BigDecimal("12345.678"), new BigInteger("1234567890123"), new Date(1234567890123L),
+                new AtomicInteger(12345), new AtomicLong(1234567890123L), new AtomicBoolean(true)
+        };
+        List<Object> accepted = new ArrayList<>();
+        for (Object candidate : candidates)
+        {
+            try
+            {
+                Converter.convert(candidate, targetType);
+                accepted.add(candidate);
+            }
+            catch (Exception ignored)
+            { }
+        }
+        sources = accepted.toArray();
+    }
+
+    @Benchmark
+    public void convert(Blackhole bh)
+    {
+        for (Object source : sources)
+        {
+            bh.consume(Converter.convert(source, targetType));
+        }
+    }
+}
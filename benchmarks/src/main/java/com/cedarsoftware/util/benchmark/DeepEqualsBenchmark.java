@@ -0,0 +1,161 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.DeepEquals;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeepEquals.deepEquals() and DeepEquals.deepHashCode() over two separately allocated, structurally
+ * identical object graphs.  The graph nodes do not override equals(), so every node is compared
+ * field-by-field, and every node carries a List, a Map and an array so that all container paths run.  Each
+ * child points back to its parent, so the visited-pair tracking is exercised as well.  Add -prof gc to compare
+ * allocation.  The parallel* methods pass the DeepEquals.PARALLEL option (fork/join on a shared pool): compare
+ * them to the sequential ones on a multi-core machine.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class DeepEqualsBenchmark
+{
+    @Param({"1000", "100000", "1000000"})
+    public int nodes;
+
+    @Param({"4"})
+    public int fanOut;
+
+    private Node graph1;
+    private Node graph2;
+    private Node graph2Changed;
+    private final Map<String, Object> parallel = new HashMap<>();
+
+    public static class Node
+    {
+        int id;
+        long stamp;
+        double weight;
+        boolean active;
+        String name;
+        int[] scores;
+        List<Node> children = new ArrayList<>();
+        Map<String, Object> attributes = new HashMap<>();
+        Node parent;
+    }
+
+    @Setup
+    public void setup()
+    {
+        graph1 = buildGraph(nodes, fanOut);
+        graph2 = buildGraph(nodes, fanOut);
+        graph2Changed = buildGraph(nodes, fanOut);
+        lastLeaf(graph2Changed).name = "changed";
+        parallel.put(DeepEquals.PARALLEL, true);
+    }
+
+    static Node buildGraph(int count, int fanOut)
+    {
+        List<Node> all = new ArrayList<>(count);
+        Node root = newNode(0);
+        all.add(root);
+        int parentIdx = 0;
+        for (int i = 1; i < count; i++)
+        {
+            Node parent = all.get(parentIdx);
+            if (parent.children.size() >= fanOut)
+            {
+                parent = all.get(++parentIdx);
+            }
+            Node child = newNode(i);
+            child.parent = parent;
+            parent.children.add(child);
+            all.add(child);
+        }
+        return root;
+    }
+
+    private static Node newNode(int i)
+    {
+        Node node = new Node();
+        node.id = i;
+        node.stamp = i * 31L;
+        node.weight = i / 7.0d;
+        node.active = (i & 1) == 0;
+        node.name = "node" + i;
+        node.scores = new int[] { i, i + 1, i + 2 };
+        node.attributes.put("index", i);
+        node.attributes.put("label", "n" + (i % 100));
+        return node;
+    }
+
+    private static Node lastLeaf(Node node)
+    {
+        while (!node.children.isEmpty())
+        {
+            node = node.children.get(node.children.size() - 1);
+        }
+        return node;
+    }
+
+    @Benchmark
+    public boolean deepEqualsMatch()
+    {
+        return DeepEquals.deepEquals(graph1, graph2);
+    }
+
+    @Benchmark
+    public boolean deepEqualsMismatch()
+    {
+        return DeepEquals.deepEquals(graph1, graph2Changed);
+    }
+
+    @Benchmark
+    public boolean parallelDeepEqualsMatch()
+    {
+        return DeepEquals.deepEquals(graph1, graph2, parallel);
+    }
+
+    @Benchmark
+    public boolean parallelDeepEqualsMismatch()
+    {
+        return DeepEquals.deepEquals(graph1, graph2Changed, parallel);
+    }
+
+    @Benchmark
+    public int deepHashCode()
+    {
+        return DeepEquals.deepHashCode(graph1);
+    }
+}
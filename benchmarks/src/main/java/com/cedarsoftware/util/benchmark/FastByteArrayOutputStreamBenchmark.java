@@ -0,0 +1,83 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.FastByteArrayOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FastByteArrayOutputStream against the JDK ByteArrayOutputStream, writing a payload in small chunks
+ * and then fetching the bytes (getBuffer() versus toByteArray()).
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastByteArrayOutputStreamBenchmark
+{
+    @Param({"64", "4096", "65536"})
+    public int payloadSize;
+
+    private byte[] chunk;
+
+    @Setup
+    public void setup()
+    {
+        chunk = new byte[16];
+        for (int i = 0; i < chunk.length; i++)
+        {
+            chunk[i] = (byte) i;
+        }
+    }
+
+    @Benchmark
+    public byte[] fastByteArrayOutputStream()
+    {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        for (int written = 0; written < payloadSize; written += chunk.length)
+        {
+            out.write(chunk, 0, chunk.length);
+        }
+        return out.getBuffer();
+    }
+
+    @Benchmark
+    public byte[] jdkByteArrayOutputStream()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int written = 0; written < payloadSize; written += chunk.length)
+        {
+            out.write(chunk, 0, chunk.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,107 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.CompactCIHashMap;
+import com.cedarsoftware.util.CompactCIHashSet;
+import com.cedarsoftware.util.CompactCILinkedMap;
+import com.cedarsoftware.util.CompactFootprint;
+import com.cedarsoftware.util.CompactLinkedMap;
+import com.cedarsoftware.util.CompactMap;
+import com.cedarsoftware.util.CompactSet;
+import com.cedarsoftware.util.CompactSortedMap;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Prints the estimated bytes, and bytes per entry, of each CompactMap / CompactSet type at sizes that cover every
+ * storage tier, as CSV, so that footprint can be tracked over time alongside the JMH results.  Not a JMH benchmark;
+ * run it directly, with the jar as an agent to measure with Instrumentation instead of the built-in layout model:
+ * <pre>
+ *     java -javaagent:target/benchmarks.jar -cp target/benchmarks.jar com.cedarsoftware.util.benchmark.FootprintReport
+ * </pre>
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class FootprintReport
+{
+    private static final int[] SIZES = {0, 1, 2, 5, 10, 20, 40, 80, 81, 160};
+    private static final String[] TYPES = {"CompactMap", "CompactLinkedMap", "CompactSortedMap", "CompactCIHashMap",
+            "CompactCILinkedMap", "CompactSet", "CompactCIHashSet"};
+
+    public static void main(String[] args)
+    {
+        System.out.println("# " + (CompactFootprint.isInstrumented() ? "measured (Instrumentation)" : "modeled") + ", keys and values not counted");
+        System.out.println("type,size,tier,bytes,bytesPerEntry");
+        for (String type : TYPES)
+        {
+            for (int size : SIZES)
+            {
+                Object compact = newCompact(type, size);
+                long bytes = CompactFootprint.estimateSize(compact);
+                System.out.println(type + ',' + size + ',' + CompactFootprint.getTier(compact) + ',' + bytes + ',' +
+                        (size == 0 ? "" : String.format("%.1f", (double) bytes / size)));
+            }
+        }
+    }
+
+    static Object newCompact(String type, int size)
+    {
+        Map<String, Object> map = null;
+        Collection<String> set = null;
+        if ("CompactMap".equals(type))
+        {
+            map = new CompactMap<>();
+        }
+        else if ("CompactLinkedMap".equals(type))
+        {
+            map = new CompactLinkedMap<>();
+        }
+        else if ("CompactSortedMap".equals(type))
+        {
+            map = new CompactSortedMap<>();
+        }
+        else if ("CompactCIHashMap".equals(type))
+        {
+            map = new CompactCIHashMap<>();
+        }
+        else if ("CompactCILinkedMap".equals(type))
+        {
+            map = new CompactCILinkedMap<>();
+        }
+        else if ("CompactSet".equals(type))
+        {
+            set = new CompactSet<>();
+        }
+        else
+        {
+            set = new CompactCIHashSet<>();
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            if (map != null)
+            {
+                map.put("field" + i, Boolean.TRUE);
+            }
+            else
+            {
+                set.add("field" + i);
+            }
+        }
+        return map != null ? map : set;
+    }
+}
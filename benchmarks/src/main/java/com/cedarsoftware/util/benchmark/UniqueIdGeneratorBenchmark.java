@@ -0,0 +1,246 @@
+package com.cedarsoftware.util.benchmark;
+
+import com.cedarsoftware.util.SnowflakeIdGenerator;
+import com.cedarsoftware.util.UniqueIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UniqueIdGenerator under contention: throughput of getUniqueId19() and getUniqueId() from 1 to 64 threads, against
+ * the earlier implementation (a synchronized block and a LinkedHashMap of the last 10,000 IDs), reproduced in
+ * LockedIdGenerator.  Both are capped at 10,000 (1,000 for getUniqueId()) IDs per millisecond per JVM, so past that
+ * rate the threads wait for the clock: compare the scores at the same thread count.  batch19Of1000Threads4 reserves
+ * 1,000 IDs with one getUniqueIds19() call, loop19Of1000Threads4 gets them one at a time.  shardedId19Threads*
+ * use getShardedUniqueId19(), which touches the shared AtomicLong once per lease of up to 64 IDs.  snowflakeThreads*
+ * use a SnowflakeIdGenerator with the default layout, capped at 4,096 IDs per millisecond.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniqueIdGeneratorBenchmark
+{
+    private static final SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator(1);
+
+    @Benchmark
+    @Threads(1)
+    public long id19Threads1()
+    {
+        return UniqueIdGenerator.getUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long id19Threads4()
+    {
+        return UniqueIdGenerator.getUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long id19Threads16()
+    {
+        return UniqueIdGenerator.getUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long id19Threads64()
+    {
+        return UniqueIdGenerator.getUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long shardedId19Threads1()
+    {
+        return UniqueIdGenerator.getShardedUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long shardedId19Threads4()
+    {
+        return UniqueIdGenerator.getShardedUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long shardedId19Threads16()
+    {
+        return UniqueIdGenerator.getShardedUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long shardedId19Threads64()
+    {
+        return UniqueIdGenerator.getShardedUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long snowflakeThreads1()
+    {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long snowflakeThreads4()
+    {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long snowflakeThreads16()
+    {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long snowflakeThreads64()
+    {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long id18Threads1()
+    {
+        return UniqueIdGenerator.getUniqueId();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long id18Threads64()
+    {
+        return UniqueIdGenerator.getUniqueId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long[] batch19Of1000Threads4()
+    {
+        return UniqueIdGenerator.getUniqueIds19(1000);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long[] loop19Of1000Threads4()
+    {
+        long[] ids = new long[1000];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = UniqueIdGenerator.getUniqueId19();
+        }
+        return ids;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long lockedId19Threads1()
+    {
+        return LockedIdGenerator.getUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long lockedId19Threads4()
+    {
+        return LockedIdGenerator.getUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long lockedId19Threads16()
+    {
+        return LockedIdGenerator.getUniqueId19();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long lockedId19Threads64()
+    {
+        return LockedIdGenerator.getUniqueId19();
+    }
+
+    /**
+     * The getUniqueId19() implementation before the lock-free one, kept as a baseline.
+     */
+    static final class LockedIdGenerator
+    {
+        private static final Object lock19 = new Object();
+        private static int count2 = 0;
+        private static long previousTimeMilliseconds2 = 0;
+        private static final Map<Long, Long> lastIdsFull = new LinkedHashMap<Long, Long>()
+        {
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest)
+            {
+                return size() > 10000;
+            }
+        };
+
+        static long getUniqueId19()
+        {
+            synchronized (lock19)
+            {
+                long id = getFullUniqueId19();
+                while (lastIdsFull.containsKey(id))
+                {
+                    id = getFullUniqueId19();
+                }
+                lastIdsFull.put(id, null);
+                return id;
+            }
+        }
+
+        private static long getFullUniqueId19()
+        {
+            count2++;
+            if (count2 >= 10000)
+            {
+                count2 = 0;
+            }
+
+            long currentTimeMilliseconds = System.currentTimeMillis();
+
+            if (currentTimeMilliseconds > previousTimeMilliseconds2)
+            {
+                count2 = 0;
+                previousTimeMilliseconds2 = currentTimeMilliseconds;
+            }
+
+            return currentTimeMilliseconds * 1000000 + count2 * 100;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.cedarsoftware.util;
+
+/**
+ * Per-class adaptive compactSize() for CompactMap.  When a CompactMap subclass returns true from
+ * isAdaptiveCompactSize(), all instances of that class share one AdaptiveCompactSize, which decides the size at which
+ * they switch between the Object[] (compact) storage and the Map returned from getNewMap().
+ * <br><br>
+ * A small random sample of lookups (get(), containsKey() and put()) is timed.  In the Object[] state, a lookup scans
+ * the keys, so the sample records the time per key compared ("probe"), and the fraction of the entries a lookup
+ * scans (about 1/2 for hits, all of them for misses and for puts of new keys, so it reflects the read / write mix).
+ * In the Map state, the sample records the time of the Map lookup.  The break-even size, where scanning the Object[]
+ * costs as much as a Map lookup, is:
+ * <pre>
+ *     mapLookupNanos / (nanosPerProbe * probeFraction)
+ * </pre>
+ * The threshold starts at compactSize() and, once both states have been sampled, moves to the break-even size,
+ * kept within minCompactSize() and maxCompactSize().  Until some instances grow past the threshold, there are no
+ * Map samples and the threshold stays where it is.  Use getAdaptiveCompactSize(Class) to monitor it.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public final class AdaptiveCompactSize
+{
+    /** One lookup in this many is timed. */
+    static final int SAMPLE_INTERVAL = 256;
+    /** Samples of each state required before the threshold moves. */
+    static final int MIN_SAMPLES = 32;
+    /** The threshold is recomputed every this many samples. */
+    static final int RECOMPUTE_INTERVAL = 64;
+    /** Cost of the System.nanoTime() pair around a sampled lookup, subtracted from each sample. */
+    static final long TIMER_OVERHEAD = timerOverhead();
+
+    private static final ClassValue<AdaptiveCompactSize> BY_CLASS = new ClassValue<AdaptiveCompactSize>()
+    {
+        protected AdaptiveCompactSize computeValue(Class<?> type)
+        {
+            return new AdaptiveCompactSize();
+        }
+    };
+
+    private volatile int threshold;     // 0 until the first adaptive instance of the class is used
+    private int min;
+    private int max;
+    private double nanosPerProbe;
+    private double probeFraction;
+    private double mapLookupNanos;
+    private long arraySamples;
+    private long mapSamples;
+
+    private AdaptiveCompactSize() { }
+
+    /**
+     * @return the AdaptiveCompactSize shared by all instances of the passed in CompactMap class.  Its threshold is 0
+     * until an instance of the class (that returns true from isAdaptiveCompactSize()) has been used.
+     */
+    public static AdaptiveCompactSize getAdaptiveCompactSize(Class<? extends CompactMap> c)
+    {
+        return BY_CLASS.get(c);
+    }
+
+    static AdaptiveCompactSize of(CompactMap<?, ?> map)
+    {
+        return BY_CLASS.get(map.getClass());
+    }
+
+    /**
+     * @return the size at which the instances of the class switch from the Object[] to the Map from getNewMap().
+     */
+    public int getThreshold() { return threshold; }
+    public synchronized int getMin() { return min; }
+    public synchronized int getMax() { return max; }
+    public synchronized double getNanosPerProbe() { return nanosPerProbe; }
+    public synchronized double getProbeFraction() { return probeFraction; }
+    public synchronized double getMapLookupNanos() { return mapLookupNanos; }
+    public synchronized long getArraySamples() { return arraySamples; }
+    public synchronized long getMapSamples() { return mapSamples; }
+
+    public synchronized String toString()
+    {
+        return "AdaptiveCompactSize{threshold=" + threshold + ", min=" + min + ", max=" + max +
+                ", nanosPerProbe=" + nanosPerProbe + ", probeFraction=" + probeFraction +
+                ", mapLookupNanos=" + mapLookupNanos + ", arraySamples=" + arraySamples + ", mapSamples=" + mapSamples + '}';
+    }
+
+    /**
+     * @return current threshold, initialized from the passed in map's compactSize(), minCompactSize() and
+     * maxCompactSize() on first use.
+     */
+    int threshold(CompactMap<?, ?> map)
+    {
+        int t = threshold;
+        if (t != 0)
+        {
+            return t;
+        }
+        synchronized (this)
+        {
+            if (threshold == 0)
+            {
+                min = map.minCompactSize();
+                max = map.maxCompactSize();
+                if (min < 2 || min > max)
+                {
+                    throw new IllegalStateException("minCompactSize() must be >= 2 and <= maxCompactSize()");
+                }
+                threshold = clamp(map.compactSize());
+            }
+            return threshold;
+        }
+    }
+
+    /**
+     * Record a timed lookup in the Object[] state.
+     * @param nanos time of the lookup (timer overhead already subtracted)
+     * @param probes number of keys compared
+     * @param count number of entries in the Object[]
+     */
+    synchronized void sampleArray(long nanos, int probes, int count)
+    {
+        nanosPerProbe = average(nanosPerProbe, arraySamples, (double) nanos / probes);
+        probeFraction = average(probeFraction, arraySamples, (double) probes / count);
+        arraySamples++;
+        recompute();
+    }
+
+    /**
+     * Record a timed lookup in the Map state.
+     * @param nanos time of the lookup (timer overhead already subtracted)
+     */
+    synchronized void sampleMap(long nanos)
+    {
+        mapLookupNanos = average(mapLookupNanos, mapSamples, nanos);
+        mapSamples++;
+        recompute();
+    }
+
+    private void recompute()
+    {
+        if (threshold == 0 || arraySamples < MIN_SAMPLES || mapSamples < MIN_SAMPLES || (arraySamples + mapSamples) % RECOMPUTE_INTERVAL != 0)
+        {
+            return;
+        }
+        double perEntry = nanosPerProbe * probeFraction;    // Cost each entry in the Object[] adds to a lookup
+        threshold = perEntry <= 0 ? max : clamp((int) Math.min(Integer.MAX_VALUE, mapLookupNanos / perEntry));
+    }
+
+    private int clamp(int size)
+    {
+        return Math.max(min, Math.min(max, size));
+    }
+
+    /**
+     * Exponentially weighted moving average (1/16 weight to the newest sample), a plain average for the first 16.
+     */
+    private static double average(double average, long samples, double sample)
+    {
+        return average + (sample - average) / Math.min(samples + 1, 16);
+    }
+
+    private static long timerOverhead()
+    {
+        long min = Long.MAX_VALUE;
+        for (int i=0; i < 100; i++)
+        {
+            long start = System.nanoTime();
+            min = Math.min(min, System.nanoTime() - start);
+        }
+        return min;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static com.cedarsoftware.util.StringUtilities.hashCodeIgnoreCase;
 
@@ -44,6 +45,8 @@ import static com.cedarsoftware.util.StringUtilities.hashCodeIgnoreCase;
  */
 public class CaseInsensitiveMap<K, V> implements Map<K, V>
 {
+    private static final int DEFAULT_INTERN_CACHE_SIZE = 1024;
+    private static volatile AtomicReferenceArray<CaseInsensitiveString> internCache = new AtomicReferenceArray<>(DEFAULT_INTERN_CACHE_SIZE);
     private final Map<K, V> map;
 
     public CaseInsensitiveMap()
@@ -140,7 +143,7 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
             K altKey;
             if (key instanceof String)
             {
-                altKey = (K) new CaseInsensitiveString((String)key);
+                altKey = (K) CaseInsensitiveString.of((String)key);
             }
             else
             {
@@ -162,7 +165,19 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
         if (key instanceof String)
         {
             String keyString = (String) key;
-            return map.get(new CaseInsensitiveString(keyString));
+            if (!isLookupKeySupported())
+            {
+                return map.get(new CaseInsensitiveString(keyString));
+            }
+            LookupKey lookupKey = LOOKUP_KEY.get().set(keyString);
+            try
+            {
+                return map.get(lookupKey);
+            }
+            finally
+            {
+                lookupKey.clear();
+            }
         }
         return map.get(key);
     }
@@ -172,16 +187,38 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
         if (key instanceof String)
         {
             String keyString = (String) key;
-            return map.containsKey(new CaseInsensitiveString(keyString));
+            if (!isLookupKeySupported())
+            {
+                return map.containsKey(new CaseInsensitiveString(keyString));
+            }
+            LookupKey lookupKey = LOOKUP_KEY.get().set(keyString);
+            try
+            {
+                return map.containsKey(lookupKey);
+            }
+            finally
+            {
+                lookupKey.clear();
+            }
         }
         return map.containsKey(key);
     }
 
+    /**
+     * @return true if String keys can be looked up with the (reused) LookupKey instead of a new
+     * CaseInsensitiveString.  Not when the backing Map is sorted with a Comparator, which may only know about
+     * CaseInsensitiveString.
+     */
+    private boolean isLookupKeySupported()
+    {
+        return !(map instanceof SortedMap) || ((SortedMap<K, V>) map).comparator() == null;
+    }
+
     public V put(K key, V value)
     {
         if (key instanceof String)
         {
-            final CaseInsensitiveString newKey = new CaseInsensitiveString((String) key);
+            final CaseInsensitiveString newKey = CaseInsensitiveString.of((String) key);
             return map.put((K) newKey, value);
         }
         return map.put(key, value);
@@ -191,7 +228,7 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
     {   // not calling put() to save a little speed.
         if (key instanceof String)
         {   
-            final CaseInsensitiveString newKey = new CaseInsensitiveString((String) key);
+            final CaseInsensitiveString newKey = CaseInsensitiveString.of((String) key);
             return map.put((K) newKey, (V)value);
         }
         return map.put((K)key, (V)value);
@@ -317,6 +354,41 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
         return map;
     }
 
+    /**
+     * @return read-only, case-insensitive snapshot of this Map, for data that is built once and then only read.  It
+     * keeps the iteration order, reuses the hashes cached in the CaseInsensitiveString keys, has no modification count,
+     * and can be shared across threads without synchronization.  See FrozenMap.
+     */
+    public FrozenMap<K, V> freeze()
+    {
+        return FrozenMap.copyOf(this);
+    }
+
+    /**
+     * Set the number of slots in the cache of CaseInsensitiveStrings shared by all CaseInsensitiveMaps (see
+     * CaseInsensitiveString.of()).  Each slot holds the most recent key that hashed to it, so the keys used over and
+     * over (field names, header names) stay cached, while a one-off key only replaces a slot.  The default is 1024.
+     * Changing the size empties the cache.
+     * @param size number of slots (rounded up to a power of 2), or 0 to turn the cache off.
+     */
+    public static void setInternCacheSize(int size)
+    {
+        if (size < 0)
+        {
+            throw new IllegalArgumentException("Intern cache size must be >= 0, size: " + size);
+        }
+        internCache = size == 0 ? null : new AtomicReferenceArray<CaseInsensitiveString>(Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+    }
+
+    /**
+     * @return number of slots in the CaseInsensitiveString intern cache, 0 if it is turned off.
+     */
+    public static int getInternCacheSize()
+    {
+        AtomicReferenceArray<CaseInsensitiveString> cache = internCache;
+        return cache == null ? 0 : cache.length();
+    }
+
     /**
      * Returns a Set view of the keys contained in this map.
      * The set is backed by the map, so changes to the map are
@@ -332,7 +404,7 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
      */
     public Set<K> keySet()
     {
-        return new AbstractSet<K>()
+        return new KeySet()
         {
             Iterator iter;
 
@@ -429,6 +501,18 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
         };
     }
 
+    /**
+     * Base class of the keySet() view, so that CaseInsensitiveSet can recognize a key Set backed by a
+     * CaseInsensitiveMap, and use the CaseInsensitiveStrings it holds for bulk operations.
+     */
+    abstract class KeySet extends AbstractSet<K>
+    {
+        CaseInsensitiveMap<K, V> getOwner()
+        {
+            return CaseInsensitiveMap.this;
+        }
+    }
+
     public Set<Entry<K, V>> entrySet()
     {
         return new AbstractSet<Entry<K, V>>()
@@ -588,6 +672,31 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
             hash = hashCodeIgnoreCase(string);  // no new String created unlike .toLowerCase()
         }
 
+        /**
+         * @return a CaseInsensitiveString for the passed in String.  When the intern cache is on, an equal String
+         * (same case) passed in recently gets the same instance back, so Maps sharing the same keys share the key
+         * instances, and their hash is not recomputed.  See CaseInsensitiveMap.setInternCacheSize().
+         */
+        public static CaseInsensitiveString of(String string)
+        {
+            AtomicReferenceArray<CaseInsensitiveString> cache = internCache;
+            if (cache == null)
+            {
+                return new CaseInsensitiveString(string);
+            }
+
+            int h = string.hashCode();
+            int i = (h ^ (h >>> 16)) & (cache.length() - 1);
+            CaseInsensitiveString cached = cache.get(i);
+            if (cached != null && cached.original.equals(string))
+            {
+                return cached;
+            }
+            CaseInsensitiveString ciString = new CaseInsensitiveString(string);
+            cache.lazySet(i, ciString);     // fields are final, safe to publish without a fence
+            return ciString;
+        }
+
         public String toString()
         {
             return original;
@@ -607,11 +716,16 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
             else if (other instanceof CaseInsensitiveString)
             {
                 return hash == ((CaseInsensitiveString)other).hash &&
-                        original.equalsIgnoreCase(((CaseInsensitiveString)other).original);
+                        StringUtilities.equalsIgnoreCase(original, ((CaseInsensitiveString)other).original);
             }
             else if (other instanceof String)
             {
-                return original.equalsIgnoreCase((String)other);
+                return StringUtilities.equalsIgnoreCase(original, (String)other);
+            }
+            else if (other instanceof LookupKey)
+            {
+                return hash == ((LookupKey)other).hash &&
+                        StringUtilities.equalsIgnoreCase(original, ((LookupKey)other).original);
             }
             return false;
         }
@@ -623,6 +737,11 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
                 CaseInsensitiveString other = (CaseInsensitiveString) o;
                 return original.compareToIgnoreCase(other.original);
             }
+            else if (o instanceof LookupKey)
+            {
+                LookupKey other = (LookupKey) o;
+                return original.compareToIgnoreCase(other.original);
+            }
             else if (o instanceof String)
             {
                 String other = (String)o;
@@ -634,4 +753,79 @@ public class CaseInsensitiveMap<K, V> implements Map<K, V>
             }
         }
     }
+
+    private static final ThreadLocal<LookupKey> LOOKUP_KEY = new ThreadLocal<LookupKey>()
+    {
+        protected LookupKey initialValue()
+        {
+            return new LookupKey();
+        }
+    };
+
+    /**
+     * Reusable (one per thread) stand-in for a CaseInsensitiveString, used by get() and containsKey() so that a
+     * lookup does not allocate.  It is equal to, has the same hashCode() as, and compares the same as the
+     * CaseInsensitiveString of the same String.  It is never stored in a Map.
+     */
+    private static final class LookupKey implements Comparable
+    {
+        private String original;
+        private int hash;
+
+        LookupKey set(String string)
+        {
+            original = string;
+            hash = hashCodeIgnoreCase(string);
+            return this;
+        }
+
+        void clear()
+        {
+            original = null;
+        }
+
+        public String toString()
+        {
+            return original;
+        }
+
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        public boolean equals(Object other)
+        {
+            if (other == this)
+            {
+                return true;
+            }
+            else if (other instanceof CaseInsensitiveString)
+            {
+                return hash == ((CaseInsensitiveString)other).hash &&
+                        StringUtilities.equalsIgnoreCase(original, ((CaseInsensitiveString)other).original);
+            }
+            else if (other instanceof String)
+            {
+                return StringUtilities.equalsIgnoreCase(original, (String)other);
+            }
+            return false;
+        }
+
+        public int compareTo(Object o)
+        {
+            if (o instanceof CaseInsensitiveString)
+            {
+                return original.compareToIgnoreCase(((CaseInsensitiveString) o).original);
+            }
+            else if (o instanceof String)
+            {
+                return original.compareToIgnoreCase((String) o);
+            }
+            else
+            {   // Strings are less than non-Strings (come before)
+                return -1;
+            }
+        }
+    }
 }
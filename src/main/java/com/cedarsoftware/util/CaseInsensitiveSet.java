@@ -142,6 +142,24 @@ public class CaseInsensitiveSet<E> implements Set<E>
 
     public boolean containsAll(Collection<?> c)
     {
+        Map<Object, Object> wrapped = wrappedKeys(c);
+        if (wrapped != null)
+        {   // Both case-insensitive: c holds no two Strings that differ only by case
+            if (wrapped.size() > map.size())
+            {
+                return false;
+            }
+            Map<Object, Object> mine = (Map<Object, Object>) ((CaseInsensitiveMap<E, Object>) map).getWrappedMap();
+            for (Object key : wrapped.keySet())
+            {
+                if (!mine.containsKey(key))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         for (Object o : c)
         {
             if (!map.containsKey(o))
@@ -155,6 +173,17 @@ public class CaseInsensitiveSet<E> implements Set<E>
     public boolean addAll(Collection<? extends E> c)
     {
         int size = map.size();
+        Map<Object, Object> wrapped = wrappedKeys(c);
+        if (wrapped != null)
+        {
+            Map<Object, Object> mine = (Map<Object, Object>) ((CaseInsensitiveMap<E, Object>) map).getWrappedMap();
+            for (Object key : wrapped.keySet())
+            {   // value is the element, as add() does
+                mine.put(key, key instanceof CaseInsensitiveMap.CaseInsensitiveString ? key.toString() : key);
+            }
+            return map.size() != size;
+        }
+
         for (E elem : c)
         {
             map.put(elem, elem);
@@ -164,6 +193,21 @@ public class CaseInsensitiveSet<E> implements Set<E>
 
     public boolean retainAll(Collection<?> c)
     {
+        Map<Object, Object> wrapped = wrappedKeys(c);
+        if (wrapped != null)
+        {   // No temporary Map, the keys of c are already wrapped
+            int size = map.size();
+            Iterator<Object> i = ((Map<Object, Object>) ((CaseInsensitiveMap<E, Object>) map).getWrappedMap()).keySet().iterator();
+            while (i.hasNext())
+            {
+                if (!wrapped.containsKey(i.next()))
+                {
+                    i.remove();
+                }
+            }
+            return map.size() != size;
+        }
+
         Map other = new CaseInsensitiveMap();
         for (Object o : c)
         {
@@ -186,6 +230,31 @@ public class CaseInsensitiveSet<E> implements Set<E>
     public boolean removeAll(Collection<?> c)
     {
         int size = map.size();
+        Map<Object, Object> wrapped = wrappedKeys(c);
+        if (wrapped != null)
+        {   // Walk the smaller side
+            Map<Object, Object> mine = (Map<Object, Object>) ((CaseInsensitiveMap<E, Object>) map).getWrappedMap();
+            if (wrapped.size() < size)
+            {
+                for (Object key : wrapped.keySet())
+                {
+                    mine.remove(key);
+                }
+            }
+            else
+            {
+                Iterator<Object> i = mine.keySet().iterator();
+                while (i.hasNext())
+                {
+                    if (wrapped.containsKey(i.next()))
+                    {
+                        i.remove();
+                    }
+                }
+            }
+            return map.size() != size;
+        }
+
         for (Object elem : c)
         {
             map.remove(elem);
@@ -232,4 +301,40 @@ public class CaseInsensitiveSet<E> implements Set<E>
     {
         return map.keySet().toString();
     }
+
+    /**
+     * @return the Map of CaseInsensitiveString (and non-String) keys behind 'c', when this Set and 'c' are both held
+     * in a CaseInsensitiveMap ('c' being a CaseInsensitiveSet, or the keySet() of a CaseInsensitiveMap).  The bulk
+     * operations then use those keys, with their cached hashes, instead of wrapping each element again.  Otherwise
+     * null.
+     */
+    private Map<Object, Object> wrappedKeys(Collection<?> c)
+    {
+        if (!(map instanceof CaseInsensitiveMap))
+        {
+            return null;
+        }
+        Map<?, ?> other;
+        if (c instanceof CaseInsensitiveSet)
+        {
+            other = ((CaseInsensitiveSet<?>) c).map;
+        }
+        else if (c instanceof CaseInsensitiveMap.KeySet)
+        {
+            other = ((CaseInsensitiveMap<?, ?>.KeySet) c).getOwner();
+        }
+        else
+        {
+            return null;
+        }
+        return other instanceof CaseInsensitiveMap ? (Map<Object, Object>) ((CaseInsensitiveMap<?, ?>) other).getWrappedMap() : null;
+    }
+
+    /**
+     * @return the Map that holds the elements (as keys).  Used by CompactFootprint.
+     */
+    Map<E, Object> getWrappedMap()
+    {
+        return map;
+    }
 }
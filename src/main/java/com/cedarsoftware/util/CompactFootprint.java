@@ -0,0 +1,392 @@
+package com.cedarsoftware.util;
+
+import java.lang.instrument.Instrumentation;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimates the heap used by CompactMap and CompactSet instances, so that compactSize() and getNewMap() /
+ * getNewSet() can be chosen from data instead of by guesswork.
+ * <br><br>
+ * The estimate is the memory owned by the container: the CompactMap / CompactSet itself, its CompactMapEntry,
+ * Object[] (and int[] of key hashes), or backing Map / Set with its table, nodes and CaseInsensitiveString key
+ * wrappers.  The keys and values themselves are not counted, because they are normally shared with the rest of
+ * the application.
+ * <br><br>
+ * Sizes come from a built-in model of the HotSpot object layout (object header, reference size, 8 byte alignment),
+ * with the reference size taken from the JVM's data model and maximum heap (compressed oops below 32GB).  If this
+ * class is given an Instrumentation, either by setInstrumentation() or by running with this jar as a Java agent
+ * (-javaagent:java-util.jar, whose manifest names this class as its Premain-Class and Agent-Class), the objects that can
+ * be reached are measured with Instrumentation.getObjectSize() and the model is calibrated from it.  The nodes
+ * inside JDK Maps are not reachable without reflection into the JDK, so they are always modeled.  Backing Maps
+ * other than HashMap, LinkedHashMap, TreeMap, ConcurrentHashMap, their Set counterparts, and CaseInsensitiveMap /
+ * CaseInsensitiveSet wrapping those, are estimated as a HashMap.
+ * <br><br>
+ * Usage:
+ * <pre>
+ *     CompactFootprint.Histogram histogram = CompactFootprint.histogram(allMyMaps);
+ *     System.out.println(histogram);   // count, entries, bytes and bytes/entry per tier, plus a size histogram
+ * </pre>
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public final class CompactFootprint
+{
+    /**
+     * Storage tier of a CompactMap or CompactSet.  OBJECT is a CompactMap holding only the value (its key is
+     * getSingleValueKey()), ENTRY is a CompactMap holding a single CompactMapEntry.  A CompactSet goes directly from
+     * EMPTY to ARRAY.  MAP is the backing Map (or Set) returned from getNewMap() (or getNewSet()).
+     */
+    public enum Tier
+    {
+        EMPTY, OBJECT, ENTRY, ARRAY, MAP
+    }
+
+    private static volatile Instrumentation instrumentation;
+    private static int refSize;
+    private static int objectHeader;
+    private static int arrayHeader;
+
+    static
+    {
+        calibrate(null);
+    }
+
+    private CompactFootprint() { }
+
+    /**
+     * Java agent entry point (-javaagent).
+     */
+    public static void premain(String args, Instrumentation inst)
+    {
+        setInstrumentation(inst);
+    }
+
+    /**
+     * Java agent entry point (attach API).
+     */
+    public static void agentmain(String args, Instrumentation inst)
+    {
+        setInstrumentation(inst);
+    }
+
+    /**
+     * Measure objects with the passed in Instrumentation from now on, or revert to the built-in model if null.
+     */
+    public static void setInstrumentation(Instrumentation inst)
+    {
+        calibrate(inst);
+        instrumentation = inst;
+    }
+
+    /**
+     * @return true if objects are measured with an Instrumentation, false if only the built-in model is used.
+     */
+    public static boolean isInstrumented()
+    {
+        return instrumentation != null;
+    }
+
+    /**
+     * @param compact CompactMap or CompactSet
+     * @return the storage tier that the passed in CompactMap or CompactSet is in.
+     */
+    public static Tier getTier(Object compact)
+    {
+        if (compact instanceof CompactMap)
+        {
+            return Tier.valueOf(((CompactMap<?, ?>) compact).getLogicalValueType().name());
+        }
+        else if (compact instanceof CompactSet)
+        {
+            CompactSet<?> set = (CompactSet<?>) compact;
+            if (set.isEmpty())
+            {
+                return Tier.EMPTY;
+            }
+            return set.getStorage() instanceof Object[] ? Tier.ARRAY : Tier.MAP;
+        }
+        throw new IllegalArgumentException("Expected a CompactMap or CompactSet, but was: " + (compact == null ? null : compact.getClass().getName()));
+    }
+
+    /**
+     * @param compact CompactMap or CompactSet
+     * @return estimated bytes of heap owned by the passed in CompactMap or CompactSet, not counting its keys and
+     * values.
+     */
+    public static long estimateSize(Object compact)
+    {
+        Tier tier = getTier(compact);
+        long size = shallow(compact, objectSize(1, 0));
+        if (tier == Tier.EMPTY || tier == Tier.OBJECT)
+        {
+            return size;
+        }
+
+        Object storage = compact instanceof CompactMap ? ((CompactMap<?, ?>) compact).getStorage() : ((CompactSet<?>) compact).getStorage();
+        if (tier == Tier.ENTRY)
+        {   // key, value, and the reference to the outer CompactMap
+            return size + shallow(storage, objectSize(3, 0));
+        }
+        else if (tier == Tier.ARRAY)
+        {
+            Object[] entries = (Object[]) storage;
+            size += shallow(entries, arraySize(entries.length, refSize));
+            // Last element holds the count: a cached Integer, or the int[] of key (item) hashes
+            Object tail = entries[entries.length - 1];
+            if (tail instanceof int[])
+            {
+                size += shallow(tail, arraySize(((int[]) tail).length, 4));
+            }
+            else if ((Integer) tail > 127)
+            {
+                size += shallow(tail, objectSize(0, 4));
+            }
+            return size;
+        }
+        return size + collectionSize(storage);
+    }
+
+    /**
+     * @param population CompactMaps and / or CompactSets
+     * @return Histogram of the passed in CompactMaps and CompactSets by tier and by size().
+     */
+    public static Histogram histogram(Iterable<?> population)
+    {
+        Histogram histogram = new Histogram();
+        for (Object compact : population)
+        {
+            histogram.add(compact);
+        }
+        return histogram;
+    }
+
+    /**
+     * Count, entries and estimated bytes per Tier over a population of CompactMaps and CompactSets, and the number
+     * of them at each size().  toString() returns a printable report.
+     */
+    public static class Histogram
+    {
+        private final long[] counts = new long[Tier.values().length];
+        private final long[] entries = new long[Tier.values().length];
+        private final long[] bytes = new long[Tier.values().length];
+        private final SortedMap<Integer, Long> sizes = new TreeMap<>();
+
+        public void add(Object compact)
+        {
+            int t = getTier(compact).ordinal();
+            int size = compact instanceof Map ? ((Map<?, ?>) compact).size() : ((Collection<?>) compact).size();
+            counts[t]++;
+            entries[t] += size;
+            bytes[t] += estimateSize(compact);
+            Long count = sizes.get(size);
+            sizes.put(size, count == null ? 1L : count + 1);
+        }
+
+        public long getCount(Tier tier) { return counts[tier.ordinal()]; }
+        public long getEntries(Tier tier) { return entries[tier.ordinal()]; }
+        public long getBytes(Tier tier) { return bytes[tier.ordinal()]; }
+        public long getTotalCount() { return sum(counts); }
+        public long getTotalEntries() { return sum(entries); }
+        public long getTotalBytes() { return sum(bytes); }
+
+        /**
+         * @return average bytes per entry for the passed in Tier, or 0 if it holds no entries.
+         */
+        public double getBytesPerEntry(Tier tier)
+        {
+            long n = getEntries(tier);
+            return n == 0 ? 0 : (double) getBytes(tier) / n;
+        }
+
+        /**
+         * @return number of Maps / Sets at each size(), in size order.
+         */
+        public SortedMap<Integer, Long> getSizeCounts()
+        {
+            return Collections.unmodifiableSortedMap(sizes);
+        }
+
+        private static long sum(long[] values)
+        {
+            long total = 0;
+            for (long value : values)
+            {
+                total += value;
+            }
+            return total;
+        }
+
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%-6s %10s %12s %14s %12s%n", "tier", "count", "entries", "bytes", "bytes/entry"));
+            for (Tier tier : Tier.values())
+            {
+                sb.append(String.format("%-6s %10d %12d %14d %12.1f%n", tier, getCount(tier), getEntries(tier), getBytes(tier), getBytesPerEntry(tier)));
+            }
+            long total = getTotalEntries();
+            sb.append(String.format("%-6s %10d %12d %14d %12.1f%n", "total", getTotalCount(), total, getTotalBytes(), total == 0 ? 0 : (double) getTotalBytes() / total));
+            sb.append("size: count");
+            for (Map.Entry<Integer, Long> entry : sizes.entrySet())
+            {
+                sb.append(String.format("%n%4d: %d", entry.getKey(), entry.getValue()));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * @return estimated bytes of the passed in backing Map or Set, with its table and nodes.
+     */
+    private static long collectionSize(Object c)
+    {
+        if (c instanceof CaseInsensitiveMap)
+        {
+            Map<?, ?> map = ((CaseInsensitiveMap<?, ?>) c).getWrappedMap();
+            return shallow(c, objectSize(1, 0)) + collectionSize(map) + caseInsensitiveStrings(map.keySet());
+        }
+        else if (c instanceof CaseInsensitiveSet)
+        {
+            return shallow(c, objectSize(1, 0)) + collectionSize(((CaseInsensitiveSet<?>) c).getWrappedMap());
+        }
+        else if (c instanceof TreeSet)
+        {   // TreeSet wraps a TreeMap
+            return shallow(c, objectSize(1, 0)) + treeMapShallow() + treeEntries(((Set<?>) c).size());
+        }
+        else if (c instanceof HashSet)
+        {   // HashSet wraps a HashMap, LinkedHashSet wraps a LinkedHashMap
+            boolean linked = c instanceof LinkedHashSet;
+            return shallow(c, objectSize(1, 0)) + hashMapShallow(linked) + hashTable(((Set<?>) c).size(), linked);
+        }
+        else if (c instanceof TreeMap)
+        {
+            return shallow(c, treeMapShallow()) + treeEntries(((Map<?, ?>) c).size());
+        }
+        else if (c instanceof ConcurrentHashMap)
+        {   // table, nextTable, keySet, values, entrySet, counterCells; baseCount, sizeCtl, transferIndex, cellsBusy
+            return shallow(c, objectSize(6, 20)) + hashTable(((Map<?, ?>) c).size(), false);
+        }
+        else if (c instanceof Map)
+        {
+            boolean linked = c instanceof LinkedHashMap;
+            return shallow(c, hashMapShallow(linked)) + hashTable(((Map<?, ?>) c).size(), linked);
+        }
+        return shallow(c, hashMapShallow(false)) + hashTable(((Collection<?>) c).size(), false);
+    }
+
+    private static long caseInsensitiveStrings(Set<?> keys)
+    {
+        long size = 0;
+        for (Object key : keys)
+        {
+            if (key instanceof CaseInsensitiveMap.CaseInsensitiveString)
+            {   // String original, int hash
+                size += shallow(key, objectSize(1, 4));
+            }
+        }
+        return size;
+    }
+
+    private static long hashMapShallow(boolean linked)
+    {   // table, entrySet, keySet, values (+ head, tail, accessOrder); size, modCount, threshold, loadFactor
+        return linked ? objectSize(6, 17) : objectSize(4, 16);
+    }
+
+    /**
+     * @return estimated bytes of the table and nodes of a hash table holding 'size' entries.
+     */
+    private static long hashTable(int size, boolean linked)
+    {   // Node: hash, key, value, next (+ before, after)
+        long node = linked ? objectSize(5, 4) : objectSize(3, 4);
+        return (size == 0 ? 0 : arraySize(tableLength(size), refSize)) + size * node;
+    }
+
+    private static long treeMapShallow()
+    {   // comparator, root, entrySet, navigableKeySet, descendingMap, keySet, values; size, modCount
+        return objectSize(7, 8);
+    }
+
+    private static long treeEntries(int size)
+    {   // Entry: key, value, left, right, parent, color
+        return size * objectSize(5, 1);
+    }
+
+    /**
+     * @return power of 2 table length of a hash table holding 'size' entries at its default 0.75 load factor.
+     */
+    private static int tableLength(int size)
+    {
+        int length = 16;
+        while (length * 3 < size << 2 && length < 1 << 30)
+        {
+            length <<= 1;
+        }
+        return length;
+    }
+
+    private static long shallow(Object o, long modeled)
+    {
+        Instrumentation inst = instrumentation;
+        return inst == null ? modeled : inst.getObjectSize(o);
+    }
+
+    private static long objectSize(int refs, int primitiveBytes)
+    {
+        return align(objectHeader + refs * refSize + primitiveBytes);
+    }
+
+    private static long arraySize(int length, int elementSize)
+    {
+        return align(arrayHeader + (long) length * elementSize);
+    }
+
+    private static long align(long size)
+    {
+        return (size + 7) & ~7L;
+    }
+
+    private static void calibrate(Instrumentation inst)
+    {
+        if (inst != null)
+        {
+            arrayHeader = (int) inst.getObjectSize(new Object[0]);
+            refSize = (int) (inst.getObjectSize(new Object[16]) - inst.getObjectSize(new Object[0])) / 16;
+            objectHeader = refSize == 4 ? 12 : 16;
+            return;
+        }
+
+        if ("32".equals(System.getProperty("sun.arch.data.model")))
+        {
+            refSize = 4;
+            objectHeader = 8;
+            arrayHeader = 16;
+        }
+        else if (Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024)
+        {   // Compressed oops (HotSpot default below 32GB)
+            refSize = 4;
+            objectHeader = 12;
+            arrayHeader = 16;
+        }
+        else
+        {
+            refSize = 8;
+            objectHeader = 16;
+            arrayHeader = 24;
+        }
+    }
+}
@@ -0,0 +1,639 @@
+package com.cedarsoftware.util;
+
+import java.util.*;
+
+/**
+ * A Map with primitive int keys that uses very little memory, the int-keyed sibling of CompactMap.  Keys are never
+ * boxed inside the Map: it goes from a single key/value pair held in fields, to an int[] of keys (and a parallel
+ * Object[] of values) that is searched linearly, and finally, when size() is greater than compactSize(), to an
+ * open-addressed (linear probing) hash table that is still an int[] and an Object[].  It does not switch to a
+ * HashMap&lt;Integer, V&gt;.
+ *
+ *     Methods you may want to override:
+ *
+ *     // When size() > than this amount, the int[] keys are stored in a hash table instead of being searched linearly.
+ *     protected int compactSize() { return 80; }
+ *
+ * Use get(int), put(int, V), containsKey(int) and remove(int) to avoid boxing.  The Map&lt;Integer, V&gt; API is
+ * supported for compatibility.  A null key is never present, and put() of a null key throws NullPointerException.
+ * Null values are supported.
+ * <p>
+ * **Empty** - no arrays are held.<br>
+ * **One entry** - the key and value are held in fields, no arrays are held.<br>
+ * **Two thru compactSize() entries** - the keys are in an int[], the values in an Object[] at the same indexes, in
+ * insertion order.  The arrays have room for more entries than they hold.  When full, they grow by 1.5x (never
+ * beyond compactSize()), and when less than half full, they are shrunk on remove().<br>
+ * **size() greater than compactSize()** - the keys and values are in a hash table (int[] and Object[] with a power of
+ * two length, at most 3/4 full), iterated in table order.  When size() drops back to compactSize(), the entries are
+ * moved back to the insertion-ordered arrays.
+ * <p>
+ * The iterators walk a copy of the entries, so the Map can be modified while iterating.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class CompactIntMap<V> extends AbstractMap<Integer, V>
+{
+    private static final Object NULL_VALUE = new Object();  // Stands in for a null value within the hash table
+    private int singleKey;
+    private int[] keys;
+    private Object val;     // value when size() == 1, otherwise the Object[] of values
+    private int size;
+
+    public CompactIntMap()
+    {
+        if (compactSize() < 2)
+        {
+            throw new IllegalStateException("compactSize() must be >= 2");
+        }
+    }
+
+    public CompactIntMap(Map<Integer, ? extends V> other)
+    {
+        this();
+        putAll(other);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key)
+    {
+        if (size == 1)
+        {
+            return singleKey == key;
+        }
+        return indexOf(key) >= 0;
+    }
+
+    public boolean containsKey(Object key)
+    {
+        return key instanceof Integer && containsKey(((Integer) key).intValue());
+    }
+
+    public V get(int key)
+    {
+        if (size == 1)
+        {
+            return singleKey == key ? (V) val : null;
+        }
+        int i = indexOf(key);
+        return i < 0 ? null : (V) unmaskNull(((Object[]) val)[i]);
+    }
+
+    public V get(Object key)
+    {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    public V put(int key, V value)
+    {
+        if (size == 0)
+        {
+            singleKey = key;
+            val = value;
+            size = 1;
+            return null;
+        }
+        else if (size == 1)
+        {
+            if (singleKey == key)
+            {
+                V save = (V) val;
+                val = value;
+                return save;
+            }
+            int[] newKeys = new int[2];
+            Object[] values = new Object[2];
+            newKeys[0] = singleKey;
+            values[0] = val;
+            newKeys[1] = key;
+            values[1] = value;
+            singleKey = 0;
+            keys = newKeys;
+            val = values;
+            size = 2;
+            return null;
+        }
+
+        Object[] values = (Object[]) val;
+        final int compactSize = compactSize();
+        if (size <= compactSize)
+        {   // 2 to compactSize
+            int i = arrayIndexOf(key);
+            if (i >= 0)
+            {
+                V save = (V) values[i];
+                values[i] = value;
+                return save;
+            }
+            if (size < compactSize)
+            {
+                if (size == keys.length)
+                {
+                    resizeArrays(Math.min(compactSize, size + Math.max(size >> 1, 2)));
+                    values = (Object[]) val;
+                }
+                keys[size] = key;
+                values[size] = value;
+                size++;
+                return null;
+            }
+            // Switch to the hash table
+            rehash(tableCapacity(size + 1));
+            tableInsert(keys, (Object[]) val, key, maskNull(value));
+            size++;
+            return null;
+        }
+
+        // > compactSize
+        int i = tableIndexOf(key);
+        if (i >= 0)
+        {
+            V save = (V) unmaskNull(values[i]);
+            values[i] = maskNull(value);
+            return save;
+        }
+        if ((size + 1) << 2 > keys.length * 3)
+        {
+            rehash(keys.length << 1);
+        }
+        tableInsert(keys, (Object[]) val, key, maskNull(value));
+        size++;
+        return null;
+    }
+
+    public V put(Integer key, V value)
+    {
+        return put(key.intValue(), value);
+    }
+
+    public V remove(int key)
+    {
+        if (size == 0)
+        {
+            return null;
+        }
+        else if (size == 1)
+        {
+            if (singleKey != key)
+            {
+                return null;
+            }
+            V save = (V) val;
+            clear();
+            return save;
+        }
+
+        Object[] values = (Object[]) val;
+        final int compactSize = compactSize();
+        if (size <= compactSize)
+        {   // 2 to compactSize
+            int i = arrayIndexOf(key);
+            if (i < 0)
+            {
+                return null;
+            }
+            V save = (V) values[i];
+            if (size == 2)
+            {   // Back to a single entry
+                int other = 1 - i;
+                singleKey = keys[other];
+                val = values[other];
+                keys = null;
+                size = 1;
+                return save;
+            }
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
+            size--;
+            values[size] = null;    // release reference for GC
+            if (size < keys.length >> 1)
+            {
+                resizeArrays(size + (size >> 1));
+            }
+            return save;
+        }
+
+        // > compactSize
+        int i = tableIndexOf(key);
+        if (i < 0)
+        {
+            return null;
+        }
+        V save = (V) unmaskNull(values[i]);
+        tableDelete(keys, values, i);
+        size--;
+        if (size == compactSize)
+        {   // Back to the insertion-ordered arrays (insertion order was not kept by the hash table)
+            int[] newKeys = new int[compactSize];
+            Object[] newValues = new Object[compactSize];
+            int n = 0;
+            for (int j=0; j < keys.length; j++)
+            {
+                if (values[j] != null)
+                {
+                    newKeys[n] = keys[j];
+                    newValues[n++] = unmaskNull(values[j]);
+                }
+            }
+            keys = newKeys;
+            val = newValues;
+        }
+        return save;
+    }
+
+    public V remove(Object key)
+    {
+        return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+    }
+
+    public void clear()
+    {
+        singleKey = 0;
+        keys = null;
+        val = null;
+        size = 0;
+    }
+
+    public boolean containsValue(Object value)
+    {
+        if (size == 0)
+        {
+            return false;
+        }
+        else if (size == 1)
+        {
+            return Objects.equals(val, value);
+        }
+
+        Object[] values = (Object[]) val;
+        if (size <= compactSize())
+        {
+            for (int i=0; i < size; i++)
+            {
+                if (Objects.equals(values[i], value))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Object target = maskNull(value);
+        for (Object v : values)
+        {
+            if (v != null && target.equals(v))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return new int[] holding the keys of this Map, in iteration order.
+     */
+    public int[] keys()
+    {
+        int[] copy = new int[size];
+        copyTo(copy, null);
+        return copy;
+    }
+
+    public int hashCode()
+    {
+        int h = 0;
+        int[] k = new int[size];
+        Object[] v = new Object[size];
+        copyTo(k, v);
+        for (int i=0; i < k.length; i++)
+        {
+            h += k[i] ^ Objects.hashCode(v[i]);     // Same as Map.Entry<Integer, V>.hashCode()
+        }
+        return h;
+    }
+
+    public Set<Entry<Integer, V>> entrySet()
+    {
+        return new AbstractSet<Entry<Integer, V>>()
+        {
+            public Iterator<Entry<Integer, V>> iterator()
+            {
+                final int[] iterKeys = new int[size];
+                final Object[] iterValues = new Object[size];
+                copyTo(iterKeys, iterValues);
+
+                return new Iterator<Entry<Integer, V>>()
+                {
+                    int index = 0;
+                    int current = -1;
+
+                    public boolean hasNext() { return index < iterKeys.length; }
+
+                    public Entry<Integer, V> next()
+                    {
+                        if (index >= iterKeys.length)
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        current = index++;
+                        return new CompactIntMapEntry(iterKeys[current], (V) iterValues[current]);
+                    }
+
+                    public void remove()
+                    {
+                        if (current < 0)
+                        {
+                            throw new IllegalStateException("remove() called on an Iterator before calling next()");
+                        }
+                        CompactIntMap.this.remove(iterKeys[current]);
+                        current = -1;
+                    }
+                };
+            }
+
+            public int size() { return size; }
+            public void clear() { CompactIntMap.this.clear(); }
+            public boolean contains(Object o)
+            {   // faster than inherited method
+                if (!(o instanceof Entry))
+                {
+                    return false;
+                }
+                Entry<?, ?> entry = (Entry<?, ?>) o;
+                Object key = entry.getKey();
+                return containsKey(key) && Objects.equals(get(key), entry.getValue());
+            }
+
+            public boolean remove(Object o)
+            {
+                if (!contains(o))
+                {
+                    return false;
+                }
+                CompactIntMap.this.remove(((Entry<?, ?>) o).getKey());
+                return true;
+            }
+        };
+    }
+
+    protected int compactSize() { return 80; }
+
+    CompactMap.LogicalValueType getLogicalValueType()
+    {
+        if (size == 0)
+        {
+            return CompactMap.LogicalValueType.EMPTY;
+        }
+        else if (size == 1)
+        {
+            return CompactMap.LogicalValueType.ENTRY;
+        }
+        return size <= compactSize() ? CompactMap.LogicalValueType.ARRAY : CompactMap.LogicalValueType.MAP;
+    }
+
+    /**
+     * Map.Entry handed out by the iterators.  setValue() writes through to the outer CompactIntMap.
+     */
+    private class CompactIntMapEntry extends AbstractMap.SimpleEntry<Integer, V>
+    {
+        private CompactIntMapEntry(int key, V value)
+        {
+            super(key, value);
+        }
+
+        public V setValue(V value)
+        {
+            V save = super.setValue(value);
+            CompactIntMap.this.put(getKey().intValue(), value);     // "Transmit" (write-thru) to underlying Map.
+            return save;
+        }
+    }
+
+    /**
+     * @return index of the key within the keys int[], or -1 if not present.  Only valid when size() >= 2.
+     */
+    private int indexOf(int key)
+    {
+        if (size < 2)
+        {
+            return -1;
+        }
+        return size <= compactSize() ? arrayIndexOf(key) : tableIndexOf(key);
+    }
+
+    private int arrayIndexOf(int key)
+    {
+        final int[] k = keys;
+        for (int i=0; i < size; i++)
+        {
+            if (k[i] == key)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int tableIndexOf(int key)
+    {
+        final int[] k = keys;
+        final Object[] values = (Object[]) val;
+        final int mask = k.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null)
+        {
+            if (k[i] == key)
+            {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Copy the keys (and values, if 'v' is not null) into the passed in arrays, which must have length size(),
+     * in iteration order.
+     */
+    private void copyTo(int[] k, Object[] v)
+    {
+        if (size == 0)
+        {
+            return;
+        }
+        else if (size == 1)
+        {
+            k[0] = singleKey;
+            if (v != null)
+            {
+                v[0] = val;
+            }
+            return;
+        }
+
+        Object[] values = (Object[]) val;
+        if (size <= compactSize())
+        {
+            System.arraycopy(keys, 0, k, 0, size);
+            if (v != null)
+            {
+                System.arraycopy(values, 0, v, 0, size);
+            }
+            return;
+        }
+
+        int n = 0;
+        for (int i=0; i < keys.length; i++)
+        {
+            if (values[i] != null)
+            {
+                if (v != null)
+                {
+                    v[n] = unmaskNull(values[i]);
+                }
+                k[n++] = keys[i];
+            }
+        }
+    }
+
+    /**
+     * Reallocate the insertion-ordered arrays (2 to compactSize entries) to hold 'capacity' entries.
+     */
+    private void resizeArrays(int capacity)
+    {
+        int[] newKeys = new int[capacity];
+        Object[] newValues = new Object[capacity];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        System.arraycopy(val, 0, newValues, 0, size);
+        keys = newKeys;
+        val = newValues;
+    }
+
+    /**
+     * Move all entries, from the insertion-ordered arrays or the current hash table, into a new hash table of the
+     * passed in capacity (a power of 2).
+     */
+    private void rehash(int capacity)
+    {
+        final int[] oldKeys = keys;
+        final Object[] oldValues = (Object[]) val;
+        int[] newKeys = new int[capacity];
+        Object[] newValues = new Object[capacity];
+        if (size <= compactSize())
+        {
+            for (int i=0; i < size; i++)
+            {
+                tableInsert(newKeys, newValues, oldKeys[i], maskNull(oldValues[i]));
+            }
+        }
+        else
+        {
+            for (int i=0; i < oldKeys.length; i++)
+            {
+                if (oldValues[i] != null)
+                {
+                    tableInsert(newKeys, newValues, oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        keys = newKeys;
+        val = newValues;
+    }
+
+    /**
+     * @return power of 2 hash table length that holds 'count' entries while at most 3/4 full.
+     */
+    private static int tableCapacity(int count)
+    {
+        int capacity = 4;
+        while (capacity * 3 < count << 2)
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Place the key into the first free slot of its probe sequence.  The caller ensures that the key is not already
+     * present and that the table has a free slot.  'value' must already be masked (never null).
+     */
+    private static void tableInsert(int[] k, Object[] values, int key, Object value)
+    {
+        final int mask = k.length - 1;
+        int i = hash(key) & mask;
+        while (values[i] != null)
+        {
+            i = (i + 1) & mask;
+        }
+        k[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Empty slot 'i', then shift the entries that follow it in the same probe run back, so that no lookup stops
+     * early at the hole (no tombstones are needed).
+     */
+    private static void tableDelete(int[] k, Object[] values, int i)
+    {
+        final int mask = k.length - 1;
+        int hole = i;
+        int j = i;
+        while (true)
+        {
+            j = (j + 1) & mask;
+            if (values[j] == null)
+            {
+                break;
+            }
+            int home = hash(k[j]) & mask;
+            // The entry at 'j' may fill the hole unless its home slot lies (cyclically) within (hole, j]
+            boolean movable = hole < j ? home <= hole || home > j : home <= hole && home > j;
+            if (movable)
+            {
+                k[hole] = k[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        k[hole] = 0;
+        values[hole] = null;
+    }
+
+    private static int hash(int key)
+    {
+        int h = key * 0x9E3779B9;     // Spread sequential ids across the table
+        return h ^ (h >>> 16);
+    }
+
+    private static Object maskNull(Object value)
+    {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    private static Object unmaskNull(Object value)
+    {
+        return value == NULL_VALUE ? null : value;
+    }
+}
@@ -0,0 +1,508 @@
+package com.cedarsoftware.util;
+
+import java.util.*;
+
+/**
+ * A Set of primitive ints that uses very little memory, the int sibling of CompactSet (and the Set counterpart of
+ * CompactIntMap).  Elements are never boxed inside the Set: it goes from a single element held in a field, to an
+ * int[] that is searched linearly, and finally, when size() is greater than compactSize(), to an open-addressed
+ * (linear probing) hash table that is still an int[].  It does not switch to a HashSet&lt;Integer&gt;.
+ *
+ *     Methods you may want to override:
+ *
+ *     // When size() > than this amount, the int[] elements are stored in a hash table instead of being searched linearly.
+ *     protected int compactSize() { return 80; }
+ *
+ * Use contains(int), add(int) and remove(int) to avoid boxing.  The Set&lt;Integer&gt; API is supported for
+ * compatibility.  A null element is never present, and add() of a null element throws NullPointerException.
+ * <p>
+ * **Empty** - no array is held.<br>
+ * **One element** - the element is held in a field, no array is held.<br>
+ * **Two thru compactSize() elements** - the elements are in an int[], in insertion order.  The array has room for
+ * more elements than it holds.  When full, it grows by 1.5x (never beyond compactSize()), and when less than half
+ * full, it is shrunk on remove().<br>
+ * **size() greater than compactSize()** - the elements are in a hash table (an int[] with a power of two length, at
+ * most 3/4 full), iterated in table order.  0 marks an empty slot of the table, so a 0 element is held in a flag.
+ * When size() drops back to compactSize(), the elements are moved back to an insertion-ordered array.
+ * <p>
+ * The iterator walks a copy of the elements, so the Set can be modified while iterating.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class CompactIntSet extends AbstractSet<Integer>
+{
+    private int single;
+    private int[] keys;
+    private int size;
+    private boolean hasZero;    // hash table only: 0 is held here, as 0 marks the empty slots of the table
+
+    public CompactIntSet()
+    {
+        if (compactSize() < 2)
+        {
+            throw new IllegalStateException("compactSize() must be >= 2");
+        }
+    }
+
+    public CompactIntSet(Collection<Integer> other)
+    {
+        this();
+        addAll(other);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean contains(int key)
+    {
+        if (size == 0)
+        {
+            return false;
+        }
+        else if (size == 1)
+        {
+            return single == key;
+        }
+        else if (size <= compactSize())
+        {
+            return arrayIndexOf(key) >= 0;
+        }
+        return key == 0 ? hasZero : tableIndexOf(key) >= 0;
+    }
+
+    public boolean contains(Object o)
+    {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    public boolean add(int key)
+    {
+        if (size == 0)
+        {
+            single = key;
+            size = 1;
+            return true;
+        }
+        else if (size == 1)
+        {
+            if (single == key)
+            {
+                return false;
+            }
+            keys = new int[] {single, key};
+            single = 0;
+            size = 2;
+            return true;
+        }
+
+        final int compactSize = compactSize();
+        if (size <= compactSize)
+        {   // 2 to compactSize
+            if (arrayIndexOf(key) >= 0)
+            {
+                return false;
+            }
+            if (size < compactSize)
+            {
+                if (size == keys.length)
+                {
+                    resizeArray(Math.min(compactSize, size + Math.max(size >> 1, 2)));
+                }
+                keys[size++] = key;
+                return true;
+            }
+            // Switch to the hash table
+            rehash(tableCapacity(size + 1));
+            tableAdd(key);
+            size++;
+            return true;
+        }
+
+        // > compactSize
+        if (key == 0)
+        {
+            if (hasZero)
+            {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        if (tableIndexOf(key) >= 0)
+        {
+            return false;
+        }
+        if ((size + 1) << 2 > keys.length * 3)
+        {
+            rehash(keys.length << 1);
+        }
+        tableInsert(keys, key);
+        size++;
+        return true;
+    }
+
+    public boolean add(Integer key)
+    {
+        return add(key.intValue());
+    }
+
+    public boolean remove(int key)
+    {
+        if (size == 0)
+        {
+            return false;
+        }
+        else if (size == 1)
+        {
+            if (single != key)
+            {
+                return false;
+            }
+            clear();
+            return true;
+        }
+
+        final int compactSize = compactSize();
+        if (size <= compactSize)
+        {   // 2 to compactSize
+            int i = arrayIndexOf(key);
+            if (i < 0)
+            {
+                return false;
+            }
+            if (size == 2)
+            {   // Back to a single element
+                single = keys[1 - i];
+                keys = null;
+                size = 1;
+                return true;
+            }
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            size--;
+            if (size < keys.length >> 1)
+            {
+                resizeArray(size + (size >> 1));
+            }
+            return true;
+        }
+
+        // > compactSize
+        if (key == 0)
+        {
+            if (!hasZero)
+            {
+                return false;
+            }
+            hasZero = false;
+        }
+        else
+        {
+            int i = tableIndexOf(key);
+            if (i < 0)
+            {
+                return false;
+            }
+            tableDelete(keys, i);
+        }
+        size--;
+        if (size == compactSize)
+        {   // Back to an insertion-ordered array (insertion order was not kept by the hash table)
+            int[] newKeys = new int[compactSize];
+            copyTable(newKeys);
+            keys = newKeys;
+            hasZero = false;
+        }
+        return true;
+    }
+
+    public boolean remove(Object o)
+    {
+        return o instanceof Integer && remove(((Integer) o).intValue());
+    }
+
+    public void clear()
+    {
+        single = 0;
+        keys = null;
+        size = 0;
+        hasZero = false;
+    }
+
+    /**
+     * @return new int[] holding the elements of this Set, in iteration order.
+     */
+    public int[] toIntArray()
+    {
+        int[] copy = new int[size];
+        copyTo(copy);
+        return copy;
+    }
+
+    public int hashCode()
+    {
+        int h = 0;
+        for (int key : toIntArray())
+        {
+            h += key;     // Same as Set<Integer>.hashCode()
+        }
+        return h;
+    }
+
+    public Iterator<Integer> iterator()
+    {
+        final int[] iterKeys = toIntArray();
+
+        return new Iterator<Integer>()
+        {
+            int index = 0;
+            int current = -1;
+
+            public boolean hasNext() { return index < iterKeys.length; }
+
+            public Integer next()
+            {
+                if (index >= iterKeys.length)
+                {
+                    throw new NoSuchElementException();
+                }
+                current = index++;
+                return iterKeys[current];
+            }
+
+            public void remove()
+            {
+                if (current < 0)
+                {
+                    throw new IllegalStateException("remove() called on an Iterator before calling next()");
+                }
+                CompactIntSet.this.remove(iterKeys[current]);
+                current = -1;
+            }
+        };
+    }
+
+    protected int compactSize() { return 80; }
+
+    CompactMap.LogicalValueType getLogicalValueType()
+    {
+        if (size == 0)
+        {
+            return CompactMap.LogicalValueType.EMPTY;
+        }
+        else if (size == 1)
+        {
+            return CompactMap.LogicalValueType.ENTRY;
+        }
+        return size <= compactSize() ? CompactMap.LogicalValueType.ARRAY : CompactMap.LogicalValueType.MAP;
+    }
+
+    private int arrayIndexOf(int key)
+    {
+        final int[] k = keys;
+        for (int i=0; i < size; i++)
+        {
+            if (k[i] == key)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the (non-zero) key within the hash table, or -1 if not present.
+     */
+    private int tableIndexOf(int key)
+    {
+        final int[] k = keys;
+        final int mask = k.length - 1;
+        int i = hash(key) & mask;
+        while (k[i] != 0)
+        {
+            if (k[i] == key)
+            {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Copy the elements into the passed in array, which must have length size(), in iteration order.
+     */
+    private void copyTo(int[] k)
+    {
+        if (size == 0)
+        {
+            return;
+        }
+        else if (size == 1)
+        {
+            k[0] = single;
+            return;
+        }
+        else if (size <= compactSize())
+        {
+            System.arraycopy(keys, 0, k, 0, size);
+            return;
+        }
+        copyTable(k);
+    }
+
+    /**
+     * Copy the elements of the hash table (0 first, if held) into the passed in array.
+     */
+    private void copyTable(int[] k)
+    {
+        int n = 0;
+        if (hasZero)
+        {
+            k[n++] = 0;
+        }
+        for (int key : keys)
+        {
+            if (key != 0)
+            {
+                k[n++] = key;
+            }
+        }
+    }
+
+    /**
+     * Reallocate the insertion-ordered array (2 to compactSize elements) to hold 'capacity' elements.
+     */
+    private void resizeArray(int capacity)
+    {
+        int[] newKeys = new int[capacity];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        keys = newKeys;
+    }
+
+    /**
+     * Move all elements, from the insertion-ordered array or the current hash table, into a new hash table of the
+     * passed in capacity (a power of 2).
+     */
+    private void rehash(int capacity)
+    {
+        final int[] oldKeys = keys;
+        keys = new int[capacity];
+        if (size <= compactSize())
+        {
+            for (int i=0; i < size; i++)
+            {
+                tableAdd(oldKeys[i]);
+            }
+        }
+        else
+        {
+            for (int key : oldKeys)
+            {
+                if (key != 0)
+                {
+                    tableInsert(keys, key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the key to the hash table, or to the zero flag.  The caller ensures that the key is not already present,
+     * that the table has a free slot, and adjusts size.
+     */
+    private void tableAdd(int key)
+    {
+        if (key == 0)
+        {
+            hasZero = true;
+        }
+        else
+        {
+            tableInsert(keys, key);
+        }
+    }
+
+    /**
+     * @return power of 2 hash table length that holds 'count' elements while at most 3/4 full.
+     */
+    private static int tableCapacity(int count)
+    {
+        int capacity = 4;
+        while (capacity * 3 < count << 2)
+        {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Place the (non-zero) key into the first free slot of its probe sequence.  The caller ensures that the key is
+     * not already present and that the table has a free slot.
+     */
+    private static void tableInsert(int[] k, int key)
+    {
+        final int mask = k.length - 1;
+        int i = hash(key) & mask;
+        while (k[i] != 0)
+        {
+            i = (i + 1) & mask;
+        }
+        k[i] = key;
+    }
+
+    /**
+     * Empty slot 'i', then shift the keys that follow it in the same probe run back, so that no lookup stops
+     * early at the hole (no tombstones are needed).
+     */
+    private static void tableDelete(int[] k, int i)
+    {
+        final int mask = k.length - 1;
+        int hole = i;
+        int j = i;
+        while (true)
+        {
+            j = (j + 1) & mask;
+            if (k[j] == 0)
+            {
+                break;
+            }
+            int home = hash(k[j]) & mask;
+            // The key at 'j' may fill the hole unless its home slot lies (cyclically) within (hole, j]
+            boolean movable = hole < j ? home <= hole || home > j : home <= hole && home > j;
+            if (movable)
+            {
+                k[hole] = k[j];
+                hole = j;
+            }
+        }
+        k[hole] = 0;
+    }
+
+    private static int hash(int key)
+    {
+        int h = key * 0x9E3779B9;     // Spread sequential ids across the table
+        return h ^ (h >>> 16);
+    }
+}
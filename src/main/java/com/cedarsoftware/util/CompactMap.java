@@ -1,6 +1,7 @@
 package com.cedarsoftware.util;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static com.cedarsoftware.util.StringUtilities.hashCodeIgnoreCase;
 
@@ -31,6 +32,20 @@ import static com.cedarsoftware.util.StringUtilities.hashCodeIgnoreCase;
  *     // When size() > than this amount, the Map returned from getNewMap() is used to store elements.
  *     protected int compactSize() { return 80; }
  *
+ *     // If you want the Object[] (compact) storage to keep the hash of each key, so that lookups compare an int
+ *     // before calling equals(), return true.  Costs one int[] per Map while in the compact state.  On by default
+ *     // for case-insensitive Maps.
+ *     protected boolean isHashIndexed() { return isCaseInsensitive(); }
+ *
+ *     // If you want the Object[] (compact) storage kept in key order (binary searched), return a Comparator, and
+ *     // return a SortedMap with the same ordering from getNewMap().  See CompactSortedMap.
+ *     protected Comparator<? super K> getOrdering() { return null; }
+ *
+ *     // If you want the size at which the Map switches to getNewMap() to follow the measured cost of lookups (shared
+ *     // by all instances of the class, between minCompactSize() and maxCompactSize()), return true.  See
+ *     // AdaptiveCompactSize.
+ *     protected boolean isAdaptiveCompactSize() { return false; }
+ *
  * **Empty**
  * This class only has one (1) member variable of type `Object`.  If there are no entries in it, then the value of that
  * member variable takes on a pointer (points to sentinel value.)
@@ -46,9 +61,15 @@ import static com.cedarsoftware.util.StringUtilities.hashCodeIgnoreCase;
  * **Two thru compactSize() entries**
  * In this case, the single member variable points to a single Object[] that contains all the keys and values.  The
  * keys are in the even positions, the values are in the odd positions (1 up from the key).  [0] = key, [1] = value,
- * [2] = next key, [3] = next value, and so on.  The Object[] is dynamically expanded until size() > compactSize(). In
- * addition, it is dynamically shrunk until the size becomes 1, and then it switches to a single Map Entry or a single
- * value.
+ * [2] = next key, [3] = next value, and so on.  The Object[] has room for more entries than it holds (its capacity),
+ * and the last element of the Object[] holds the count of entries (an Integer).  When full, the Object[] grows by 1.5x
+ * (never beyond compactSize()), so that filling the Map does not reallocate the Object[] on every put().  putAll()
+ * and the CompactMap(Map) constructor size it once.  When less than half full, it is shrunk on remove(), and when
+ * the size becomes 1, it switches to a single Map Entry or a single value.  If isHashIndexed() returns true, the last
+ * element is instead an int[]: [0] = count of entries, followed by the hash of each key (computeKeyHashCode()), in
+ * key order.  Lookups scan the int[] and only call equals() (or equalsIgnoreCase()) on a key whose hash matches.
+ * If getOrdering() returns a Comparator, the entries are kept in key order instead of insertion order, and lookups
+ * use a binary search (no int[] of key hashes is kept in this case).
  *
  * **size() greater than compactSize()**
  * In this case, the single member variable points to a `Map` instance (supplied by `getNewMap()` API that user supplied.)
@@ -95,7 +116,7 @@ public class CompactMap<K, V> implements Map<K, V>
     {
         if (val instanceof Object[])
         {   // 2 to compactSize
-            return ((Object[])val).length >> 1;
+            return entryCount((Object[]) val);
         }
         else if (val instanceof Map)
         {   // > compactSize
@@ -123,7 +144,7 @@ public class CompactMap<K, V> implements Map<K, V>
             {
                 if (isCaseInsensitive())
                 {
-                    return ((String)aKey).equalsIgnoreCase((String) key);
+                    return StringUtilities.equalsIgnoreCase((String) aKey, (String) key);
                 }
                 else
                 {
@@ -136,23 +157,280 @@ public class CompactMap<K, V> implements Map<K, V>
         return Objects.equals(key, aKey);
     }
 
-    public boolean containsKey(Object key)
+    /**
+     * Locate a key within the Object[] (compact) storage.
+     * @return index of the key within the Object[] (the value is at index + 1), or -1 if the key is not present.
+     */
+    private int findKey(Object[] entries, Object key)
     {
-        if (val instanceof Object[])
-        {   // 2 to compactSize
-            Object[] entries = (Object[]) val;
-            for (int i=0; i < entries.length; i += 2)
+        final Comparator<? super K> ordering = getOrdering();
+        if (ordering != null)
+        {   // Sorted: binary search
+            int i = binarySearch(entries, key, ordering);
+            return i < 0 ? -1 : i;
+        }
+
+        final Object tail = entries[entries.length - 1];
+        if (tail instanceof int[])
+        {   // Hash indexed: only call equals() when the hashes match
+            final int[] meta = (int[]) tail;
+            final int count = meta[0];
+            final int hash = computeKeyHashCode(key);
+            for (int i=0; i < count; i++)
             {
-                if (compareKeys(key, entries[i]))
+                if (meta[i + 1] == hash && compareKeys(key, entries[i << 1]))
                 {
-                    return true;
+                    return i << 1;
                 }
             }
-            return false;
+            return -1;
+        }
+
+        final int len = (Integer) tail << 1;
+        for (int i=0; i < len; i += 2)
+        {
+            if (compareKeys(key, entries[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Binary search the Object[] (compact) storage, which is kept in key order when getOrdering() is not null.
+     * @return index of the key within the Object[], or (-(index where the key would be inserted) - 1) if the key
+     * is not present.
+     */
+    private static int binarySearch(Object[] entries, Object key, Comparator ordering)
+    {
+        int low = 0;
+        int high = entryCount(entries) - 1;
+
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final int cmp = ordering.compare(entries[mid << 1], key);
+            if (cmp < 0)
+            {
+                low = mid + 1;
+            }
+            else if (cmp > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid << 1;
+            }
+        }
+        return -((low << 1) + 1);
+    }
+
+    /**
+     * @return number of entries held in the Object[] (compact) storage.  The last element of the Object[] holds
+     * the count, either as an Integer, or as element [0] of the int[] of key hashes when hash indexed.  CompactSet
+     * keeps the same last element, so this also returns the number of items in its Object[] storage.
+     */
+    static int entryCount(Object[] entries)
+    {
+        final Object tail = entries[entries.length - 1];
+        return tail instanceof int[] ? ((int[]) tail)[0] : (Integer) tail;
+    }
+
+    /**
+     * @return number of entries the Object[] (compact) storage can hold before it must be reallocated.
+     */
+    private static int entryCapacity(Object[] entries)
+    {
+        return entries.length >> 1;
+    }
+
+    /**
+     * @return new, empty Object[] (compact) storage that can hold 'capacity' entries.
+     */
+    private Object[] newEntries(int capacity)
+    {
+        Object[] entries = new Object[(capacity << 1) + 1];
+        entries[capacity << 1] = isHashIndexed() && getOrdering() == null ? new int[capacity + 1] : (Object) 0;
+        return entries;
+    }
+
+    /**
+     * @return copy of the passed in Object[] (compact) storage, reallocated to hold 'capacity' entries.
+     */
+    private static Object[] resizeEntries(Object[] entries, int capacity)
+    {
+        final int count = entryCount(entries);
+        final Object tail = entries[entries.length - 1];
+        Object[] resized = new Object[(capacity << 1) + 1];
+        System.arraycopy(entries, 0, resized, 0, count << 1);
+        if (tail instanceof int[])
+        {
+            int[] meta = new int[capacity + 1];
+            System.arraycopy(tail, 0, meta, 0, count + 1);
+            resized[capacity << 1] = meta;
+        }
+        else
+        {
+            resized[capacity << 1] = tail;
+        }
+        return resized;
+    }
+
+    /**
+     * Add an entry to the end of the Object[] (compact) storage.  The caller ensures that the key is not already
+     * present and that entryCount() is less than entryCapacity().
+     */
+    private void appendEntry(Object[] entries, Object key, Object value)
+    {
+        insertEntry(entries, entryCount(entries) << 1, key, value);
+    }
+
+    /**
+     * Insert an entry so that its key lands at index 'i' of the Object[] (compact) storage, sliding the following
+     * entries up.  The caller ensures that the key is not already present and that entryCount() is less than
+     * entryCapacity().
+     */
+    private void insertEntry(Object[] entries, int i, Object key, Object value)
+    {
+        final int last = entries.length - 1;
+        final int count = entryCount(entries);
+        System.arraycopy(entries, i, entries, i + 2, (count << 1) - i);
+        entries[i] = key;
+        entries[i + 1] = value;
+        if (entries[last] instanceof int[])
+        {
+            int[] meta = (int[]) entries[last];
+            int h = (i >> 1) + 1;
+            System.arraycopy(meta, h, meta, h + 1, count + 1 - h);
+            meta[h] = computeKeyHashCode(key);
+            meta[0] = count + 1;
+        }
+        else
+        {
+            entries[last] = count + 1;
+        }
+    }
+
+    /**
+     * Remove the entry whose key is at index 'i', sliding the following entries down to retain their order.
+     */
+    private static void removeEntry(Object[] entries, int i)
+    {
+        final int last = entries.length - 1;
+        final int count = entryCount(entries);
+        final int len = count << 1;
+        System.arraycopy(entries, i + 2, entries, i, len - i - 2);
+        entries[len - 2] = null;    // release references for GC
+        entries[len - 1] = null;
+        if (entries[last] instanceof int[])
+        {
+            int[] meta = (int[]) entries[last];
+            int h = (i >> 1) + 1;
+            System.arraycopy(meta, h + 1, meta, h, count - h);
+            meta[0] = count - 1;
+        }
+        else
+        {
+            entries[last] = count - 1;
+        }
+    }
+
+    /**
+     * @return capacity to grow full Object[] (compact) storage to.  Grows by 1.5x (at least 2), never beyond
+     * 'limit', so that filling a Map costs O(n) copying rather than O(n^2).  Also used by CompactSet.
+     */
+    static int growCapacity(int capacity, int limit)
+    {
+        return Math.min(limit, capacity + Math.max(capacity >> 1, 2));
+    }
+
+    /**
+     * @return the size beyond which entries are held in the Map from getNewMap(): compactSize(), or the threshold
+     * of the class's AdaptiveCompactSize when isAdaptiveCompactSize() returns true.
+     */
+    private int threshold()
+    {
+        return isAdaptive() ? AdaptiveCompactSize.of(this).threshold(this) : compactSize();
+    }
+
+    private boolean isAdaptive()
+    {
+        return isAdaptiveCompactSize() && getOrdering() == null;
+    }
+
+    /**
+     * @return true if this lookup should be timed for the class's AdaptiveCompactSize.
+     */
+    private boolean isSampled()
+    {
+        return isAdaptive() && ThreadLocalRandom.current().nextInt(AdaptiveCompactSize.SAMPLE_INTERVAL) == 0;
+    }
+
+    /**
+     * findKey(), timing a sample of the calls for the class's AdaptiveCompactSize.
+     */
+    private int sampledFindKey(Object[] entries, Object key)
+    {
+        if (!isSampled())
+        {
+            return findKey(entries, key);
+        }
+        long start = System.nanoTime();
+        int i = findKey(entries, key);
+        long nanos = Math.max(0, System.nanoTime() - start - AdaptiveCompactSize.TIMER_OVERHEAD);
+        int count = entryCount(entries);
+        AdaptiveCompactSize.of(this).sampleArray(nanos, i < 0 ? count : (i >> 1) + 1, count);
+        return i;
+    }
+
+    private void sampleMap(long start)
+    {
+        long nanos = Math.max(0, System.nanoTime() - start - AdaptiveCompactSize.TIMER_OVERHEAD);
+        AdaptiveCompactSize.of(this).sampleMap(nanos);
+    }
+
+    /**
+     * Switch from the backing Map to the Object[] (compact) storage, or to the single entry storage if the Map
+     * holds fewer than 2 entries.
+     */
+    private void compactFrom(Map<K, V> map)
+    {
+        if (map.size() < 2)
+        {
+            val = EMPTY_MAP;
+            for (Entry<K, V> entry : map.entrySet())
+            {
+                put(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+
+        Object[] entries = newEntries(map.size());
+        for (Entry<K, V> entry : map.entrySet())
+        {
+            appendEntry(entries, entry.getKey(), entry.getValue());
+        }
+        val = entries;
+    }
+
+    public boolean containsKey(Object key)
+    {
+        if (val instanceof Object[])
+        {   // 2 to compactSize
+            return sampledFindKey((Object[]) val, key) >= 0;
         }
         else if (val instanceof Map)
         {   // > compactSize
             Map<K, V> map = (Map<K, V>) val;
+            if (isSampled())
+            {
+                long start = System.nanoTime();
+                boolean found = map.containsKey(key);
+                sampleMap(start);
+                return found;
+            }
             return map.containsKey(key);
         }
         else if (val == EMPTY_MAP)
@@ -169,7 +447,8 @@ public class CompactMap<K, V> implements Map<K, V>
         if (val instanceof Object[])
         {   // 2 to Compactsize
             Object[] entries = (Object[]) val;
-            for (int i=0; i < entries.length; i += 2)
+            final int len = entryCount(entries) << 1;
+            for (int i=0; i < len; i += 2)
             {
                 Object aValue = entries[i + 1];
                 if (Objects.equals(value, aValue))
@@ -198,19 +477,19 @@ public class CompactMap<K, V> implements Map<K, V>
         if (val instanceof Object[])
         {   // 2 to compactSize
             Object[] entries = (Object[]) val;
-            for (int i=0; i < entries.length; i += 2)
-            {
-                Object aKey = entries[i];
-                if (compareKeys(key, aKey))
-                {
-                    return (V) entries[i + 1];
-                }
-            }
-            return null;
+            int i = sampledFindKey(entries, key);
+            return i < 0 ? null : (V) entries[i + 1];
         }
         else if (val instanceof Map)
         {   // > compactSize
             Map<K, V> map = (Map<K, V>) val;
+            if (isSampled())
+            {
+                long start = System.nanoTime();
+                V value = map.get(key);
+                sampleMap(start);
+                return value;
+            }
             return map.get(key);
         }
         else if (val == EMPTY_MAP)
@@ -227,32 +506,38 @@ public class CompactMap<K, V> implements Map<K, V>
         if (val instanceof Object[])
         {   // 2 to compactSize
             Object[] entries = (Object[]) val;
-            for (int i=0; i < entries.length; i += 2)
-            {
-                Object aKey = entries[i];
-                Object aValue = entries[i + 1];
-                if (compareKeys(key, aKey))
-                {   // Overwrite case
-                    entries[i + 1] = value;
-                    return (V) aValue;
-                }
+            final Comparator<? super K> ordering = getOrdering();
+            int idx = ordering == null ? sampledFindKey(entries, key) : binarySearch(entries, key, ordering);
+            if (idx >= 0)
+            {   // Overwrite case
+                Object aValue = entries[idx + 1];
+                entries[idx + 1] = value;
+                return (V) aValue;
             }
 
             // Not present in Object[]
-            if (size() < compactSize())
-            {   // Grow array
-                Object[] expand = new Object[entries.length + 2];
-                System.arraycopy(entries, 0, expand, 0, entries.length);
-                // Place new entry at end
-                expand[expand.length - 2] = key;
-                expand[expand.length - 1] = value;
-                val = expand;
+            final int count = entryCount(entries);
+            if (count < threshold())
+            {
+                if (count == entryCapacity(entries))
+                {   // Full - grow array
+                    entries = resizeEntries(entries, growCapacity(count, threshold()));
+                    val = entries;
+                }
+                if (ordering == null)
+                {   // Place new entry at end
+                    appendEntry(entries, key, value);
+                }
+                else
+                {   // Place new entry in key order
+                    insertEntry(entries, -idx - 1, key, value);
+                }
             }
             else
             {   // Switch to Map - copy entries
                 Map<K, V> map = getNewMap();
-                entries = (Object[]) val;
-                for (int i=0; i < entries.length; i += 2)
+                final int len = count << 1;
+                for (int i=0; i < len; i += 2)
                 {
                     Object aKey = entries[i];
                     Object aValue = entries[i + 1];
@@ -298,11 +583,17 @@ public class CompactMap<K, V> implements Map<K, V>
         }
         else
         {   // CompactMapEntry to []
-            Object[] entries = new Object[4];
-            entries[0] = getLogicalSingleKey();
-            entries[1] = getLogicalSingleValue();
-            entries[2] = key;
-            entries[3] = value;
+            Object[] entries = newEntries(2);
+            appendEntry(entries, getLogicalSingleKey(), getLogicalSingleValue());
+            final Comparator<? super K> ordering = getOrdering();
+            if (ordering != null && ordering.compare(key, (K) entries[0]) < 0)
+            {
+                insertEntry(entries, 0, key, value);
+            }
+            else
+            {
+                appendEntry(entries, key, value);
+            }
             val = entries;
             return null;
         }
@@ -312,45 +603,29 @@ public class CompactMap<K, V> implements Map<K, V>
     {
         if (val instanceof Object[])
         {   // 2 to compactSize
-            if (size() == 2)
-            {   // When at 2 entries, we must drop back to CompactMapEntry or val (use clear() and put() to get us there).
-                Object[] entries = (Object[]) val;
-                if (compareKeys(key, entries[0]))
-                {
-                    Object prevValue = entries[1];
-                    clear();
-                    put((K)entries[2], (V)entries[3]);
-                    return (V) prevValue;
-                }
-                else if (compareKeys(key, entries[2]))
-                {
-                    Object prevValue = entries[3];
-                    clear();
-                    put((K)entries[0], (V)entries[1]);
-                    return (V) prevValue;
-                }
-
+            Object[] entries = (Object[]) val;
+            int i = findKey(entries, key);
+            if (i < 0)
+            {
                 return null;    // not found
             }
-            else
-            {
-                Object[] entries = (Object[]) val;
-                for (int i = 0; i < entries.length; i += 2)
-                {
-                    Object aKey = entries[i];
-                    if (compareKeys(key, aKey))
-                    {   // Found, must shrink
-                        Object prior = entries[i + 1];
-                        Object[] shrink = new Object[entries.length - 2];
-                        System.arraycopy(entries, 0, shrink, 0, i);
-                        System.arraycopy(entries, i + 2, shrink, i, shrink.length - i);
-                        val = shrink;
-                        return (V) prior;
-                    }
-                }
 
-                return null;    // not found
+            Object prior = entries[i + 1];
+            final int count = entryCount(entries);
+            if (count == 2)
+            {   // When at 2 entries, we must drop back to CompactMapEntry or val (use clear() and put() to get us there).
+                int other = i == 0 ? 2 : 0;
+                clear();
+                put((K)entries[other], (V)entries[other + 1]);
+                return (V) prior;
+            }
+
+            removeEntry(entries, i);
+            if (count - 1 < entryCapacity(entries) >> 1)
+            {   // Less than half full, shrink (leaving room to grow without immediately reallocating)
+                val = resizeEntries(entries, (count - 1) + ((count - 1) >> 1));
             }
+            return (V) prior;
         }
         else if (val instanceof Map)
         {   // > compactSize
@@ -361,19 +636,9 @@ public class CompactMap<K, V> implements Map<K, V>
             }
             V save = map.remove(key);
 
-            if (map.size() == compactSize())
+            if (map.size() <= threshold())
             {   // Down to compactSize, need to switch to Object[]
-                Object[] entries = new Object[compactSize() * 2];
-                Iterator<Entry<K, V>> i = map.entrySet().iterator();
-                int idx = 0;
-                while (i.hasNext())
-                {
-                    Entry<K, V> entry = i.next();
-                    entries[idx] = entry.getKey();
-                    entries[idx + 1] = entry.getValue();
-                    idx += 2;
-                }
-                val = entries;
+                compactFrom(map);
             }
             return save;
         }
@@ -401,10 +666,54 @@ public class CompactMap<K, V> implements Map<K, V>
         {
             return;
         }
+
+        // Upper bound - keys within 'm' may already be present
+        final int maxSize = size() + m.size();
+        if (maxSize > threshold())
+        {   // Size the storage once: go straight to the backing Map
+            if (!(val instanceof Map))
+            {
+                val = getCopy();
+            }
+            Map<K, V> map = (Map<K, V>) val;
+            map.putAll(m);
+            if (map.size() <= threshold())
+            {   // Keys overlapped, it all fits in the Object[] after all
+                compactFrom(map);
+            }
+            return;
+        }
+
+        if (maxSize >= 2)
+        {   // Size the Object[] once, so that the puts below do not reallocate it
+            if (val instanceof Object[])
+            {
+                Object[] entries = (Object[]) val;
+                if (entryCapacity(entries) < maxSize)
+                {
+                    val = resizeEntries(entries, maxSize);
+                }
+            }
+            else
+            {
+                Object[] entries = newEntries(maxSize);
+                if (val != EMPTY_MAP)
+                {
+                    appendEntry(entries, getLogicalSingleKey(), getLogicalSingleValue());
+                }
+                val = entries;
+            }
+        }
+
         for (Entry<? extends K, ? extends V> entry : m.entrySet())
         {
             put(entry.getKey(), entry.getValue());
         }
+
+        if (val instanceof Object[] && entryCount((Object[]) val) < 2)
+        {   // All keys within 'm' matched the one existing key (Object[] must hold 2 or more entries)
+            compactFrom(getCopy());
+        }
     }
 
     public void clear()
@@ -418,7 +727,8 @@ public class CompactMap<K, V> implements Map<K, V>
         {
             int h = 0;
             Object[] entries = (Object[]) val;
-            for (int i=0; i < entries.length; i += 2)
+            final int len = entryCount(entries) << 1;
+            for (int i=0; i < len; i += 2)
             {
                 Object aKey = entries[i];
                 Object aValue = entries[i + 1];
@@ -448,28 +758,35 @@ public class CompactMap<K, V> implements Map<K, V>
 
         if (val instanceof Object[])
         {   // 2 to compactSize
-            for (Entry<?, ?> entry : other.entrySet())
+            try
             {
-                final Object thatKey = entry.getKey();
-                if (!containsKey(thatKey))
+                for (Entry<?, ?> entry : other.entrySet())
                 {
-                    return false;
-                }
+                    final Object thatKey = entry.getKey();
+                    if (!containsKey(thatKey))
+                    {
+                        return false;
+                    }
 
-                Object thatValue = entry.getValue();
-                Object thisValue = get(thatKey);
+                    Object thatValue = entry.getValue();
+                    Object thisValue = get(thatKey);
 
-                if (thatValue == null || thisValue == null)
-                {   // Perform null checks
-                    if (thatValue != thisValue)
+                    if (thatValue == null || thisValue == null)
+                    {   // Perform null checks
+                        if (thatValue != thisValue)
+                        {
+                            return false;
+                        }
+                    }
+                    else if (!thisValue.equals(thatValue))
                     {
                         return false;
                     }
                 }
-                else if (!thisValue.equals(thatValue))
-                {
-                    return false;
-                }
+            }
+            catch (ClassCastException | NullPointerException e)
+            {   // Key the getOrdering() Comparator cannot compare (as AbstractMap.equals() does)
+                return false;
             }
         }
         else if (val instanceof Map)
@@ -732,13 +1049,32 @@ public class CompactMap<K, V> implements Map<K, V>
         };
     }
 
+    /**
+     * @return a MapCursor positioned before the first entry.  Walking the Map with it allocates no Map.Entry (or
+     * copy of the Map) per call or per entry, unlike entrySet(), keySet() and values().  See MapCursor.
+     */
+    public MapCursor<K, V> cursor()
+    {
+        return new MapCursor<>(this);
+    }
+
+    /**
+     * @return read-only snapshot of this Map, for data that is built once and then only read.  It keeps the
+     * iteration order and the case-insensitivity of this Map, has no modification count, and can be shared across
+     * threads without synchronization.  See FrozenMap.
+     */
+    public FrozenMap<K, V> freeze()
+    {
+        return FrozenMap.copyOf(this);
+    }
+
     private Map<K, V> getCopy()
     {
         Map<K, V> copy = getNewMap();   // Use their Map (TreeMap, HashMap, LinkedHashMap, etc.)
         if (val instanceof Object[])
         {   // 2 to compactSize - copy Object[] into Map
             Object[] entries = (Object[]) CompactMap.this.val;
-            int len = entries.length;
+            int len = entryCount(entries) << 1;
             for (int i=0; i < len; i += 2)
             {
                 copy.put((K)entries[i], (V)entries[i + 1]);
@@ -783,6 +1119,40 @@ public class CompactMap<K, V> implements Map<K, V>
         EMPTY, OBJECT, ENTRY, MAP, ARRAY
     }
 
+    /**
+     * @return the first or last key in storage order.  For the Object[] (compact) storage that is key order when
+     * getOrdering() is not null, and for the backing Map storage the Map must be a SortedMap.  Used by CompactSortedMap.
+     * @throws NoSuchElementException if the Map is empty.
+     */
+    K edgeKey(boolean first)
+    {
+        if (val instanceof Object[])
+        {   // 2 to compactSize
+            Object[] entries = (Object[]) val;
+            return (K) entries[first ? 0 : (entryCount(entries) - 1) << 1];
+        }
+        else if (val instanceof Map)
+        {   // > compactSize
+            SortedMap<K, V> map = (SortedMap<K, V>) val;
+            return first ? map.firstKey() : map.lastKey();
+        }
+        else if (val == EMPTY_MAP)
+        {   // empty
+            throw new NoSuchElementException();
+        }
+
+        // size == 1
+        return getLogicalSingleKey();
+    }
+
+    /**
+     * @return the internal storage: the single value, CompactMapEntry, Object[], or Map.  Used by CompactFootprint.
+     */
+    Object getStorage()
+    {
+        return val;
+    }
+
     protected LogicalValueType getLogicalValueType()
     {
         if (val instanceof Object[])
@@ -884,7 +1254,7 @@ public class CompactMap<K, V> implements Map<K, V>
         }
     }
 
-    private K getLogicalSingleKey()
+    K getLogicalSingleKey()
     {
         if (CompactMapEntry.class.isInstance(val))
         {
@@ -894,7 +1264,7 @@ public class CompactMap<K, V> implements Map<K, V>
         return getSingleValueKey();
     }
 
-    private V getLogicalSingleValue()
+    V getLogicalSingleValue()
     {
         if (CompactMapEntry.class.isInstance(val))
         {
@@ -915,4 +1285,40 @@ public class CompactMap<K, V> implements Map<K, V>
     protected Map<K, V> getNewMap() { return new HashMap<>(compactSize() + 1); }
     protected boolean isCaseInsensitive() { return false; }
     protected int compactSize() { return 80; }
+
+    /**
+     * @return true to keep the hash of each key alongside the Object[] (compact) storage.  Lookups then compare
+     * the hash first and only call equals() on a key whose hash matches, at the cost of one int[] per Map.
+     * Defaults to isCaseInsensitive(): the case-insensitive hash of each key is computed once, on put(), so a
+     * lookup rejects a mismatched key with one int compare instead of an equalsIgnoreCase() call.
+     * Must return the same value for the life of the Map.
+     */
+    protected boolean isHashIndexed() { return isCaseInsensitive(); }
+
+    /**
+     * @return Comparator that orders the keys within the Object[] (compact) storage, or null (default) to keep the
+     * keys in insertion order.  When not null, get(), containsKey(), put() and remove() use a binary search while
+     * in the compact state, getNewMap() should return a SortedMap with the same ordering, and the ordering must be
+     * consistent with equals() (equalsIgnoreCase() when isCaseInsensitive() returns true).  Must return the same
+     * Comparator for the life of the Map.
+     */
+    protected Comparator<? super K> getOrdering() { return null; }
+
+    /**
+     * @return true to let the size at which the Map switches between the Object[] (compact) storage and
+     * getNewMap() adapt to the measured cost of lookups, within minCompactSize() and maxCompactSize(), starting from
+     * compactSize().  The threshold is shared by all instances of the class.  See AdaptiveCompactSize.  Has no effect
+     * when getOrdering() is not null.  Must return the same value for the life of the Map.
+     */
+    protected boolean isAdaptiveCompactSize() { return false; }
+
+    /**
+     * @return lowest threshold the adaptive compactSize may choose (see isAdaptiveCompactSize()).  Must be >= 2.
+     */
+    protected int minCompactSize() { return Math.max(2, compactSize() >> 2); }
+
+    /**
+     * @return highest threshold the adaptive compactSize may choose (see isAdaptiveCompactSize()).
+     */
+    protected int maxCompactSize() { return compactSize() << 1; }
 }
@@ -25,6 +25,18 @@ import java.util.*;
  *     // When size() > than this amount, the Set returned from getNewSet() is used to store elements.
  *     protected int compactSize() { return 80; }
  *
+ *     // Return true to keep the hash of each element alongside the Object[].  Defaults to isCaseInsensitive().
+ *     protected boolean isHashIndexed() { return isCaseInsensitive(); }
+ *
+ * The Object[] (1 to compactSize() elements) has room for more elements than it holds (its capacity), and its last
+ * element holds the count of elements (an Integer), the same layout as the Object[] storage of CompactMap.  When
+ * full, the Object[] grows by 1.5x (never beyond compactSize()), and when less than half full after a remove(), it
+ * shrinks, so that add() and remove() do not reallocate the Object[] on every call.
+ *
+ * If isHashIndexed() returns true, the last element is instead an int[]: [0] = count of elements, followed by the
+ * hash of each element (computeItemHashCode()), in the same order.  contains(), add() and remove() scan the int[]
+ * and only call equals() (or equalsIgnoreCase()) on an element whose hash matches.
+ *
  * This Set supports holding a null element.
  *
  * @author John DeRegnaucourt (jdereg@gmail.com)
@@ -67,7 +79,7 @@ public class CompactSet<E> extends AbstractSet<E>
     {
         if (val instanceof Object[])
         {   // 1 to compactSize
-            return ((Object[])val).length;
+            return CompactMap.entryCount((Object[]) val);
         }
         else if (val instanceof Set)
         {   // > compactSize
@@ -90,7 +102,7 @@ public class CompactSet<E> extends AbstractSet<E>
             {
                 if (isCaseInsensitive())
                 {
-                    return ((String)anItem).equalsIgnoreCase((String) item);
+                    return StringUtilities.equalsIgnoreCase((String) anItem, (String) item);
                 }
                 else
                 {
@@ -107,15 +119,7 @@ public class CompactSet<E> extends AbstractSet<E>
     {
         if (val instanceof Object[])
         {   // 1 to compactSize
-            Object[] entries = (Object[]) val;
-            for (int i=0; i < entries.length; i++)
-            {
-                if (compareItems(item, entries[i]))
-                {
-                    return true;
-                }
-            }
-            return false;
+            return indexOf((Object[]) val, item) >= 0;
         }
         else if (val instanceof Set)
         {   // > compactSize
@@ -159,9 +163,10 @@ public class CompactSet<E> extends AbstractSet<E>
         if (val instanceof Object[])
         {   // 1 to compactSize - copy Object[] into Set
             Object[] entries = (Object[]) CompactSet.this.val;
-            for (Object entry : entries)
+            final int count = CompactMap.entryCount(entries);
+            for (int i=0; i < count; i++)
             {
-                copy.add((E) entry);
+                copy.add((E) entries[i]);
             }
         }
         else if (val instanceof Set)
@@ -178,27 +183,29 @@ public class CompactSet<E> extends AbstractSet<E>
     {
         if (val instanceof Object[])
         {   // 1 to compactSize
-            if (contains(item))
+            Object[] entries = (Object[]) val;
+            if (indexOf(entries, item) >= 0)
             {
                 return false;
             }
 
-            Object[] entries = (Object[]) val;
-            if (size() < compactSize())
-            {   // Grow array
-                Object[] expand = new Object[entries.length + 1];
-                System.arraycopy(entries, 0, expand, 0, entries.length);
+            final int count = CompactMap.entryCount(entries);
+            if (count < compactSize())
+            {
+                if (count == itemCapacity(entries))
+                {   // Full - grow array
+                    entries = resizeItems(entries, CompactMap.growCapacity(count, compactSize()));
+                    val = entries;
+                }
                 // Place new entry at end
-                expand[expand.length - 1] = item;
-                val = expand;
+                appendItem(entries, item);
             }
             else
             {   // Switch to Map - copy entries
                 Set<E> set = getNewSet();
-                entries = (Object[]) val;
-                for (Object anItem : entries)
+                for (int i=0; i < count; i++)
                 {
-                    set.add((E) anItem);
+                    set.add((E) entries[i]);
                 }
                 // Place new entry
                 set.add(item);
@@ -212,7 +219,9 @@ public class CompactSet<E> extends AbstractSet<E>
             return set.add(item);
         }
         // empty
-        val = new Object[] { item };
+        Object[] entries = newItems(1);
+        appendItem(entries, item);
+        val = entries;
         return true;
     }
 
@@ -221,27 +230,25 @@ public class CompactSet<E> extends AbstractSet<E>
         if (val instanceof Object[])
         {
             Object[] local = (Object[]) val;
-            int len = local.length;
+            int i = indexOf(local, item);
+            if (i < 0)
+            {
+                return false;    // not found
+            }
 
-            for (int i=0; i < len; i++)
+            final int count = CompactMap.entryCount(local);
+            if (count == 1)
             {
-                if (compareItems(local[i], item))
-                {
-                    if (len == 1)
-                    {
-                        val = EMPTY_SET;
-                    }
-                    else
-                    {
-                        Object[] newElems = new Object[len - 1];
-                        System.arraycopy(local, i + 1, local, i, len - i - 1);
-                        System.arraycopy(local, 0, newElems, 0, len - 1);
-                        val = newElems;
-                    }
-                    return true;
-                }
+                val = EMPTY_SET;
+                return true;
             }
-            return false;    // not found
+
+            removeItem(local, i);
+            if (count - 1 < itemCapacity(local) >> 1)
+            {   // Less than half full, shrink (leaving room to grow without immediately reallocating)
+                val = resizeItems(local, (count - 1) + ((count - 1) >> 1));
+            }
+            return true;
         }
         else if (val instanceof Set)
         {   // > compactSize
@@ -254,12 +261,10 @@ public class CompactSet<E> extends AbstractSet<E>
 
             if (set.size() == compactSize())
             {   // Down to compactSize, need to switch to Object[]
-                Object[] entries = new Object[compactSize()];
-                Iterator<E> i = set.iterator();
-                int idx = 0;
-                while (i.hasNext())
+                Object[] entries = newItems(compactSize());
+                for (E next : set)
                 {
-                    entries[idx++] = i.next();
+                    appendItem(entries, next);
                 }
                 val = entries;
             }
@@ -275,10 +280,154 @@ public class CompactSet<E> extends AbstractSet<E>
         val = EMPTY_SET;
     }
 
+    /**
+     * Locate an item within the Object[] (1 to compactSize) storage.
+     * @return index of the item, or -1 if it is not present.
+     */
+    private int indexOf(Object[] entries, Object item)
+    {
+        final Object tail = entries[entries.length - 1];
+        if (tail instanceof int[])
+        {   // Only call equals() when the hashes match
+            final int[] meta = (int[]) tail;
+            final int count = meta[0];
+            final int hash = computeItemHashCode(item);
+            for (int i=0; i < count; i++)
+            {
+                if (meta[i + 1] == hash && compareItems(item, entries[i]))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        final int count = (Integer) tail;
+        for (int i=0; i < count; i++)
+        {
+            if (compareItems(item, entries[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of items the Object[] (1 to compactSize) storage can hold before it must be reallocated.
+     */
+    private static int itemCapacity(Object[] entries)
+    {
+        return entries.length - 1;
+    }
+
+    /**
+     * @return new, empty Object[] storage that can hold 'capacity' items, ending with its count (0), or with its
+     * int[] of item hashes when hash indexed.
+     */
+    private Object[] newItems(int capacity)
+    {
+        Object[] entries = new Object[capacity + 1];
+        entries[capacity] = isHashIndexed() ? new int[capacity + 1] : (Object) 0;
+        return entries;
+    }
+
+    /**
+     * @return copy of the passed in Object[] storage, reallocated to hold 'capacity' items.
+     */
+    private static Object[] resizeItems(Object[] entries, int capacity)
+    {
+        final int count = CompactMap.entryCount(entries);
+        final Object tail = entries[entries.length - 1];
+        Object[] resized = new Object[capacity + 1];
+        System.arraycopy(entries, 0, resized, 0, count);
+        if (tail instanceof int[])
+        {
+            int[] meta = new int[capacity + 1];
+            System.arraycopy(tail, 0, meta, 0, count + 1);
+            resized[capacity] = meta;
+        }
+        else
+        {
+            resized[capacity] = tail;
+        }
+        return resized;
+    }
+
+    /**
+     * Add an item to the end of the Object[] storage.  The caller ensures that the item is not already present and
+     * that there is room for it.
+     */
+    private void appendItem(Object[] entries, Object item)
+    {
+        final int last = entries.length - 1;
+        final int count = CompactMap.entryCount(entries);
+        entries[count] = item;
+        if (entries[last] instanceof int[])
+        {
+            int[] meta = (int[]) entries[last];
+            meta[count + 1] = computeItemHashCode(item);
+            meta[0] = count + 1;
+        }
+        else
+        {
+            entries[last] = count + 1;
+        }
+    }
+
+    /**
+     * Remove the item at index 'i', sliding the following items down to retain their order.
+     */
+    private static void removeItem(Object[] entries, int i)
+    {
+        final int last = entries.length - 1;
+        final int count = CompactMap.entryCount(entries);
+        System.arraycopy(entries, i + 1, entries, i, count - i - 1);
+        entries[count - 1] = null;      // release reference for GC
+        if (entries[last] instanceof int[])
+        {
+            int[] meta = (int[]) entries[last];
+            System.arraycopy(meta, i + 2, meta, i + 1, count - i - 1);
+            meta[0] = count - 1;
+        }
+        else
+        {
+            entries[last] = count - 1;
+        }
+    }
+
+    /**
+     * @return the internal storage: the Object[] or Set.  Used by CompactFootprint.
+     */
+    Object getStorage()
+    {
+        return val;
+    }
+
     /**
      * @return new empty Set instance to use when size() becomes > compactSize().
      */
     protected Set<E> getNewSet() { return new HashSet<>(compactSize() + 1); }
     protected boolean isCaseInsensitive() { return false; }
     protected int compactSize() { return 80; }
+
+    /**
+     * @return true to keep the hash of each item (computeItemHashCode()) in an int[] alongside the Object[] storage,
+     * so that contains(), add() and remove() only compare items whose hashes match.  Must return the same value for
+     * the life of the Set.
+     */
+    protected boolean isHashIndexed() { return isCaseInsensitive(); }
+
+    /**
+     * @return hash of the item, consistent with compareItems(): case-insensitive for Strings when isCaseInsensitive()
+     * returns true.
+     */
+    protected int computeItemHashCode(Object item)
+    {
+        if (item instanceof String && isCaseInsensitive())
+        {
+            return StringUtilities.hashCodeIgnoreCase((String) item);
+        }
+        return Objects.hashCode(item);
+    }
 }
@@ -0,0 +1,246 @@
+package com.cedarsoftware.util;
+
+import java.util.*;
+
+/**
+ * This Map uses very little memory (See CompactMap), and it is a SortedMap.  While 2 to compactSize()
+ * entries are held, they are kept in key order within the Object[] and found with a binary search.  When
+ * the Map has more than 'compactSize()' elements in it, the 'delegate' Map is a TreeMap.
+ * <p>
+ * Keys are ordered by their natural ordering (they must be Comparable), unless comparator() is overridden
+ * to return a Comparator.  For a case-insensitive sorted Map, override comparator() to return
+ * String.CASE_INSENSITIVE_ORDER and isCaseInsensitive() to return true.
+ * <p>
+ * The headMap(), tailMap() and subMap() views are backed by this Map.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class CompactSortedMap<K, V> extends CompactMap<K, V> implements SortedMap<K, V>
+{
+    private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>()
+    {
+        public int compare(Object o1, Object o2)
+        {
+            return ((Comparable<Object>) o1).compareTo(o2);
+        }
+    };
+
+    public CompactSortedMap() { }
+    public CompactSortedMap(Map<K ,V> other) { super(other); }
+    protected Map<K, V> getNewMap() { return new TreeMap<>(comparator()); }
+    protected Comparator<? super K> getOrdering()
+    {
+        Comparator<? super K> comparator = comparator();
+        if (comparator == null)
+        {
+            return NATURAL_ORDER;
+        }
+        return comparator;
+    }
+
+    /**
+     * @return Comparator used to order the keys, or null if the keys are ordered by their natural ordering.
+     */
+    public Comparator<? super K> comparator() { return null; }
+
+    public K firstKey() { return edgeKey(true); }
+    public K lastKey() { return edgeKey(false); }
+
+    public SortedMap<K, V> subMap(K fromKey, K toKey)
+    {
+        return new SubMap(true, fromKey, true, toKey);
+    }
+
+    public SortedMap<K, V> headMap(K toKey)
+    {
+        return new SubMap(false, null, true, toKey);
+    }
+
+    public SortedMap<K, V> tailMap(K fromKey)
+    {
+        return new SubMap(true, fromKey, false, null);
+    }
+
+    private int compare(Object k1, Object k2)
+    {
+        return ((Comparator<Object>) getOrdering()).compare(k1, k2);
+    }
+
+    /**
+     * Range view of the outer CompactSortedMap: [fromKey, toKey).  Reads and writes go through to the outer Map.
+     * Iteration walks the outer Map's entries, skipping those below fromKey and stopping at toKey.
+     */
+    private class SubMap extends AbstractMap<K, V> implements SortedMap<K, V>
+    {
+        private final boolean hasFrom;
+        private final K fromKey;
+        private final boolean hasTo;
+        private final K toKey;
+
+        private SubMap(boolean hasFrom, K fromKey, boolean hasTo, K toKey)
+        {
+            if (hasFrom && hasTo && compare(fromKey, toKey) > 0)
+            {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            this.hasFrom = hasFrom;
+            this.fromKey = fromKey;
+            this.hasTo = hasTo;
+            this.toKey = toKey;
+        }
+
+        private boolean tooLow(Object key) { return hasFrom && compare(key, fromKey) < 0; }
+        private boolean tooHigh(Object key) { return hasTo && compare(key, toKey) >= 0; }
+        private boolean inRange(Object key) { return !tooLow(key) && !tooHigh(key); }
+
+        public Comparator<? super K> comparator() { return CompactSortedMap.this.comparator(); }
+        public boolean containsKey(Object key) { return inRange(key) && CompactSortedMap.this.containsKey(key); }
+        public V get(Object key) { return inRange(key) ? CompactSortedMap.this.get(key) : null; }
+        public V remove(Object key) { return inRange(key) ? CompactSortedMap.this.remove(key) : null; }
+
+        public V put(K key, V value)
+        {
+            if (!inRange(key))
+            {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return CompactSortedMap.this.put(key, value);
+        }
+
+        public K firstKey()
+        {
+            Iterator<Entry<K, V>> i = entrySet().iterator();
+            if (!i.hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            return i.next().getKey();
+        }
+
+        public K lastKey()
+        {
+            Iterator<Entry<K, V>> i = entrySet().iterator();
+            if (!i.hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            K last = i.next().getKey();
+            while (i.hasNext())
+            {
+                last = i.next().getKey();
+            }
+            return last;
+        }
+
+        public SortedMap<K, V> subMap(K from, K to)
+        {
+            checkRange(from);
+            checkRange(to);
+            return new SubMap(true, from, true, to);
+        }
+
+        public SortedMap<K, V> headMap(K to)
+        {
+            checkRange(to);
+            return new SubMap(hasFrom, fromKey, true, to);
+        }
+
+        public SortedMap<K, V> tailMap(K from)
+        {
+            checkRange(from);
+            return new SubMap(true, from, hasTo, toKey);
+        }
+
+        private void checkRange(K key)
+        {
+            if (tooLow(key) || (hasTo && compare(key, toKey) > 0))
+            {
+                throw new IllegalArgumentException("key out of range");
+            }
+        }
+
+        public Set<Entry<K, V>> entrySet()
+        {
+            return new AbstractSet<Entry<K, V>>()
+            {
+                public int size()
+                {
+                    int size = 0;
+                    Iterator<Entry<K, V>> i = iterator();
+                    while (i.hasNext())
+                    {
+                        i.next();
+                        size++;
+                    }
+                    return size;
+                }
+
+                public Iterator<Entry<K, V>> iterator()
+                {
+                    final Iterator<Entry<K, V>> iter = CompactSortedMap.this.entrySet().iterator();
+                    return new Iterator<Entry<K, V>>()
+                    {
+                        Entry<K, V> next = advance();
+
+                        private Entry<K, V> advance()
+                        {
+                            while (iter.hasNext())
+                            {
+                                Entry<K, V> entry = iter.next();
+                                if (tooHigh(entry.getKey()))
+                                {
+                                    return null;
+                                }
+                                if (!tooLow(entry.getKey()))
+                                {
+                                    return entry;
+                                }
+                            }
+                            return null;
+                        }
+
+                        Entry<K, V> current = null;
+
+                        public boolean hasNext() { return next != null; }
+
+                        public Entry<K, V> next()
+                        {
+                            if (next == null)
+                            {
+                                throw new NoSuchElementException();
+                            }
+                            current = next;
+                            next = advance();
+                            return current;
+                        }
+
+                        public void remove()
+                        {
+                            if (current == null)
+                            {
+                                throw new IllegalStateException("remove() called on an Iterator before calling next()");
+                            }
+                            // The outer Map's iterators walk a copy, so removing from the outer Map is safe here.
+                            CompactSortedMap.this.remove(current.getKey());
+                            current = null;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.cedarsoftware.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe CaseInsensitiveMap, backed by a ConcurrentHashMap (writes lock only the bin of the key being written,
+ * reads do not lock).  Like CaseInsensitiveMap, String keys are treated case insensitively, yet their case is
+ * retained.  Unlike a CaseInsensitiveMap wrapping a ConcurrentHashMap, it is a ConcurrentMap: putIfAbsent(),
+ * remove(key, value) and both replace() methods are atomic, and go straight to the ConcurrentHashMap with the
+ * (interned) CaseInsensitiveString of the key.  On Java 8 and later, the ConcurrentMap default methods
+ * (computeIfAbsent(), merge(), ...) are built on those, and are therefore case insensitive as well.
+ * <p>
+ * The keySet() and entrySet() views, and their iterators, are weakly consistent: they never throw
+ * ConcurrentModificationException, and may or may not reflect changes made after they were created.  Removing an
+ * Entry through entrySet() (remove(), removeAll(), retainAll()) only removes the key while it is still mapped to
+ * that Entry's value.  Bulk operations (putAll(), removeAll(), retainAll(), equals(), hashCode()) are made up of
+ * individually atomic operations, they are not atomic as a whole.
+ * <p>
+ * As with ConcurrentHashMap, null keys and null values are not supported (NullPointerException).
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class ConcurrentCaseInsensitiveMap<K, V> extends CaseInsensitiveMap<K, V> implements ConcurrentMap<K, V>
+{
+    public ConcurrentCaseInsensitiveMap()
+    {
+        super(Collections.<K, V>emptyMap(), new ConcurrentHashMap<K, V>());
+    }
+
+    public ConcurrentCaseInsensitiveMap(int initialCapacity)
+    {
+        super(Collections.<K, V>emptyMap(), new ConcurrentHashMap<K, V>(initialCapacity));
+    }
+
+    /**
+     * @param m Map whose entries are copied into the new ConcurrentCaseInsensitiveMap.
+     */
+    public ConcurrentCaseInsensitiveMap(Map<K, V> m)
+    {
+        super(m, new ConcurrentHashMap<K, V>(Math.max(16, m.size())));
+    }
+
+    public V putIfAbsent(K key, V value)
+    {
+        return concurrentMap().putIfAbsent(wrap(key), value);
+    }
+
+    public boolean remove(Object key, Object value)
+    {
+        return concurrentMap().remove(wrap(key), value);
+    }
+
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        return concurrentMap().replace(wrap(key), oldValue, newValue);
+    }
+
+    public V replace(K key, V value)
+    {
+        return concurrentMap().replace(wrap(key), value);
+    }
+
+    public Set<Entry<K, V>> entrySet()
+    {
+        final Set<Entry<K, V>> entries = super.entrySet();
+        return new AbstractSet<Entry<K, V>>()
+        {
+            public int size() { return entries.size(); }
+            public boolean isEmpty() { return entries.isEmpty(); }
+            public void clear() { entries.clear(); }
+            public boolean contains(Object o) { return entries.contains(o); }
+            public Iterator<Entry<K, V>> iterator() { return entries.iterator(); }
+
+            public boolean remove(Object o)
+            {
+                if (!(o instanceof Entry))
+                {
+                    return false;
+                }
+                Entry<?, ?> that = (Entry<?, ?>) o;
+                return ConcurrentCaseInsensitiveMap.this.remove(that.getKey(), that.getValue());
+            }
+
+            public boolean removeAll(Collection<?> c)
+            {
+                boolean changed = false;
+                for (Object o : c)
+                {
+                    changed |= remove(o);
+                }
+                return changed;
+            }
+
+            public boolean retainAll(Collection<?> c)
+            {
+                // Create fast-access O(1) to all elements within passed in Collection
+                Map<Object, Object> other = new CaseInsensitiveMap<>();
+                for (Object o : c)
+                {
+                    if (o instanceof Entry)
+                    {
+                        other.put(((Entry<?, ?>) o).getKey(), ((Entry<?, ?>) o).getValue());
+                    }
+                }
+
+                boolean changed = false;
+                for (Entry<K, V> entry : entries)
+                {
+                    K key = entry.getKey();
+                    V value = entry.getValue();
+                    if (!other.containsKey(key) || !Objects.equals(other.get(key), value))
+                    {   // Only if it still holds the value seen
+                        changed |= ConcurrentCaseInsensitiveMap.this.remove(key, value);
+                    }
+                }
+                return changed;
+            }
+        };
+    }
+
+    private ConcurrentMap<K, V> concurrentMap()
+    {
+        return (ConcurrentMap<K, V>) getWrappedMap();
+    }
+
+    private K wrap(Object key)
+    {
+        return (K) (key instanceof String ? CaseInsensitiveString.of((String) key) : key);
+    }
+}
@@ -0,0 +1,440 @@
+package com.cedarsoftware.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Thread-safe, small memory footprint ConcurrentMap, for Maps that are read from many threads and written rarely
+ * (configuration, for example).  Like CompactMap, it holds everything in one member variable.  While 1 to
+ * compactSize() entries are held, that variable points to an immutable Object[] of the keys and values ([0] = key,
+ * [1] = value, [2] = next key, ...).  Readers read the volatile reference once and search that snapshot without
+ * locking.  Writers copy the Object[], change the copy, and publish it with a compare-and-set, retrying if another
+ * writer got there first (copy-on-write).
+ * <p>
+ * When size() becomes greater than compactSize(), the entries are moved to the ConcurrentMap returned from
+ * getNewMap() (a ConcurrentHashMap by default), and all later reads and writes go to it.  That switch is one way:
+ * the Map does not return to the Object[] when entries are removed, because writers in the ConcurrentHashMap would
+ * race with the copy back.
+ *
+ *     Methods you may want to override:
+ *
+ *     // ConcurrentMap you would like it to use when size() > compactSize().  ConcurrentHashMap is default
+ *     protected ConcurrentMap&lt;K, V&gt; getNewMap() { return new ConcurrentHashMap&lt;&gt;(compactSize() + 1); }
+ *
+ *     // When size() > than this amount, the ConcurrentMap returned from getNewMap() is used to store elements.
+ *     // Every write while compact copies the Object[], so keep it small.
+ *     protected int compactSize() { return 40; }
+ *
+ * As with ConcurrentHashMap, null keys and null values are not supported (NullPointerException), and the iterators
+ * are weakly consistent: they never throw ConcurrentModificationException, and iterate the Object[] snapshot that
+ * was current when the iterator was created.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class ConcurrentCompactMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>
+{
+    private static final Object[] EMPTY_ENTRIES = new Object[0];
+    private static final AtomicReferenceFieldUpdater<ConcurrentCompactMap, Object> VAL =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentCompactMap.class, Object.class, "val");
+    private volatile Object val = EMPTY_ENTRIES;
+
+    public ConcurrentCompactMap()
+    {
+        if (compactSize() < 1)
+        {
+            throw new IllegalStateException("compactSize() must be >= 1");
+        }
+    }
+
+    public ConcurrentCompactMap(Map<? extends K, ? extends V> other)
+    {
+        this();
+        putAll(other);
+    }
+
+    public int size()
+    {
+        Object v = val;
+        return v instanceof Object[] ? ((Object[]) v).length >> 1 : ((Map<K, V>) v).size();
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    public V get(Object key)
+    {
+        Object v = val;
+        if (v instanceof Object[])
+        {   // 1 to compactSize - search the snapshot
+            Object[] entries = (Object[]) v;
+            int i = indexOf(entries, key);
+            return i < 0 ? null : (V) entries[i + 1];
+        }
+        return ((Map<K, V>) v).get(key);
+    }
+
+    public boolean containsValue(Object value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException();
+        }
+        Object v = val;
+        if (v instanceof Object[])
+        {
+            Object[] entries = (Object[]) v;
+            for (int i=1; i < entries.length; i += 2)
+            {
+                if (entries[i].equals(value))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return ((Map<K, V>) v).containsValue(value);
+    }
+
+    public V put(K key, V value)
+    {
+        return write(key, null, value, false, false);
+    }
+
+    public V putIfAbsent(K key, V value)
+    {
+        return write(key, null, value, true, false);
+    }
+
+    public V replace(K key, V value)
+    {
+        return write(key, null, value, false, true);
+    }
+
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        if (oldValue == null)
+        {
+            throw new NullPointerException();
+        }
+        return write(key, oldValue, newValue, false, true) != null;
+    }
+
+    public V remove(Object key)
+    {
+        return delete(key, null);
+    }
+
+    public boolean remove(Object key, Object value)
+    {
+        return value != null && delete(key, value) != null;
+    }
+
+    public void clear()
+    {
+        while (true)
+        {
+            Object v = val;
+            if (v instanceof Object[])
+            {
+                if (VAL.compareAndSet(this, v, EMPTY_ENTRIES))
+                {
+                    return;
+                }
+            }
+            else
+            {
+                ((Map<K, V>) v).clear();
+                return;
+            }
+        }
+    }
+
+    public Set<Entry<K, V>> entrySet()
+    {
+        return new AbstractSet<Entry<K, V>>()
+        {
+            public Iterator<Entry<K, V>> iterator()
+            {
+                Object v = val;
+                if (!(v instanceof Object[]))
+                {
+                    return ((Map<K, V>) v).entrySet().iterator();
+                }
+
+                final Object[] entries = (Object[]) v;
+                return new Iterator<Entry<K, V>>()
+                {
+                    int index = 0;
+                    K current = null;
+
+                    public boolean hasNext() { return index < entries.length; }
+
+                    public Entry<K, V> next()
+                    {
+                        if (index >= entries.length)
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        current = (K) entries[index];
+                        V value = (V) entries[index + 1];
+                        index += 2;
+                        return new ConcurrentCompactMapEntry(current, value);
+                    }
+
+                    public void remove()
+                    {
+                        if (current == null)
+                        {
+                            throw new IllegalStateException("remove() called on an Iterator before calling next()");
+                        }
+                        ConcurrentCompactMap.this.remove(current);
+                        current = null;
+                    }
+                };
+            }
+
+            public int size() { return ConcurrentCompactMap.this.size(); }
+            public boolean isEmpty() { return ConcurrentCompactMap.this.isEmpty(); }
+            public void clear() { ConcurrentCompactMap.this.clear(); }
+            public boolean contains(Object o)
+            {   // faster than inherited method
+                if (!(o instanceof Entry))
+                {
+                    return false;
+                }
+                Entry<?, ?> entry = (Entry<?, ?>) o;
+                V value = get(entry.getKey());
+                return value != null && value.equals(entry.getValue());
+            }
+
+            public boolean remove(Object o)
+            {
+                if (!(o instanceof Entry))
+                {
+                    return false;
+                }
+                Entry<?, ?> entry = (Entry<?, ?>) o;
+                return ConcurrentCompactMap.this.remove(entry.getKey(), entry.getValue());
+            }
+        };
+    }
+
+    /**
+     * @return new empty ConcurrentMap instance to use when size() becomes > compactSize().
+     */
+    protected ConcurrentMap<K, V> getNewMap() { return new ConcurrentHashMap<>(compactSize() + 1); }
+
+    /**
+     * @return the number of entries held in the copy-on-write Object[] before switching to getNewMap().  Every
+     * write while compact copies the Object[], so this is smaller than CompactMap's default.
+     */
+    protected int compactSize() { return 40; }
+
+    CompactMap.LogicalValueType getLogicalValueType()
+    {
+        Object v = val;
+        if (v instanceof Object[])
+        {
+            return v == EMPTY_ENTRIES ? CompactMap.LogicalValueType.EMPTY : CompactMap.LogicalValueType.ARRAY;
+        }
+        return CompactMap.LogicalValueType.MAP;
+    }
+
+    /**
+     * Map.Entry handed out by the iterators.  setValue() writes through to the outer ConcurrentCompactMap.
+     */
+    private class ConcurrentCompactMapEntry extends AbstractMap.SimpleEntry<K, V>
+    {
+        private ConcurrentCompactMapEntry(K key, V value)
+        {
+            super(key, value);
+        }
+
+        public V setValue(V value)
+        {
+            if (value == null)
+            {
+                throw new NullPointerException();
+            }
+            V save = super.setValue(value);
+            ConcurrentCompactMap.this.put(getKey(), value);     // "Transmit" (write-thru) to underlying Map.
+            return save;
+        }
+    }
+
+    /**
+     * @return index of the key within the Object[] snapshot, or -1 if not present.
+     * @throws NullPointerException if the key is null, as ConcurrentHashMap does.
+     */
+    private static int indexOf(Object[] entries, Object key)
+    {
+        if (key == null)
+        {
+            throw new NullPointerException();
+        }
+        for (int i=0; i < entries.length; i += 2)
+        {
+            if (key.equals(entries[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Shared implementation of put(), putIfAbsent() and both replace() methods.  Publishes a new Object[] with the
+     * change (copy-on-write), or moves the entries to getNewMap() when the Object[] is full, retrying whenever another
+     * writer has published first.
+     * @param expected when not null, only replace a value equal to it (replace(K, V, V)), and return it on success.
+     * @param ifAbsent only add, never replace (putIfAbsent).
+     * @param ifPresent only replace, never add (replace).
+     * @return previous value, or null if there was none.
+     */
+    private V write(K key, V expected, V value, boolean ifAbsent, boolean ifPresent)
+    {
+        if (key == null || value == null)
+        {
+            throw new NullPointerException();
+        }
+
+        while (true)
+        {
+            Object v = val;
+            if (!(v instanceof Object[]))
+            {   // > compactSize
+                ConcurrentMap<K, V> map = (ConcurrentMap<K, V>) v;
+                if (expected != null)
+                {
+                    return map.replace(key, expected, value) ? expected : null;
+                }
+                if (ifAbsent)
+                {
+                    return map.putIfAbsent(key, value);
+                }
+                return ifPresent ? map.replace(key, value) : map.put(key, value);
+            }
+
+            Object[] entries = (Object[]) v;
+            int i = indexOf(entries, key);
+            Object next;
+            V result;
+            if (i >= 0)
+            {   // Key present
+                V old = (V) entries[i + 1];
+                if (ifAbsent || (expected != null && !expected.equals(old)))
+                {
+                    return expected == null ? old : null;
+                }
+                Object[] copy = entries.clone();
+                copy[i + 1] = value;
+                next = copy;
+                result = old;
+            }
+            else
+            {   // Key not present
+                if (ifPresent)
+                {
+                    return null;
+                }
+                if (entries.length >> 1 < compactSize())
+                {
+                    Object[] copy = Arrays.copyOf(entries, entries.length + 2);
+                    copy[entries.length] = key;
+                    copy[entries.length + 1] = value;
+                    next = copy;
+                }
+                else
+                {   // Switch to the ConcurrentMap
+                    ConcurrentMap<K, V> map = getNewMap();
+                    for (int j=0; j < entries.length; j += 2)
+                    {
+                        map.put((K) entries[j], (V) entries[j + 1]);
+                    }
+                    map.put(key, value);
+                    next = map;
+                }
+                result = null;
+            }
+
+            if (VAL.compareAndSet(this, v, next))
+            {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Shared implementation of both remove() methods.
+     * @param expected when not null, only remove when the value is equal to it.
+     * @return removed value, or null if nothing was removed.
+     */
+    private V delete(Object key, Object expected)
+    {
+        while (true)
+        {
+            Object v = val;
+            if (!(v instanceof Object[]))
+            {   // > compactSize
+                ConcurrentMap<K, V> map = (ConcurrentMap<K, V>) v;
+                if (expected != null)
+                {
+                    return map.remove(key, expected) ? (V) expected : null;
+                }
+                return map.remove(key);
+            }
+
+            Object[] entries = (Object[]) v;
+            int i = indexOf(entries, key);
+            if (i < 0)
+            {
+                return null;
+            }
+            V old = (V) entries[i + 1];
+            if (expected != null && !expected.equals(old))
+            {
+                return null;
+            }
+
+            Object[] copy;
+            if (entries.length == 2)
+            {
+                copy = EMPTY_ENTRIES;
+            }
+            else
+            {
+                copy = new Object[entries.length - 2];
+                System.arraycopy(entries, 0, copy, 0, i);
+                System.arraycopy(entries, i + 2, copy, i, entries.length - i - 2);
+            }
+
+            if (VAL.compareAndSet(this, v, copy))
+            {
+                return old;
+            }
+        }
+    }
+}
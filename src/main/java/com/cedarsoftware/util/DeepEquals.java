@@ -5,6 +5,9 @@ import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.cedarsoftware.util.Converter.convert2BigDecimal;
 import static com.cedarsoftware.util.Converter.convert2boolean;
@@ -26,7 +29,9 @@ import static com.cedarsoftware.util.ReflectionUtils.getClassLoaderName;
  * This method will handle cycles correctly, for example A-&gt;B-&gt;C-&gt;A.  Suppose a and
  * a' are two separate instances of A with the same values for all fields on
  * A, B, and C.  Then a.deepEquals(a') will return true.  It uses cycle detection
- * storing visited objects in a Set to prevent endless loops.<br><br>
+ * storing visited objects in a Set to prevent endless loops.  The pairs of objects to compare are kept on an
+ * array-backed stack, and the visited pairs in an open-addressed table keyed by System.identityHashCode(), so
+ * that objects' own hashCode() methods are never called to track them.<br><br>
  *
  * Numbers will be compared for value.  Meaning an int that has the same value
  * as a long will match.  Similarly, a double that has the same value as a long
@@ -57,11 +62,21 @@ public class DeepEquals
 
     public static final String IGNORE_CUSTOM_EQUALS = "ignoreCustomEquals";
     public static final String ALLOW_STRINGS_TO_MATCH_NUMBERS = "stringsCanMatchNumbers";
+    public static final String PARALLEL = "parallel";
+    // Pairs on a parallel task's stack beyond which half of them are handed to a new task
+    private static final int SPLIT_PAIRS = 256;
     private static final Map<String, Boolean> _customEquals = new ConcurrentHashMap<>();
     private static final Map<String, Boolean> _customHash = new ConcurrentHashMap<>();
     private static final double doubleEplison = 1e-15;
     private static final double floatEplison = 1e-6;
     private static final Set<Class> prims = new HashSet<>();
+    private static final ClassValue<ClassComparator> comparators = new ClassValue<ClassComparator>()
+    {
+        protected ClassComparator computeValue(Class<?> c)
+        {
+            return new ClassComparator(c);
+        }
+    };
 
     static
     {
@@ -75,33 +90,371 @@ public class DeepEquals
         prims.add(Short.class);
     }
 
-    private final static class ItemsToCompare
+    /**
+     * Stack of the pairs of objects left to compare, held interleaved in one Object[] (no object per pair).
+     * pop() places the pair in key1 and key2.
+     */
+    private final static class PairStack
     {
-        private final Object _key1;
-        private final Object _key2;
+        private Object[] items = new Object[32];
+        private int size;
+        private Object key1;
+        private Object key2;
 
-        private ItemsToCompare(Object k1, Object k2)
+        private void push(Object k1, Object k2)
         {
-            _key1 = k1;
-            _key2 = k2;
+            if (size == items.length)
+            {
+                items = Arrays.copyOf(items, size << 1);
+            }
+            items[size++] = k1;
+            items[size++] = k2;
+        }
+
+        private boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        private void pop()
+        {
+            key2 = items[--size];
+            key1 = items[--size];
+            items[size] = null;
+            items[size + 1] = null;
+        }
+
+        private int pairs()
+        {
+            return size >> 1;
+        }
+
+        /**
+         * Move the bottom half of the pairs (pushed first, usually the roots of the larger sub-graphs) to a new
+         * PairStack.
+         */
+        private PairStack splitBottomHalf()
+        {
+            int half = (size >> 2) << 1;
+            PairStack bottom = new PairStack();
+            bottom.items = Arrays.copyOf(items, Math.max(32, half << 1));
+            Arrays.fill(bottom.items, half, bottom.items.length, null);
+            bottom.size = half;
+            System.arraycopy(items, half, items, 0, size - half);
+            Arrays.fill(items, size - half, size, null);
+            size -= half;
+            return bottom;
+        }
+    }
+
+    /**
+     * Thread-safe PairSet: IdentityPairSets, each guarded by its own lock, the stripe chosen by the high bits of
+     * the pair's hash (the low bits pick the slot within the stripe).
+     */
+    private final static class ConcurrentPairSet implements PairSet
+    {
+        private final IdentityPairSet[] stripes = new IdentityPairSet[64];
+
+        private ConcurrentPairSet()
+        {
+            for (int i = 0; i < stripes.length; i++)
+            {
+                stripes[i] = new IdentityPairSet();
+            }
         }
 
-        public boolean equals(Object other)
+        public boolean add(Object k1, Object k2)
         {
-            if (!(other instanceof ItemsToCompare))
+            IdentityPairSet stripe = stripes[IdentityPairSet.hash(k1, k2) >>> 26];
+            synchronized (stripe)
+            {
+                return stripe.add(k1, k2);
+            }
+        }
+    }
+
+    /**
+     * Fork/join task of a parallel deepEquals(): runs compare() on its own stack, and while doing so, hands half of
+     * its pairs to a new (forked) task whenever it holds more than SPLIT_PAIRS and the pool is short of queued tasks.
+     * The first task to find a difference sets the shared 'different' flag, which every task polls.
+     */
+    private final static class CompareTask extends RecursiveTask<Boolean>
+    {
+        private final PairStack stack;
+        private final ConcurrentPairSet visited;
+        private final Set<String> ignoreCustomEquals;
+        private final boolean allowStringsToMatchNumbers;
+        private final AtomicBoolean different;      // shared by all tasks of one comparison
+        private final List<CompareTask> forked = new ArrayList<>();
+
+        private CompareTask(PairStack stack, ConcurrentPairSet visited, Set<String> ignoreCustomEquals, boolean allowStringsToMatchNumbers, AtomicBoolean different)
+        {
+            this.stack = stack;
+            this.visited = visited;
+            this.ignoreCustomEquals = ignoreCustomEquals;
+            this.allowStringsToMatchNumbers = allowStringsToMatchNumbers;
+            this.different = different;
+        }
+
+        protected Boolean compute()
+        {
+            boolean equal = compare(stack, visited, ignoreCustomEquals, allowStringsToMatchNumbers, this);
+            if (!equal)
+            {
+                different.set(true);
+            }
+            for (CompareTask task : forked)
+            {   // Once 'different' is set, they return quickly
+                equal &= task.join();
+            }
+            return equal;
+        }
+
+        /**
+         * Called by compare() before each pair: split off a new task if worthwhile.
+         * @return false to stop, because another task found a difference.
+         */
+        private boolean poll()
+        {
+            if (different.get())
             {
                 return false;
             }
+            if (stack.pairs() > SPLIT_PAIRS && getSurplusQueuedTaskCount() < 2)
+            {
+                CompareTask task = new CompareTask(stack.splitBottomHalf(), visited, ignoreCustomEquals, allowStringsToMatchNumbers, different);
+                forked.add(task);
+                task.fork();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * ForkJoinPool shared by parallel deepEquals() calls, created on first use (lazy holder).
+     */
+    private final static class SharedPool
+    {
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    /**
+     * How the instances of one class are compared (and hashed) field by field, built once per class.  The fields
+     * from ReflectionUtils.getDeepDeclaredFields() are split into primitive fields, read with the typed Field
+     * accessors (getInt(), getDouble(), ...) and compared without boxing, and reference fields, whose values are
+     * pushed onto the stack unless they are the same instance.  It also holds hasCustomEquals() and
+     * hasCustomHashCode() for the class.
+     */
+    private final static class ClassComparator
+    {
+        private final boolean customEquals;
+        private final boolean customHashCode;
+        private final Field[] primitives;
+        private final Class[] primitiveTypes;
+        private final Field[] references;
+
+        private ClassComparator(Class<?> c)
+        {
+            customEquals = hasCustomEquals(c);
+            customHashCode = hasCustomHashCode(c);
+            List<Field> prim = new ArrayList<>();
+            List<Field> refs = new ArrayList<>();
+            for (Field field : ReflectionUtils.getDeepDeclaredFields(c))
+            {
+                (field.getType().isPrimitive() ? prim : refs).add(field);
+            }
+            primitives = prim.toArray(new Field[prim.size()]);
+            primitiveTypes = new Class[primitives.length];
+            for (int i = 0; i < primitives.length; i++)
+            {
+                primitiveTypes[i] = primitives[i].getType();
+            }
+            references = refs.toArray(new Field[refs.size()]);
+        }
+
+        /**
+         * Compare the primitive fields of a and b (same class), then push the pairs of reference field values that
+         * are not the same instance.  Fields that cannot be read are skipped.
+         * @return false if a primitive field differs, or a reference field is null on one side only.
+         */
+        private boolean compareFields(Object a, Object b, PairStack stack)
+        {
+            for (int i = 0; i < primitives.length; i++)
+            {
+                try
+                {
+                    if (!comparePrimitive(primitives[i], primitiveTypes[i], a, b))
+                    {
+                        return false;
+                    }
+                }
+                catch (Exception ignored)
+                { }
+            }
+            for (Field field : references)
+            {
+                try
+                {
+                    Object v1 = field.get(a);
+                    Object v2 = field.get(b);
+                    if (v1 != v2)
+                    {
+                        if (v1 == null || v2 == null)
+                        {
+                            return false;
+                        }
+                        stack.push(v1, v2);
+                    }
+                }
+                catch (Exception ignored)
+                { }
+            }
+            return true;
+        }
+
+        /**
+         * @return sum of the hashCode() of the boxed primitive field values of o (of Math.round() for double and
+         * float) that are not yet in 'visited', after pushing the non-null reference field values onto the stack.
+         * Primitive values go through 'visited' just like the boxed values reached through references, so that
+         * equal values are counted once per graph.
+         */
+        private int hashFields(Object o, Set<Object> visited, List<Object> stack)
+        {
+            int hash = 0;
+            for (Field field : primitives)
+            {
+                try
+                {
+                    Object value = field.get(o);
+                    if (value instanceof Double || value instanceof Float)
+                    {   // just take the integral value, as deepHashCode() does for a boxed Double or Float
+                        value = Math.round(((Number) value).doubleValue());
+                    }
+                    if (visited.add(value))
+                    {
+                        hash += value.hashCode();
+                    }
+                }
+                catch (Exception ignored)
+                { }
+            }
+            for (Field field : references)
+            {
+                try
+                {
+                    Object value = field.get(o);
+                    if (value != null)
+                    {
+                        stack.add(value);
+                    }
+                }
+                catch (Exception ignored)
+                { }
+            }
+            return hash;
+        }
 
-            ItemsToCompare that = (ItemsToCompare) other;
-            return _key1 == that._key1 && _key2 == that._key2;
+        private static boolean comparePrimitive(Field field, Class type, Object a, Object b) throws IllegalAccessException
+        {
+            if (type == int.class)
+            {
+                return field.getInt(a) == field.getInt(b);
+            }
+            else if (type == long.class)
+            {
+                return field.getLong(a) == field.getLong(b);
+            }
+            else if (type == double.class)
+            {
+                return nearlyEqual(field.getDouble(a), field.getDouble(b), doubleEplison);
+            }
+            else if (type == boolean.class)
+            {
+                return field.getBoolean(a) == field.getBoolean(b);
+            }
+            else if (type == float.class)
+            {
+                return nearlyEqual(field.getFloat(a), field.getFloat(b), floatEplison);
+            }
+            else if (type == char.class)
+            {
+                return field.getChar(a) == field.getChar(b);
+            }
+            else if (type == short.class)
+            {
+                return field.getShort(a) == field.getShort(b);
+            }
+            return field.getByte(a) == field.getByte(b);
         }
+    }
+
+    private interface PairSet
+    {
+        /**
+         * @return true if the pair was added, false if it was already present.
+         */
+        boolean add(Object k1, Object k2);
+    }
+
+    /**
+     * Set of (non-null) pairs of objects, compared by identity, in an open-addressed (linear probing) table that
+     * holds each pair interleaved in an Object[], and hashes with System.identityHashCode().
+     */
+    private final static class IdentityPairSet implements PairSet
+    {
+        private Object[] table = new Object[64];    // 32 slots
+        private int size;
 
-        public int hashCode()
+        public boolean add(Object k1, Object k2)
         {
-            int h1 = _key1 != null ? _key1.hashCode() : 0;
-            int h2 = _key2 != null ? _key2.hashCode() : 0;
-            return h1 + h2;
+            Object[] t = table;
+            int mask = (t.length >> 1) - 1;
+            int i = hash(k1, k2) & mask;
+            Object k;
+            while ((k = t[i << 1]) != null)
+            {
+                if (k == k1 && t[(i << 1) + 1] == k2)
+                {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            t[i << 1] = k1;
+            t[(i << 1) + 1] = k2;
+            if (++size << 2 > t.length)
+            {   // More than 1/2 full
+                resize();
+            }
+            return true;
+        }
+
+        private void resize()
+        {
+            Object[] old = table;
+            Object[] t = new Object[old.length << 1];
+            int mask = (t.length >> 1) - 1;
+            for (int j = 0; j < old.length; j += 2)
+            {
+                Object k1 = old[j];
+                if (k1 != null)
+                {
+                    int i = hash(k1, old[j + 1]) & mask;
+                    while (t[i << 1] != null)
+                    {
+                        i = (i + 1) & mask;
+                    }
+                    t[i << 1] = k1;
+                    t[(i << 1) + 1] = old[j + 1];
+                }
+            }
+            table = t;
+        }
+
+        private static int hash(Object k1, Object k2)
+        {
+            int h = System.identityHashCode(k1) * 31 + System.identityHashCode(k2);
+            h *= 0x9E3779B9;    // Spread across the table
+            return h ^ (h >>> 16);
         }
     }
 
@@ -159,7 +512,13 @@ public class DeepEquals
      *                It is a black-list of classes that will not be compared
      *                using .equals() even if the classes have a custom .equals() method
      *                present.  If it is and empty set, then no custom .equals() methods
-     *                will be called.
+     *                will be called.  If PARALLEL is true (or a ForkJoinPool), the graphs
+     *                are compared by fork/join tasks, on a shared ForkJoinPool (or the one
+     *                passed in): whenever a task has a large number of pairs left to compare
+     *                (for example, the elements of a large array, Collection or Map), half of
+     *                them are handed to a new task.  The tasks share a thread-safe visited set,
+     *                and all of them stop at the first difference found.  It pays off for large
+     *                graphs only.
      *
      * @return true if a is equivalent to b, false otherwise.  Equivalent means that
      * all field values of both subgraphs are the same, either at the field level
@@ -168,20 +527,39 @@ public class DeepEquals
      */
     public static boolean deepEquals(Object a, Object b, Map<?, ?> options)
     {
-        Set<ItemsToCompare> visited = new HashSet<>();
-        Deque<ItemsToCompare> stack = new LinkedList<>();
+        PairStack stack = new PairStack();
         Set<String> ignoreCustomEquals = (Set<String>) options.get(IGNORE_CUSTOM_EQUALS);
         final boolean allowStringsToMatchNumbers = convert2boolean(options.get(ALLOW_STRINGS_TO_MATCH_NUMBERS));
 
-        stack.addFirst(new ItemsToCompare(a, b));
+        stack.push(a, b);
 
-        while (!stack.isEmpty())
+        Object parallel = options.get(PARALLEL);
+        if (parallel instanceof ForkJoinPool || convert2boolean(parallel))
         {
-            ItemsToCompare itemsToCompare = stack.removeFirst();
-            visited.add(itemsToCompare);
+            ForkJoinPool pool = parallel instanceof ForkJoinPool ? (ForkJoinPool) parallel : SharedPool.POOL;
+            CompareTask task = new CompareTask(stack, new ConcurrentPairSet(), ignoreCustomEquals, allowStringsToMatchNumbers, new AtomicBoolean());
+            return pool.invoke(task);
+        }
+        return compare(stack, new IdentityPairSet(), ignoreCustomEquals, allowStringsToMatchNumbers, null);
+    }
 
-            final Object key1 = itemsToCompare._key1;
-            final Object key2 = itemsToCompare._key2;
+    /**
+     * Compare the pairs on the stack, and the pairs they lead to, until the stack is empty or a difference is found.
+     * @param visited pairs already compared (or being compared)
+     * @param task the fork/join task running the comparison, or null
+     * @return false if a difference was found (or another task found one), true otherwise.
+     */
+    private static boolean compare(PairStack stack, PairSet visited, Set<String> ignoreCustomEquals, boolean allowStringsToMatchNumbers, CompareTask task)
+    {
+        while (!stack.isEmpty())
+        {
+            if (task != null && !task.poll())
+            {   // Another task found a difference
+                return false;
+            }
+            stack.pop();
+            final Object key1 = stack.key1;
+            final Object key2 = stack.key2;
             if (key1 == key2)
             {   // Same instance is always equal to itself.
                 continue;
@@ -227,7 +605,12 @@ public class DeepEquals
                 }
                 continue;   // Nothing further to push on the stack
             }
-            
+
+            if (!visited.add(key1, key2))
+            {   // Already compared (or being compared, in a cycle)
+                continue;
+            }
+
             if (key1 instanceof Collection)
             {   // If Collections, they both must be Collection
                 if (!(key2 instanceof Collection))
@@ -286,7 +669,7 @@ public class DeepEquals
             // the array must be deeply equivalent.
             if (key1Class.isArray())
             {
-                if (!compareArrays(key1, key2, stack, visited))
+                if (!compareArrays(key1, key2, stack))
                 {
                     return false;
                 }
@@ -297,7 +680,7 @@ public class DeepEquals
             // elements must be in the same order to be equivalent Sets.
             if (key1 instanceof SortedSet)
             {
-                if (!compareOrderedCollection((Collection) key1, (Collection) key2, stack, visited))
+                if (!compareOrderedCollection((Collection) key1, (Collection) key2, stack))
                 {
                     return false;
                 }
@@ -308,7 +691,7 @@ public class DeepEquals
             // be assumed, a temporary Map must be created, however the comparison still runs in O(N) time.
             if (key1 instanceof Set)
             {
-                if (!compareUnorderedCollection((Collection) key1, (Collection) key2, stack, visited))
+                if (!compareUnorderedCollection((Collection) key1, (Collection) key2, stack))
                 {
                     return false;
                 }
@@ -319,7 +702,7 @@ public class DeepEquals
             // matters, therefore this comparison is faster than using unordered comparison.
             if (key1 instanceof Collection)
             {
-                if (!compareOrderedCollection((Collection) key1, (Collection) key2, stack, visited))
+                if (!compareOrderedCollection((Collection) key1, (Collection) key2, stack))
                 {
                     return false;
                 }
@@ -330,7 +713,7 @@ public class DeepEquals
             // Maps can be compared in O(N) time due to their ordering.
             if (key1 instanceof SortedMap)
             {
-                if (!compareSortedMap((SortedMap) key1, (SortedMap) key2, stack, visited))
+                if (!compareSortedMap((SortedMap) key1, (SortedMap) key2, stack))
                 {
                     return false;
                 }
@@ -342,7 +725,7 @@ public class DeepEquals
             // comparison still runs in O(N) time.
             if (key1 instanceof Map)
             {
-                if (!compareUnorderedMap((Map) key1, (Map) key2, stack, visited))
+                if (!compareUnorderedMap((Map) key1, (Map) key2, stack))
                 {
                     return false;
                 }
@@ -353,7 +736,8 @@ public class DeepEquals
             // the caller has not specified any classes to skip ... OR
             // the caller has specified come classes to ignore and this one is not in the list ... THEN
             // compare using the custom equals.
-            if (hasCustomEquals(key1Class))
+            ClassComparator comparator = comparators.get(key1Class);
+            if (comparator.customEquals)
             {
                 if (ignoreCustomEquals == null || (ignoreCustomEquals.size() > 0 && !ignoreCustomEquals.contains(key1Class)))
                 {
@@ -365,20 +749,9 @@ public class DeepEquals
                 }
             }
 
-            Collection<Field> fields = ReflectionUtils.getDeepDeclaredFields(key1Class);
-
-            for (Field field : fields)
+            if (!comparator.compareFields(key1, key2, stack))
             {
-                try
-                {
-                    ItemsToCompare dk = new ItemsToCompare(field.get(key1), field.get(key2));
-                    if (!visited.contains(dk))
-                    {
-                        stack.addFirst(dk);
-                    }
-                }
-                catch (Exception ignored)
-                { }
+                return false;
             }
         }
 
@@ -396,10 +769,9 @@ public class DeepEquals
      * @param array1 [] type (Object[], String[], etc.)
      * @param array2 [] type (Object[], String[], etc.)
      * @param stack add items to compare to the Stack (Stack versus recursion)
-     * @param visited Set of objects already compared (prevents cycles)
      * @return true if the two arrays are the same length and contain deeply equivalent items.
      */
-    private static boolean compareArrays(Object array1, Object array2, Deque stack, Set visited)
+    private static boolean compareArrays(Object array1, Object array2, PairStack stack)
     {
         // Same instance check already performed...
 
@@ -409,27 +781,84 @@ public class DeepEquals
             return false;
         }
 
+        Class componentType = array1.getClass().getComponentType();
+        if (componentType.isPrimitive())
+        {   // Both arrays are of the same class: compare the elements without boxing them
+            return comparePrimitiveArrays(array1, array2, componentType);
+        }
+
         for (int i = 0; i < len; i++)
         {
-            ItemsToCompare dk = new ItemsToCompare(Array.get(array1, i), Array.get(array2, i));
-            if (!visited.contains(dk))
-            {   // push contents for further comparison
-                stack.addFirst(dk);
-            }
+            // push contents for further comparison
+            stack.push(Array.get(array1, i), Array.get(array2, i));
         }
         return true;
     }
 
+    /**
+     * Compare two primitive arrays of the same type and length, element by element.  double and float elements are
+     * compared within the same tolerance as Double and Float values.
+     */
+    private static boolean comparePrimitiveArrays(Object array1, Object array2, Class componentType)
+    {
+        if (componentType == double.class)
+        {
+            double[] a = (double[]) array1;
+            double[] b = (double[]) array2;
+            for (int i = 0; i < a.length; i++)
+            {
+                if (!nearlyEqual(a[i], b[i], doubleEplison))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        else if (componentType == float.class)
+        {
+            float[] a = (float[]) array1;
+            float[] b = (float[]) array2;
+            for (int i = 0; i < a.length; i++)
+            {
+                if (!nearlyEqual(a[i], b[i], floatEplison))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        else if (componentType == int.class)
+        {
+            return Arrays.equals((int[]) array1, (int[]) array2);
+        }
+        else if (componentType == long.class)
+        {
+            return Arrays.equals((long[]) array1, (long[]) array2);
+        }
+        else if (componentType == byte.class)
+        {
+            return Arrays.equals((byte[]) array1, (byte[]) array2);
+        }
+        else if (componentType == char.class)
+        {
+            return Arrays.equals((char[]) array1, (char[]) array2);
+        }
+        else if (componentType == boolean.class)
+        {
+            return Arrays.equals((boolean[]) array1, (boolean[]) array2);
+        }
+        return Arrays.equals((short[]) array1, (short[]) array2);
+    }
+
     /**
      * Deeply compare two Collections that must be same length and in same order.
      * @param col1 First collection of items to compare
      * @param col2 Second collection of items to compare
      * @param stack add items to compare to the Stack (Stack versus recursion)
-     * @param visited Set of objects already compared (prevents cycles)
      * value of 'true' indicates that the Collections may be equal, and the sets
      * items will be added to the Stack for further comparison.
      */
-    private static boolean compareOrderedCollection(Collection col1, Collection col2, Deque stack, Set visited)
+    private static boolean compareOrderedCollection(Collection col1, Collection col2, PairStack stack)
     {
         // Same instance check already performed...
 
@@ -443,17 +872,14 @@ public class DeepEquals
 
         while (i1.hasNext())
         {
-            ItemsToCompare dk = new ItemsToCompare(i1.next(), i2.next());
-            if (!visited.contains(dk))
-            {   // push contents for further comparison
-                stack.addFirst(dk);
-            }
+            // push contents for further comparison
+            stack.push(i1.next(), i2.next());
         }
         return true;
     }
 
     /**
-     * Deeply compare the two sets referenced by ItemsToCompare.  This method attempts
+     * Deeply compare the two sets.  This method attempts
      * to quickly determine inequality by length, then if lengths match, it
      * places one collection into a temporary Map by deepHashCode(), so that it
      * can walk the other collection and look for each item in the map, which
@@ -462,13 +888,11 @@ public class DeepEquals
      * @param col1 First collection of items to compare
      * @param col2 Second collection of items to compare
      * @param stack add items to compare to the Stack (Stack versus recursion)
-     * @param visited Set containing items that have already been compared,
-     * so as to prevent cycles.
      * @return boolean false if the Collections are for certain not equals. A
      * value of 'true' indicates that the Collections may be equal, and the sets
      * items will be added to the Stack for further comparison.
      */
-    private static boolean compareUnorderedCollection(Collection col1, Collection col2, Deque stack, Set visited)
+    private static boolean compareUnorderedCollection(Collection col1, Collection col2, PairStack stack)
     {
         // Same instance check already performed...
 
@@ -500,11 +924,8 @@ public class DeepEquals
 
             if (other.size() == 1)
             {   // no hash collision, items must be equivalent or deepEquals is false
-                ItemsToCompare dk = new ItemsToCompare(o, other.iterator().next());
-                if (!visited.contains(dk))
-                {   // Place items on 'stack' for future equality comparison.
-                    stack.addFirst(dk);
-                }
+                // Place items on 'stack' for future equality comparison.
+                stack.push(o, other.iterator().next());
             }
             else
             {   // hash collision: try all collided items against the current item (if 1 equals, we are good - remove it
@@ -524,11 +945,10 @@ public class DeepEquals
      * @param map1 SortedMap one
      * @param map2 SortedMap two
      * @param stack add items to compare to the Stack (Stack versus recursion)
-     * @param visited Set containing items that have already been compared, to prevent cycles.
      * @return false if the Maps are for certain not equals.  'true' indicates that 'on the surface' the maps
      * are equal, however, it will place the contents of the Maps on the stack for further comparisons.
      */
-    private static boolean compareSortedMap(SortedMap map1, SortedMap map2, Deque stack, Set visited)
+    private static boolean compareSortedMap(SortedMap map1, SortedMap map2, PairStack stack)
     {
         // Same instance check already performed...
 
@@ -546,17 +966,9 @@ public class DeepEquals
             Map.Entry entry2 = (Map.Entry)i2.next();
 
             // Must split the Key and Value so that Map.Entry's equals() method is not used.
-            ItemsToCompare dk = new ItemsToCompare(entry1.getKey(), entry2.getKey());
-            if (!visited.contains(dk))
-            {   // Push Keys for further comparison
-                stack.addFirst(dk);
-            }
-
-            dk = new ItemsToCompare(entry1.getValue(), entry2.getValue());
-            if (!visited.contains(dk))
-            {   // Push values for further comparison
-                stack.addFirst(dk);
-            }
+            // Push keys and values for further comparison
+            stack.push(entry1.getKey(), entry2.getKey());
+            stack.push(entry1.getValue(), entry2.getValue());
         }
         return true;
     }
@@ -567,11 +979,10 @@ public class DeepEquals
      * @param map1 Map one
      * @param map2 Map two
      * @param stack add items to compare to the Stack (Stack versus recursion)
-     * @param visited Set containing items that have already been compared, to prevent cycles.
      * @return false if the Maps are for certain not equals.  'true' indicates that 'on the surface' the maps
      * are equal, however, it will place the contents of the Maps on the stack for further comparisons.
      */
-    private static boolean compareUnorderedMap(Map map1, Map map2, Deque stack, Set visited)
+    private static boolean compareUnorderedMap(Map map1, Map map2, PairStack stack)
     {
         // Same instance check already performed...
 
@@ -608,17 +1019,9 @@ public class DeepEquals
             if (other.size() == 1)
             {
                 Map.Entry entry2 = other.iterator().next();
-                ItemsToCompare dk = new ItemsToCompare(entry.getKey(), entry2.getKey());
-                if (!visited.contains(dk))
-                {   // Push keys for further comparison
-                    stack.addFirst(dk);
-                }
-
-                dk = new ItemsToCompare(entry.getValue(), entry2.getValue());
-                if (!visited.contains(dk))
-                {   // Push values for further comparison
-                    stack.addFirst(dk);
-                }
+                // Push keys and values for further comparison
+                stack.push(entry.getKey(), entry2.getKey());
+                stack.push(entry.getValue(), entry2.getValue());
             }
             else
             {   // hash collision: try all collided items against the current item (if 1 equals, we are good - remove it
@@ -771,40 +1174,38 @@ public class DeepEquals
     public static int deepHashCode(Object obj)
     {
         Set<Object> visited = new HashSet<>();
-        LinkedList<Object> stack = new LinkedList<>();
-        stack.addFirst(obj);
+        List<Object> stack = new ArrayList<>();     // The hash is a sum, so the order of traversal does not matter
+        stack.add(obj);
         int hash = 0;
 
         while (!stack.isEmpty())
         {
-            obj = stack.removeFirst();
-            if (obj == null || visited.contains(obj))
+            obj = stack.remove(stack.size() - 1);
+            if (obj == null || !visited.add(obj))
             {
                 continue;
             }
 
-            visited.add(obj);
-
             if (obj.getClass().isArray())
             {
                 int len = Array.getLength(obj);
                 for (int i = 0; i < len; i++)
                 {
-                    stack.addFirst(Array.get(obj, i));
+                    stack.add(Array.get(obj, i));
                 }
                 continue;
             }
 
             if (obj instanceof Collection)
             {
-                stack.addAll(0, (Collection)obj);
+                stack.addAll((Collection)obj);
                 continue;
             }
 
             if (obj instanceof Map)
             {
-                stack.addAll(0, ((Map)obj).keySet());
-                stack.addAll(0, ((Map)obj).values());
+                stack.addAll(((Map)obj).keySet());
+                stack.addAll(((Map)obj).values());
                 continue;
             }
 
@@ -816,21 +1217,14 @@ public class DeepEquals
                 continue;
             }
 
-            if (hasCustomHashCode(obj.getClass()))
+            ClassComparator comparator = comparators.get(obj.getClass());
+            if (comparator.customHashCode)
             {   // A real hashCode() method exists, call it.
                 hash += obj.hashCode();
                 continue;
             }
 
-            Collection<Field> fields = ReflectionUtils.getDeepDeclaredFields(obj.getClass());
-            for (Field field : fields)
-            {
-                try
-                {
-                    stack.addFirst(field.get(obj));
-                }
-                catch (Exception ignored) { }
-            }
+            hash += comparator.hashFields(obj, visited, stack);
         }
         return hash;
     }
@@ -0,0 +1,510 @@
+package com.cedarsoftware.util;
+
+import java.util.*;
+
+import static com.cedarsoftware.util.StringUtilities.hashCodeIgnoreCase;
+
+/**
+ * A Map that ignores the case of String keys (retaining their case), like CaseInsensitiveMap, but stored in flat
+ * arrays instead of a LinkedHashMap of CaseInsensitiveString wrappers.  The original keys, the values, and the
+ * case-insensitive hash of each key are held in three parallel arrays, in insertion order.  An int[] hash table
+ * (open addressing, linear probing, at most 3/4 full) holds the index of each entry within those arrays.  Per
+ * entry, that is about 20 bytes of arrays (plus the key and value themselves), against roughly 70 bytes for a
+ * LinkedHashMap node, a CaseInsensitiveString and a table slot, and lookups walk arrays instead of chasing nodes.
+ * <p>
+ * A lookup compares the cached hash before calling StringUtilities.equalsIgnoreCase(), and never allocates.
+ * Non-String keys use their own hashCode() and equals().  null keys and null values are supported.  Iteration is
+ * in insertion order.  Removing a key leaves a hole in the arrays, which is squeezed out the next time they fill up.
+ * The iterators are fail-fast (ConcurrentModificationException), and support remove().  Not thread-safe.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class FlatCaseInsensitiveMap<K, V> extends AbstractMap<K, V>
+{
+    private static final Object REMOVED = new Object();     // Stands in for the key of a removed entry
+    private static final int DEFAULT_CAPACITY = 8;
+    private Object[] keys;      // Original keys, insertion order
+    private Object[] values;
+    private int[] hashes;       // keyHash() of each key
+    private int[] table;        // Hash table of (index into keys[] + 1), 0 = empty slot
+    private int count;          // Used length of keys[] (including removed entries)
+    private int size;
+    private int modCount;
+
+    public FlatCaseInsensitiveMap()
+    {
+    }
+
+    public FlatCaseInsensitiveMap(int initialCapacity)
+    {
+        if (initialCapacity < 0)
+        {
+            throw new IllegalArgumentException("Initial capacity must be >= 0, capacity: " + initialCapacity);
+        }
+        if (initialCapacity > 0)
+        {
+            rebuild(initialCapacity);
+        }
+    }
+
+    public FlatCaseInsensitiveMap(Map<? extends K, ? extends V> m)
+    {
+        this(m.size());
+        putAll(m);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    public V get(Object key)
+    {
+        int i = indexOf(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    public V put(K key, V value)
+    {
+        final int h = keyHash(key);
+        int i = indexOf(key, h);
+        if (i >= 0)
+        {   // Existing key keeps its original case
+            V save = (V) values[i];
+            values[i] = value;
+            return save;
+        }
+
+        if (keys == null || count == keys.length)
+        {
+            if (keys == null)
+            {
+                rebuild(DEFAULT_CAPACITY);
+            }
+            else
+            {   // Squeeze out removed entries if there are enough of them (at least one), otherwise grow by 1.5x
+                final int removed = count - size;
+                rebuild(removed > 0 && removed >= count >> 2 ? keys.length : Math.max(keys.length + (keys.length >> 1), keys.length + 1));
+            }
+        }
+        i = count++;
+        keys[i] = key;
+        values[i] = value;
+        hashes[i] = h;
+        tableInsert(i);
+        size++;
+        modCount++;
+        return null;
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m)
+    {
+        if (m.isEmpty())
+        {
+            return;
+        }
+        if (keys == null || keys.length - size < m.size())
+        {   // Size the arrays once
+            rebuild(Math.max(DEFAULT_CAPACITY, size + m.size()));
+        }
+        for (Entry<? extends K, ? extends V> entry : m.entrySet())
+        {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public V remove(Object key)
+    {
+        int i = indexOf(key);
+        if (i < 0)
+        {
+            return null;
+        }
+        V save = (V) values[i];
+        removeEntry(i);
+        return save;
+    }
+
+    public void clear()
+    {
+        keys = null;
+        values = null;
+        hashes = null;
+        table = null;
+        count = 0;
+        size = 0;
+        modCount++;
+    }
+
+    public boolean containsValue(Object value)
+    {
+        for (int i=0; i < count; i++)
+        {
+            if (keys[i] != REMOVED && Objects.equals(value, values[i]))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int hashCode()
+    {   // Same as CaseInsensitiveMap.hashCode()
+        int h = 0;
+        for (int i=0; i < count; i++)
+        {
+            if (keys[i] != REMOVED)
+            {
+                h += hashes[i] ^ Objects.hashCode(values[i]);
+            }
+        }
+        return h;
+    }
+
+    public Set<K> keySet()
+    {
+        return new AbstractSet<K>()
+        {
+            public Iterator<K> iterator()
+            {
+                return new FlatIterator<K>()
+                {
+                    K item(int i) { return (K) keys[i]; }
+                };
+            }
+
+            public int size() { return size; }
+            public void clear() { FlatCaseInsensitiveMap.this.clear(); }
+            public boolean contains(Object o) { return containsKey(o); }
+
+            public boolean remove(Object o)
+            {
+                int i = indexOf(o);
+                if (i < 0)
+                {
+                    return false;
+                }
+                removeEntry(i);
+                return true;
+            }
+        };
+    }
+
+    public Collection<V> values()
+    {
+        return new AbstractCollection<V>()
+        {
+            public Iterator<V> iterator()
+            {
+                return new FlatIterator<V>()
+                {
+                    V item(int i) { return (V) values[i]; }
+                };
+            }
+
+            public int size() { return size; }
+            public void clear() { FlatCaseInsensitiveMap.this.clear(); }
+            public boolean contains(Object o) { return containsValue(o); }
+        };
+    }
+
+    public Set<Entry<K, V>> entrySet()
+    {
+        return new AbstractSet<Entry<K, V>>()
+        {
+            public Iterator<Entry<K, V>> iterator()
+            {
+                return new FlatIterator<Entry<K, V>>()
+                {
+                    Entry<K, V> item(int i) { return new FlatEntry((K) keys[i], (V) values[i]); }
+                };
+            }
+
+            public int size() { return size; }
+            public void clear() { FlatCaseInsensitiveMap.this.clear(); }
+            public boolean contains(Object o)
+            {   // faster than inherited method
+                if (!(o instanceof Entry))
+                {
+                    return false;
+                }
+                Entry<?, ?> entry = (Entry<?, ?>) o;
+                int i = indexOf(entry.getKey());
+                return i >= 0 && Objects.equals(values[i], entry.getValue());
+            }
+
+            public boolean remove(Object o)
+            {
+                if (!contains(o))
+                {
+                    return false;
+                }
+                removeEntry(indexOf(((Entry<?, ?>) o).getKey()));
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Walks the entry arrays in insertion order, skipping removed entries.
+     */
+    private abstract class FlatIterator<T> implements Iterator<T>
+    {
+        int next = skipRemoved(0);
+        int current = -1;
+        int expectedModCount = modCount;
+
+        abstract T item(int i);
+
+        public boolean hasNext()
+        {
+            return next < count;
+        }
+
+        public T next()
+        {
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= count)
+            {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = skipRemoved(next + 1);
+            return item(current);
+        }
+
+        public void remove()
+        {
+            if (current < 0)
+            {
+                throw new IllegalStateException("remove() called on an Iterator before calling next()");
+            }
+            if (modCount != expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            removeEntry(current);       // Leaves a hole, so the indexes of later entries do not move
+            current = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Map.Entry handed out by the entrySet() iterator.  setValue() writes through to the outer Map.
+     */
+    private class FlatEntry extends AbstractMap.SimpleEntry<K, V>
+    {
+        private FlatEntry(K key, V value)
+        {
+            super(key, value);
+        }
+
+        public V setValue(V value)
+        {
+            V save = super.setValue(value);
+            FlatCaseInsensitiveMap.this.put(getKey(), value);     // "Transmit" (write-thru) to underlying Map.
+            return save;
+        }
+
+        public int hashCode()
+        {   // Consistent with FlatCaseInsensitiveMap.hashCode()
+            return keyHash(getKey()) ^ Objects.hashCode(getValue());
+        }
+    }
+
+    private int skipRemoved(int i)
+    {
+        while (i < count && keys[i] == REMOVED)
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private int indexOf(Object key)
+    {
+        return size == 0 ? -1 : indexOf(key, keyHash(key));
+    }
+
+    /**
+     * @return index of the key within keys[], or -1 if not present.
+     */
+    private int indexOf(Object key, int h)
+    {
+        if (size == 0)
+        {
+            return -1;
+        }
+        final int[] t = table;
+        final int mask = t.length - 1;
+        int slot = spread(h) & mask;
+        int e;
+        while ((e = t[slot]) != 0)
+        {
+            int i = e - 1;
+            if (hashes[i] == h && keyEquals(keys[i], key))
+            {
+                return i;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeEntry(int i)
+    {
+        tableDelete(i);
+        keys[i] = REMOVED;
+        values[i] = null;
+        size--;
+        modCount++;
+        if (size == 0)
+        {   // Table is empty, start over at the front of the arrays
+            count = 0;
+        }
+        else if (i == count - 1)
+        {
+            count--;
+        }
+    }
+
+    /**
+     * Copy the entries (less removed ones) into new arrays of the given capacity, and rebuild the hash table.
+     */
+    private void rebuild(int capacity)
+    {
+        Object[] newKeys = new Object[capacity];
+        Object[] newValues = new Object[capacity];
+        int[] newHashes = new int[capacity];
+        int n = 0;
+        for (int i=0; i < count; i++)
+        {
+            if (keys[i] != REMOVED)
+            {
+                newKeys[n] = keys[i];
+                newValues[n] = values[i];
+                newHashes[n] = hashes[i];
+                n++;
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+        hashes = newHashes;
+        count = n;
+        table = new int[tableCapacity(capacity)];
+        for (int i=0; i < n; i++)
+        {
+            tableInsert(i);
+        }
+    }
+
+    /**
+     * @return power of 2 hash table length that holds 'capacity' entries while at most 3/4 full.
+     */
+    private static int tableCapacity(int capacity)
+    {
+        int length = 4;
+        while (length * 3 < capacity << 2)
+        {
+            length <<= 1;
+        }
+        return length;
+    }
+
+    /**
+     * Place entry 'i' into the first free slot of its probe sequence.
+     */
+    private void tableInsert(int i)
+    {
+        final int mask = table.length - 1;
+        int slot = spread(hashes[i]) & mask;
+        while (table[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = i + 1;
+    }
+
+    /**
+     * Remove entry 'i' from the hash table, then shift the entries that follow it in the same probe run back, so
+     * that no lookup stops early at the hole (no tombstones are needed).
+     */
+    private void tableDelete(int i)
+    {
+        final int mask = table.length - 1;
+        int hole = spread(hashes[i]) & mask;
+        while (table[hole] != i + 1)
+        {
+            hole = (hole + 1) & mask;
+        }
+        int j = hole;
+        while (true)
+        {
+            j = (j + 1) & mask;
+            if (table[j] == 0)
+            {
+                break;
+            }
+            int home = spread(hashes[table[j] - 1]) & mask;
+            // The entry at 'j' may fill the hole unless its home slot lies (cyclically) within (hole, j]
+            boolean movable = hole < j ? home <= hole || home > j : home <= hole && home > j;
+            if (movable)
+            {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private static int keyHash(Object key)
+    {
+        if (key instanceof String)
+        {
+            return hashCodeIgnoreCase((String) key);
+        }
+        return key == null ? 0 : key.hashCode();
+    }
+
+    private static boolean keyEquals(Object stored, Object key)
+    {
+        if (key instanceof String)
+        {
+            return stored instanceof String && StringUtilities.equalsIgnoreCase((String) stored, (String) key);
+        }
+        return stored == key || (key != null && stored != REMOVED && key.equals(stored));
+    }
+
+    private static int spread(int h)
+    {
+        int x = h * 0x9E3779B9;     // Spread similar keys ("field1", "field2", ...) across the table
+        return x ^ (x >>> 16);
+    }
+}
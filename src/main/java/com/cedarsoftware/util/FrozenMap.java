@@ -0,0 +1,408 @@
+package com.cedarsoftware.util;
+
+import java.util.*;
+
+import static com.cedarsoftware.util.StringUtilities.hashCodeIgnoreCase;
+
+/**
+ * Read-only snapshot of a Map, built for Maps that are populated once and then only read (configuration, schema
+ * field maps, ...).  Create one with FrozenMap.copyOf(), CompactMap.freeze() or CaseInsensitiveMap.freeze().
+ * <p>
+ * All the entries are held in three arrays, built once and never changed:
+ * <pre>
+ *     Object[] entries     key, value, key, value, ... in the iteration order of the source Map
+ *     int[] hashes         hash of each key
+ *     int[] table          [0..buckets] start of each bucket within the index, followed by the index: the entry
+ *                          numbers, grouped by bucket
+ * </pre>
+ * A lookup computes the bucket from the key's hash, then walks the (usually one) entry numbers of that bucket,
+ * comparing the hash before calling equals().  There are as many buckets as entries (rounded up to a power of 2), and
+ * no empty slots in the index, so an entry costs about 20 bytes (compressed references), plus the key and value
+ * themselves, and a lookup never allocates.
+ * <p>
+ * If the source Map ignores the case of String keys (CaseInsensitiveMap, FlatCaseInsensitiveMap, or a CompactMap
+ * whose isCaseInsensitive() returns true), so does the FrozenMap, using StringUtilities.hashCodeIgnoreCase() and
+ * StringUtilities.equalsIgnoreCase().  Iteration order is the source Map's iteration order (a sorted source stays
+ * sorted), except that a CompactMap is read straight from its storage (see MapCursor): up to compactSize() entries,
+ * that is insertion order (key order when getOrdering() is set), instead of the order of the copy its entrySet()
+ * walks.  null keys and null values are kept.
+ * <p>
+ * A FrozenMap has no modification count, and all its fields are final, so it can be handed to any thread without
+ * synchronization.  put(), remove(), clear() (and their variants on the views) throw UnsupportedOperationException.
+ * Mutable keys or values are not copied: changing them is as unsafe as in any other Map.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public final class FrozenMap<K, V> extends AbstractMap<K, V>
+{
+    private static final Object[] NO_ENTRIES = new Object[0];
+    private static final int[] NO_HASHES = new int[0];
+    private static final int[] EMPTY_TABLE = {2, 2};    // One empty bucket
+    private final Object[] entries;
+    private final int[] hashes;
+    private final int[] table;
+    private final boolean caseInsensitive;
+
+    private FrozenMap(Object[] entries, int[] hashes, int[] table, boolean caseInsensitive)
+    {
+        this.entries = entries;
+        this.hashes = hashes;
+        this.table = table;
+        this.caseInsensitive = caseInsensitive;
+    }
+
+    /**
+     * @param source Map to copy.  It is not changed, and the FrozenMap does not refer to it.
+     * @return FrozenMap holding the entries of the source Map, ignoring the case of String keys if the source does
+     * (CaseInsensitiveMap, FlatCaseInsensitiveMap, case-insensitive CompactMap).  A FrozenMap is returned as is.
+     */
+    public static <K, V> FrozenMap<K, V> copyOf(Map<? extends K, ? extends V> source)
+    {
+        if (source instanceof FrozenMap)
+        {
+            return (FrozenMap<K, V>) source;
+        }
+        if (source instanceof CaseInsensitiveMap)
+        {   // Reuse the hashes cached in the CaseInsensitiveStrings
+            return build(((CaseInsensitiveMap<?, ?>) source).getWrappedMap(), true);
+        }
+        boolean caseInsensitive = source instanceof FlatCaseInsensitiveMap ||
+                (source instanceof CompactMap && ((CompactMap<?, ?>) source).isCaseInsensitive());
+        return build(source, caseInsensitive);
+    }
+
+    /**
+     * @param source Map to copy.  The keys of a CaseInsensitiveMap's wrapped Map (CaseInsensitiveStrings) are
+     * unwrapped.
+     * @param caseInsensitive true to ignore the case of String keys
+     */
+    static <K, V> FrozenMap<K, V> build(Map<?, ?> source, boolean caseInsensitive)
+    {
+        Object[] entries = new Object[source.size() << 1];
+        int[] hashes = new int[source.size()];
+        int n = 0;
+        MapCursor<Object, Object> cursor = new MapCursor<>(source);    // No copy of a CompactMap
+        while (cursor.advance())
+        {
+            if (n == hashes.length)
+            {   // Source is a concurrent Map that grew since size() was called
+                entries = Arrays.copyOf(entries, (n + 1) << 2);
+                hashes = Arrays.copyOf(hashes, (n + 1) << 1);
+            }
+            Object key = cursor.key();
+            int hash;
+            if (key instanceof CaseInsensitiveMap.CaseInsensitiveString)
+            {
+                hash = key.hashCode();
+                key = key.toString();
+            }
+            else
+            {
+                hash = keyHash(key, caseInsensitive);
+            }
+            entries[n << 1] = key;
+            entries[(n << 1) + 1] = cursor.value();
+            hashes[n++] = hash;
+        }
+        final int size = n;
+        if (size == 0)
+        {
+            return new FrozenMap<>(NO_ENTRIES, NO_HASHES, EMPTY_TABLE, caseInsensitive);
+        }
+        if (size != hashes.length)
+        {
+            entries = Arrays.copyOf(entries, size << 1);
+            hashes = Arrays.copyOf(hashes, size);
+        }
+
+        // Counting sort of the entry numbers by bucket
+        final int buckets = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        final int mask = buckets - 1;
+        int[] table = new int[buckets + 1 + size];
+        for (int i=0; i < size; i++)
+        {
+            table[(spread(hashes[i]) & mask) + 1]++;
+        }
+        table[0] = buckets + 1;
+        for (int b=0; b < buckets; b++)
+        {   // bucket counts -> bucket starts
+            table[b + 1] += table[b];
+        }
+        int[] next = new int[buckets];
+        System.arraycopy(table, 0, next, 0, buckets);
+        for (int i=0; i < size; i++)
+        {
+            table[next[spread(hashes[i]) & mask]++] = i;
+        }
+        return new FrozenMap<>(entries, hashes, table, caseInsensitive);
+    }
+
+    public int size()
+    {
+        return hashes.length;
+    }
+
+    public boolean isEmpty()
+    {
+        return hashes.length == 0;
+    }
+
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    public V get(Object key)
+    {
+        int i = indexOf(key);
+        return i < 0 ? null : (V) entries[(i << 1) + 1];
+    }
+
+    public boolean containsValue(Object value)
+    {
+        for (int i=1; i < entries.length; i += 2)
+        {
+            if (Objects.equals(entries[i], value))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if String keys are compared ignoring case.
+     */
+    public boolean isCaseInsensitive()
+    {
+        return caseInsensitive;
+    }
+
+    public V put(K key, V value)
+    {
+        throw new UnsupportedOperationException("FrozenMap is read-only");
+    }
+
+    public void putAll(Map<? extends K, ? extends V> m)
+    {
+        throw new UnsupportedOperationException("FrozenMap is read-only");
+    }
+
+    public V remove(Object key)
+    {
+        throw new UnsupportedOperationException("FrozenMap is read-only");
+    }
+
+    public void clear()
+    {
+        throw new UnsupportedOperationException("FrozenMap is read-only");
+    }
+
+    public boolean equals(Object other)
+    {   // Walk the other Map, so that a case-insensitive FrozenMap equals a Map with the same keys in another case
+        if (other == this) return true;
+        if (!(other instanceof Map)) return false;
+
+        Map<?, ?> that = (Map<?, ?>) other;
+        if (that.size() != size())
+        {
+            return false;
+        }
+
+        for (Entry<?, ?> entry : that.entrySet())
+        {
+            int i = indexOf(entry.getKey());
+            if (i < 0 || !Objects.equals(entries[(i << 1) + 1], entry.getValue()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int hashCode()
+    {   // Same as CaseInsensitiveMap.hashCode() when case-insensitive, otherwise same as AbstractMap.hashCode()
+        int h = 0;
+        for (int i=0; i < hashes.length; i++)
+        {
+            h += hashes[i] ^ Objects.hashCode(entries[(i << 1) + 1]);
+        }
+        return h;
+    }
+
+    public Set<K> keySet()
+    {
+        return new FrozenView<K>()
+        {
+            K item(int i) { return (K) entries[i << 1]; }
+            public boolean contains(Object o) { return containsKey(o); }
+        };
+    }
+
+    public Collection<V> values()
+    {
+        return new FrozenView<V>()
+        {
+            V item(int i) { return (V) entries[(i << 1) + 1]; }
+            public boolean contains(Object o) { return containsValue(o); }
+        };
+    }
+
+    public Set<Entry<K, V>> entrySet()
+    {
+        return new FrozenView<Entry<K, V>>()
+        {
+            Entry<K, V> item(int i) { return new FrozenEntry(i); }
+
+            public boolean contains(Object o)
+            {
+                if (!(o instanceof Entry))
+                {
+                    return false;
+                }
+                Entry<?, ?> that = (Entry<?, ?>) o;
+                int i = indexOf(that.getKey());
+                return i >= 0 && Objects.equals(entries[(i << 1) + 1], that.getValue());
+            }
+        };
+    }
+
+    /**
+     * Read-only view of the entries (keys, values or Map.Entry instances), in iteration order.  The inherited
+     * mutators throw UnsupportedOperationException (add()), or fail through the Iterator's remove().
+     */
+    private abstract class FrozenView<T> extends AbstractSet<T>
+    {
+        abstract T item(int i);
+
+        public int size() { return hashes.length; }
+
+        public Iterator<T> iterator()
+        {
+            return new Iterator<T>()
+            {
+                int index = 0;
+
+                public boolean hasNext() { return index < hashes.length; }
+
+                public T next()
+                {
+                    if (index >= hashes.length)
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return item(index++);
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException("FrozenMap is read-only");
+                }
+            };
+        }
+
+        public void clear()
+        {
+            throw new UnsupportedOperationException("FrozenMap is read-only");
+        }
+    }
+
+    /**
+     * Map.Entry handed out by entrySet().  Reads the arrays directly, setValue() is not supported.
+     */
+    private final class FrozenEntry implements Entry<K, V>
+    {
+        private final int index;
+
+        private FrozenEntry(int index)
+        {
+            this.index = index;
+        }
+
+        public K getKey() { return (K) entries[index << 1]; }
+        public V getValue() { return (V) entries[(index << 1) + 1]; }
+
+        public V setValue(V value)
+        {
+            throw new UnsupportedOperationException("FrozenMap is read-only");
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Entry))
+            {
+                return false;
+            }
+            Entry<?, ?> that = (Entry<?, ?>) o;
+            return Objects.equals(getKey(), that.getKey()) && Objects.equals(getValue(), that.getValue());
+        }
+
+        public int hashCode()
+        {   // Consistent with FrozenMap.hashCode()
+            return hashes[index] ^ Objects.hashCode(getValue());
+        }
+
+        public String toString()
+        {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /**
+     * @return entry number of the key, or -1 if not present.
+     */
+    private int indexOf(Object key)
+    {
+        final int hash = keyHash(key, caseInsensitive);
+        final int[] t = table;
+        final int b = spread(hash) & (t[0] - 2);     // t[0] = buckets + 1
+        final int end = t[b + 1];
+        for (int p = t[b]; p < end; p++)
+        {
+            int i = t[p];
+            if (hashes[i] == hash && keyEquals(entries[i << 1], key))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(Object stored, Object key)
+    {
+        if (caseInsensitive && key instanceof String)
+        {
+            return stored instanceof String && StringUtilities.equalsIgnoreCase((String) stored, (String) key);
+        }
+        return Objects.equals(stored, key);
+    }
+
+    private static int keyHash(Object key, boolean caseInsensitive)
+    {
+        if (caseInsensitive && key instanceof String)
+        {
+            return hashCodeIgnoreCase((String) key);
+        }
+        return key == null ? 0 : key.hashCode();
+    }
+
+    private static int spread(int h)
+    {
+        int x = h * 0x9E3779B9;     // Spread similar keys ("field1", "field2", ...) across the buckets
+        return x ^ (x >>> 16);
+    }
+}
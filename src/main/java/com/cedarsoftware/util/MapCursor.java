@@ -0,0 +1,184 @@
+package com.cedarsoftware.util;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the entries of a Map without allocating a Map.Entry per entry.  For a CompactMap it reads the internal
+ * storage directly, in each of its states (empty, single entry, Object[], backing Map), so no copy of the Map and no
+ * CompactMapEntry is created.  Other Maps are walked with their entrySet() iterator.  A MapCursor may be reused for
+ * any number of Maps with reset(), so a single instance (per thread) can serve a hot path:
+ * <pre>
+ *     MapCursor&lt;String, Object&gt; cursor = new MapCursor&lt;&gt;();
+ *     ...
+ *     cursor.reset(map);
+ *     while (cursor.advance())
+ *     {
+ *         write(cursor.key(), cursor.value());
+ *     }
+ * </pre>
+ * The Map must not be structurally modified (keys added or removed) while it is being walked.  advance() throws a
+ * ConcurrentModificationException when it detects such a modification, on a best-effort basis, as the iterators of
+ * java.util Maps do (for a CompactMap: a change of storage or size, or a change that moves the entries already
+ * visited).  Replacing the value of an existing key is allowed.  A MapCursor is not thread-safe.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public final class MapCursor<K, V>
+{
+    private CompactMap<? extends K, ? extends V> compact;
+    private Object[] entries;       // Object[] (compact) storage
+    private int count;              // entries in the Object[], or 1 for a single entry
+    private int index;              // next entry to visit
+    private Iterator<? extends Map.Entry<? extends K, ? extends V>> iter;
+    private boolean positioned;
+    private K key;
+    private V value;
+
+    /**
+     * Create a MapCursor with nothing to walk.  Call reset() to point it at a Map.
+     */
+    public MapCursor() { }
+
+    public MapCursor(Map<? extends K, ? extends V> map)
+    {
+        reset(map);
+    }
+
+    /**
+     * Position this cursor before the first entry of the passed in Map.
+     * @param map Map to walk (may be null, which is walked as an empty Map).
+     * @return this MapCursor
+     */
+    public MapCursor<K, V> reset(Map<? extends K, ? extends V> map)
+    {
+        clear();
+        if (map instanceof CompactMap)
+        {
+            compact = (CompactMap<? extends K, ? extends V>) map;
+            Object storage = compact.getStorage();
+            if (storage instanceof Object[])
+            {   // 2 to compactSize
+                entries = (Object[]) storage;
+                count = CompactMap.entryCount(entries);
+            }
+            else if (storage instanceof Map)
+            {   // > compactSize
+                iter = ((Map<? extends K, ? extends V>) storage).entrySet().iterator();
+            }
+            else if (!compact.isEmpty())
+            {   // size == 1
+                count = 1;
+            }
+        }
+        else if (map != null)
+        {
+            iter = map.entrySet().iterator();
+        }
+        return this;
+    }
+
+    /**
+     * Move to the next entry.
+     * @return true if positioned on an entry (read it with key() and value()), false when there are no more
+     * entries, in which case the cursor lets go of the Map.
+     * @throws ConcurrentModificationException if the Map was structurally modified since reset()
+     */
+    public boolean advance()
+    {
+        if (iter != null)
+        {
+            if (iter.hasNext())
+            {
+                Map.Entry<? extends K, ? extends V> entry = iter.next();
+                key = entry.getKey();
+                value = entry.getValue();
+                positioned = true;
+                return true;
+            }
+        }
+        else if (index < count)
+        {
+            if (entries != null)
+            {   // Same storage and count, and the last entry visited has not moved (nothing before it was removed
+                // or inserted), so no entry is skipped or visited twice
+                if (compact.getStorage() != entries || CompactMap.entryCount(entries) != count ||
+                        (index > 0 && entries[(index - 1) << 1] != key))
+                {
+                    throw new ConcurrentModificationException();
+                }
+                int i = index << 1;
+                key = (K) entries[i];
+                value = (V) entries[i + 1];
+            }
+            else
+            {
+                if (compact.size() != 1)
+                {
+                    throw new ConcurrentModificationException();
+                }
+                key = compact.getLogicalSingleKey();
+                value = compact.getLogicalSingleValue();
+            }
+            index++;
+            positioned = true;
+            return true;
+        }
+        clear();
+        return false;
+    }
+
+    /**
+     * @return key of the entry the cursor is positioned on.
+     * @throws NoSuchElementException if advance() has not returned true
+     */
+    public K key()
+    {
+        if (!positioned)
+        {
+            throw new NoSuchElementException("advance() must return true before calling key()");
+        }
+        return key;
+    }
+
+    /**
+     * @return value of the entry the cursor is positioned on (as of the call to advance()).
+     * @throws NoSuchElementException if advance() has not returned true
+     */
+    public V value()
+    {
+        if (!positioned)
+        {
+            throw new NoSuchElementException("advance() must return true before calling value()");
+        }
+        return value;
+    }
+
+    private void clear()
+    {
+        compact = null;
+        entries = null;
+        count = 0;
+        index = 0;
+        iter = null;
+        positioned = false;
+        key = null;
+        value = null;
+    }
+}
@@ -0,0 +1,264 @@
+package com.cedarsoftware.util;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generate unique, bit-packed long IDs ("Snowflake" layout), the binary counterpart of UniqueIdGenerator.  Where
+ * UniqueIdGenerator packs its IDs in decimal, with room for 100 cluster ids and 10,000 IDs per millisecond, an ID
+ * from this generator is made of three bit fields, from high to low:
+ * <pre>
+ *     [ 0 | milliseconds since epoch (timestampBits) | node id (nodeBits) | sequence (sequenceBits) ]
+ * </pre>
+ * The layout is set per instance: the epoch (in milliseconds since 1970), and the bits of each field, totaling 63 or
+ * less so that the IDs are positive.  The default layout is 41 timestamp bits from an epoch of 2000-01-01 UTC
+ * (through the year 2069), 10 node bits (1,024 nodes) and 12 sequence bits (4,096 IDs per millisecond, about 4
+ * million per second, per node).  For example, 16 node bits and 6 sequence bits support 65,536 nodes at 64,000 IDs
+ * per second each.<br>
+ * <br>
+ * Each node (JVM) in a cluster must use its own node id, and all nodes the same layout.  There is no random
+ * fallback: use the constructors with an explicit node id, or fromEnvironment(), which reads the node id from the
+ * <b>JAVA_UTIL_NODEID</b> System property or environment variable (or <b>JAVA_UTIL_CLUSTERID</b>, the one
+ * UniqueIdGenerator uses, when JAVA_UTIL_NODEID is not set).  Use one instance per node id: two instances with the
+ * same node id in the same JVM would hand out the same IDs.<br>
+ * <br>
+ * The IDs from an instance are strictly increasing.  The milliseconds and sequence are packed into a single
+ * AtomicLong, updated with compare-and-set, so no lock is taken.  When the sequence of a millisecond is used up, or
+ * when the clock moves back, nextId() waits for the clock to pass the time of the last ID handed out, so the time
+ * within an ID is never ahead of the clock.  If the clock moved back by more than maxClockRegressionMillis(), it
+ * throws IllegalStateException instead of waiting.<br>
+ * <br>
+ * getTimestamp(), getDate(), getNodeId() and getSequence() decode an ID.
+ *
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class SnowflakeIdGenerator
+{
+    /** 2000-01-01T00:00:00Z, in milliseconds since 1970. */
+    public static final long DEFAULT_EPOCH = 946684800000L;
+    public static final int DEFAULT_TIMESTAMP_BITS = 41;
+    public static final int DEFAULT_NODE_BITS = 10;
+    public static final int DEFAULT_SEQUENCE_BITS = 12;
+
+    private final long epoch;
+    private final int timestampBits;
+    private final int nodeBits;
+    private final int sequenceBits;
+    private final long nodeId;
+    private final long nodeField;           // nodeId << sequenceBits
+    // Last ID handed out, without the node id: (milliseconds since epoch << sequenceBits) | sequence
+    private final AtomicLong last = new AtomicLong(-1);
+
+    /**
+     * Default layout (see class javadoc) with the passed in node id.
+     * @param nodeId 0 to 1,023
+     */
+    public SnowflakeIdGenerator(long nodeId)
+    {
+        this(DEFAULT_EPOCH, DEFAULT_TIMESTAMP_BITS, DEFAULT_NODE_BITS, DEFAULT_SEQUENCE_BITS, nodeId);
+    }
+
+    /**
+     * @param epoch milliseconds since 1970 at which the timestamp field is 0.  It must not be in the future.
+     * @param timestampBits bits of the milliseconds since epoch, 1 or more.
+     * @param nodeBits bits of the node id, 0 or more.
+     * @param sequenceBits bits of the sequence within a millisecond, 1 or more.  timestampBits + nodeBits +
+     * sequenceBits must be 63 or less.
+     * @param nodeId 0 to (2^nodeBits) - 1
+     */
+    public SnowflakeIdGenerator(long epoch, int timestampBits, int nodeBits, int sequenceBits, long nodeId)
+    {
+        if (timestampBits < 1 || nodeBits < 0 || sequenceBits < 1 || timestampBits + nodeBits + sequenceBits > 63)
+        {
+            throw new IllegalArgumentException("timestampBits (>= 1), nodeBits (>= 0) and sequenceBits (>= 1) must total 63 or less, timestampBits: " +
+                    timestampBits + ", nodeBits: " + nodeBits + ", sequenceBits: " + sequenceBits);
+        }
+        if (nodeId < 0 || nodeId >= 1L << nodeBits)
+        {
+            throw new IllegalArgumentException("nodeId must be 0 to " + ((1L << nodeBits) - 1) + ", nodeId: " + nodeId);
+        }
+        if (epoch > System.currentTimeMillis())
+        {
+            throw new IllegalArgumentException("epoch must not be in the future, epoch: " + epoch);
+        }
+        this.epoch = epoch;
+        this.timestampBits = timestampBits;
+        this.nodeBits = nodeBits;
+        this.sequenceBits = sequenceBits;
+        this.nodeId = nodeId;
+        nodeField = nodeId << sequenceBits;
+    }
+
+    /**
+     * Default layout, with the node id from the JAVA_UTIL_NODEID System property or environment variable, or if not
+     * set, from JAVA_UTIL_CLUSTERID.
+     * @throws IllegalStateException if neither is set, or the value is not a number.
+     */
+    public static SnowflakeIdGenerator fromEnvironment()
+    {
+        String id = SystemUtilities.getExternalVariable("JAVA_UTIL_NODEID");
+        if (id == null)
+        {
+            id = SystemUtilities.getExternalVariable("JAVA_UTIL_CLUSTERID");
+        }
+        if (id == null)
+        {
+            throw new IllegalStateException("Set JAVA_UTIL_NODEID (or JAVA_UTIL_CLUSTERID) to the node id of this JVM");
+        }
+        try
+        {
+            return new SnowflakeIdGenerator(Long.parseLong(id.trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalStateException("JAVA_UTIL_NODEID (or JAVA_UTIL_CLUSTERID) is not a number: " + id, e);
+        }
+    }
+
+    /**
+     * @return next unique ID, greater than any ID returned before by this instance.
+     * @throws IllegalStateException if the clock moved back by more than maxClockRegressionMillis() (until it
+     * catches up), or is before the epoch or past the last millisecond the timestamp bits can hold.
+     */
+    public long nextId()
+    {
+        final long maxMillis = (1L << timestampBits) - 1;
+        while (true)
+        {
+            final long prev = last.get();
+            final long now = millis() - epoch;
+            if (now < 0 || now > maxMillis)
+            {
+                throw new IllegalStateException("Clock is outside the " + timestampBits + " bit timestamp range from epoch " + epoch +
+                        ", milliseconds since epoch: " + now);
+            }
+            final long next = Math.max(prev + 1, now << sequenceBits);
+            final long millis = next >>> sequenceBits;
+            if (millis > now)
+            {   // Sequence used up for this millisecond, or the clock moved back: wait for the clock
+                final long behind = millis - now;
+                if (behind > maxClockRegressionMillis())
+                {
+                    throw new IllegalStateException("Clock moved back by " + behind + " ms, more than the " +
+                            maxClockRegressionMillis() + " ms allowed");
+                }
+                if (millis > maxMillis)
+                {
+                    throw new IllegalStateException("Timestamp bits used up at milliseconds since epoch: " + maxMillis);
+                }
+                waitForClock(millis + epoch);
+            }
+            else if (last.compareAndSet(prev, next))
+            {
+                return (next & ~((1L << sequenceBits) - 1)) << nodeBits | nodeField | (next & ((1L << sequenceBits) - 1));
+            }
+        }
+    }
+
+    /**
+     * Override to change how far back the clock may move before nextId() throws IllegalStateException.  Up to that
+     * amount, nextId() waits for the clock to catch up.
+     * @return milliseconds, 5,000 by default.
+     */
+    protected long maxClockRegressionMillis()
+    {
+        return 5000;
+    }
+
+    /**
+     * @return time at which the ID was generated, in milliseconds since 1970.
+     */
+    public long getTimestamp(long id)
+    {
+        return (id >>> (nodeBits + sequenceBits)) + epoch;
+    }
+
+    /**
+     * @return Date at which the ID was generated, accurate to the millisecond.
+     */
+    public Date getDate(long id)
+    {
+        return new Date(getTimestamp(id));
+    }
+
+    /**
+     * @return node id of the generator that produced the ID.
+     */
+    public long getNodeId(long id)
+    {
+        return (id >>> sequenceBits) & ((1L << nodeBits) - 1);
+    }
+
+    /**
+     * @return sequence of the ID within its millisecond.
+     */
+    public long getSequence(long id)
+    {
+        return id & ((1L << sequenceBits) - 1);
+    }
+
+    public long getEpoch() { return epoch; }
+    public int getTimestampBits() { return timestampBits; }
+    public int getNodeBits() { return nodeBits; }
+    public int getSequenceBits() { return sequenceBits; }
+    public long getNodeId() { return nodeId; }
+
+    public String toString()
+    {
+        return "SnowflakeIdGenerator{epoch=" + epoch + ", timestampBits=" + timestampBits + ", nodeBits=" + nodeBits +
+                ", sequenceBits=" + sequenceBits + ", nodeId=" + nodeId + '}';
+    }
+
+    /**
+     * @return current time in milliseconds since 1970 (a seam for tests).
+     */
+    long millis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Return once millis() has reached 'millis'.
+     */
+    private void waitForClock(long millis)
+    {
+        boolean interrupted = false;
+        long ahead;
+        while ((ahead = millis - millis()) > 0)
+        {
+            if (ahead > 1 && !interrupted)
+            {
+                try
+                {
+                    Thread.sleep(ahead - 1);
+                }
+                catch (InterruptedException e)
+                {   // Finish waiting without sleeping
+                    interrupted = true;
+                }
+            }
+            else
+            {
+                Thread.yield();
+            }
+        }
+        if (interrupted)
+        {   // Keep the interrupt for the caller
+            Thread.currentThread().interrupt();
+        }
+    }
+}
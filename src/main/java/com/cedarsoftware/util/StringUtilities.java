@@ -48,13 +48,53 @@ public final class StringUtilities
         return str1.equals(str2);
     }
 
+    /**
+     * Same result as String.equalsIgnoreCase() (null safe).  While the characters are 7-bit ASCII, case is folded
+     * with bit arithmetic; from the first non-ASCII character on, it uses the Unicode rules of
+     * String.regionMatches(true, ...).  Used by the case-insensitive Maps and Sets.
+     * @param s1 String
+     * @param s2 String
+     * @return true if both are null, or equal ignoring case.
+     */
     public static boolean equalsIgnoreCase(final String s1, final String s2)
     {
         if (s1 == null || s2 == null)
         {
             return s1 == s2;
         }
-        return s1.equalsIgnoreCase(s2);
+        if (s1 == s2)
+        {
+            return true;
+        }
+        final int len = s1.length();
+        if (len != s2.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < len; i++)
+        {
+            final char c1 = s1.charAt(i);
+            final char c2 = s2.charAt(i);
+            if (c1 == c2)
+            {
+                continue;
+            }
+            if ((c1 | c2) >= 0x80)
+            {   // Non-ASCII (which can also match ASCII, e.g. KELVIN SIGN and 'k'): Unicode rules for the rest,
+                // starting on the high surrogate if this is the low half of a surrogate pair.
+                if (i > 0 && Character.isHighSurrogate(s1.charAt(i - 1)))
+                {
+                    i--;
+                }
+                return s1.regionMatches(true, i, s2, i, len - i);
+            }
+            // Two different ASCII chars match only if they differ by the case bit, and are letters
+            if ((c1 ^ c2) != 0x20 || (char) ((c1 | 0x20) - 'a') > 'z' - 'a')
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static boolean equalsWithTrim(final String s1, final String s2)
@@ -482,7 +522,10 @@ public final class StringUtilities
 
     /**
      * Get the hashCode of a String, insensitive to case, without any new Strings
-     * being created on the heap.
+     * being created on the heap.  Consistent with equalsIgnoreCase(): Strings that are equal ignoring case have the
+     * same hashCode.  7-bit ASCII characters are lower-cased with bit arithmetic, others with
+     * Character.toLowerCase(Character.toUpperCase(codePoint)), the same folding String.equalsIgnoreCase() uses.
+     * For 7-bit ASCII Strings, that is the hashCode() of the lower-cased String.
      * @param s String input
      * @return int hashCode of input String insensitive to case
      */
@@ -493,11 +536,23 @@ public final class StringUtilities
             return 0;
         }
         int hash = 0;
-        int len = s.length();
-        for (int i = 0; i < len; i++)
+        final int len = s.length();
+        int i = 0;
+        for (; i < len; i++)
         {
-            char c = Character.toLowerCase(s.charAt(i));
-            hash = 31 * hash + c;
+            final char c = s.charAt(i);
+            if (c >= 0x80)
+            {
+                break;
+            }
+            // 'A' - 'Z' have the case bit (0x20) clear, set it
+            hash = 31 * hash + ((char) (c - 'A') <= 'Z' - 'A' ? c | 0x20 : c);
+        }
+        while (i < len)
+        {   // Non-ASCII from here on, by code point (equalsIgnoreCase() compares surrogate pairs as one)
+            final int codePoint = s.codePointAt(i);
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(codePoint));
+            i += Character.charCount(codePoint);
         }
         return hash;
     }
@@ -2,8 +2,8 @@ package com.cedarsoftware.util;
 
 import java.security.SecureRandom;
 import java.util.Date;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import static com.cedarsoftware.util.StringUtilities.isEmpty;
 import static java.lang.Integer.parseInt;
@@ -21,7 +21,14 @@ import static java.lang.System.currentTimeMillis;
  * the year 2286, however this API will generate unique IDs at a rate up to 10 million per second.  The trade-off is
  * the faster API will generate positive IDs only good for about 286 years [after 2000].<br>
  * <br>
- * The IDs are guaranteed to be strictly increasing.
+ * The IDs are guaranteed to be strictly increasing.  Each API keeps its state (milliseconds and count) packed into a
+ * single AtomicLong, updated with compare-and-set, so no lock is taken.  With many threads, that AtomicLong is
+ * contended: getShardedUniqueId19() hands out 19 digit IDs from a small block leased by each thread, trading global
+ * ordering for per-thread ordering.<br>
+ * <br>
+ * When the IDs of a millisecond are used up, or when the clock moves back, the APIs sleep until the clock reaches
+ * the millisecond of the next ID.  If the clock moved back by more than 5 seconds, they throw IllegalStateException
+ * instead (until the clock catches up).
  * 
  * @author John DeRegnaucourt (jdereg@gmail.com)
  *         Roger Judd (@HonorKnight on GitHub) for adding code to ensure increasing order.
@@ -44,27 +51,24 @@ public class UniqueIdGenerator
 {
     private UniqueIdGenerator () {}
 
-    private static final Object lock = new Object();
-    private static final Object lock19 = new Object();
-    private static int count = 0;
-    private static int count2 = 0;
-    private static long previousTimeMilliseconds = 0;
-    private static long previousTimeMilliseconds2 = 0;
-    private static final int clusterId;
-    private static final Map<Long, Long> lastIds = new LinkedHashMap<Long, Long>()
-    {
-        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest)
-        {
-            return size() > 1000;
-        }
-    };
-    private static final Map<Long, Long> lastIdsFull = new LinkedHashMap<Long, Long>()
+    private static final int COUNT_PER_MILLI = 1000;
+    private static final int COUNT_PER_MILLI19 = 10000;
+    // How far back the clock may move before the APIs throw IllegalStateException, rather than wait for it
+    private static final long MAX_CLOCK_REGRESSION_MILLIS = 5000;
+    // Last ID handed out, without the cluster id: milliseconds * COUNT_PER_MILLI(19) + count
+    private static final AtomicLong last = new AtomicLong();
+    private static final AtomicLong last19 = new AtomicLong();
+    // IDs getShardedUniqueId19() leases to a thread at a time, from last19
+    private static final int SHARD_LEASE = 64;
+    // Per thread: [0] = next state value to hand out, [1] = end (exclusive) of the state values leased
+    private static final ThreadLocal<long[]> shards = new ThreadLocal<long[]>()
     {
-        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest)
+        protected long[] initialValue()
         {
-            return size() > 10000;
+            return new long[2];
         }
     };
+    private static final int clusterId;
 
     static
     {
@@ -107,35 +111,22 @@ public class UniqueIdGenerator
      */
     public static long getUniqueId()
     {
-        synchronized (lock)
-        {
-            long id = getUniqueIdAttempt();
-            while (lastIds.containsKey(id))
-            {
-                id = getUniqueIdAttempt();
-            }
-            lastIds.put(id, null);
-            return id;
-        }
+        return reserve(last, COUNT_PER_MILLI, 1, false) * 100 + clusterId;
     }
 
-    private static long getUniqueIdAttempt()
+    /**
+     * Reserve a block of IDs in one atomic step, instead of calling getUniqueId() 'count' times.  The IDs are in the
+     * same format as getUniqueId() (decode them with getDate()), unique, strictly increasing, and greater than any
+     * ID handed out before.  The block is contiguous: no other caller gets an ID between the first and the last, and
+     * each ID is 100 greater than the one before it.  A block larger than the 1,000 IDs available per millisecond
+     * spans several milliseconds.  The call returns once the clock has reached the millisecond of the last ID, so
+     * 'count' IDs take at least count / 1,000 milliseconds, as they would one at a time.
+     * @param count number of IDs to reserve, 1 or more
+     * @return long[] of 'count' unique IDs, in increasing order
+     */
+    public static long[] getUniqueIds(int count)
     {
-        count++;
-        if (count >= 1000)
-        {
-            count = 0;
-        }
-
-        long currentTimeMilliseconds = currentTimeMillis();
-
-        if (currentTimeMilliseconds > previousTimeMilliseconds)
-        {
-            count = 0;
-            previousTimeMilliseconds = currentTimeMilliseconds;
-        }
-
-        return currentTimeMilliseconds * 100000 + count * 100 + clusterId;
+        return toIds(reserve(last, COUNT_PER_MILLI, count, false), count);
     }
 
     /**
@@ -158,36 +149,149 @@ public class UniqueIdGenerator
      */
     public static long getUniqueId19()
     {
-        synchronized (lock19)
+        return reserve(last19, COUNT_PER_MILLI19, 1, false) * 100 + clusterId;
+    }
+
+    /**
+     * Reserve a block of IDs in one atomic step, instead of calling getUniqueId19() 'count' times.  The IDs are in
+     * the same format as getUniqueId19() (decode them with getDate19()), unique, strictly increasing, and greater
+     * than any ID handed out before.  The block is contiguous: no other caller gets an ID between the first and the
+     * last, and each ID is 100 greater than the one before it.  A block larger than the 10,000 IDs available per
+     * millisecond spans several milliseconds.  The call returns once the clock has reached the millisecond of the
+     * last ID, so 'count' IDs take at least count / 10,000 milliseconds, as they would one at a time.
+     * @param count number of IDs to reserve, 1 or more
+     * @return long[] of 'count' unique IDs, in increasing order
+     */
+    public static long[] getUniqueIds19(int count)
+    {
+        return toIds(reserve(last19, COUNT_PER_MILLI19, count, false), count);
+    }
+
+    /**
+     * Sharded variant of getUniqueId19(), for many threads generating IDs at a high rate.  Each thread leases a
+     * sub-range of up to 64 counts within the current millisecond from the same state getUniqueId19() uses (one
+     * compare-and-set per lease), and hands out IDs from it without touching shared memory.  A lease is dropped
+     * when used up, or when the clock has moved to a later millisecond, so the time within an ID is at most the
+     * current millisecond (a count left unused is skipped).<br>
+     * <br>
+     * The IDs have the same format as getUniqueId19() (decode them with getDate19()), and are unique across all
+     * threads, getUniqueId19() and getUniqueIds19() included.  Ordering is relaxed: the IDs returned to one thread
+     * are strictly increasing, but an ID returned to one thread may be lower than an ID returned earlier to another
+     * thread (within the same millisecond).  The 10,000 IDs per millisecond limit of the format still applies to
+     * the JVM as a whole.
+     * @return long unique ID
+     */
+    public static long getShardedUniqueId19()
+    {
+        final long[] lease = shards.get();
+        long next = lease[0];
+        if (next >= lease[1] || next / COUNT_PER_MILLI19 < currentTimeMillis())
+        {   // Used up, or from an earlier millisecond: lease counts up to the end of the current millisecond
+            next = reserve(last19, COUNT_PER_MILLI19, SHARD_LEASE, true);
+            lease[1] = leaseEnd(next, COUNT_PER_MILLI19, SHARD_LEASE);
+        }
+        lease[0] = next + 1;
+        return next * 100 + clusterId;
+    }
+
+    private static long[] toIds(long first, int count)
+    {
+        long[] ids = new long[count];
+        long id = first * 100 + clusterId;
+        for (int i=0; i < count; i++)
         {
-            long id = getFullUniqueId19();
-            while (lastIdsFull.containsKey(id))
-            {
-                id = getFullUniqueId19();
-            }
-            lastIdsFull.put(id, null);
-            return id;
+            ids[i] = id;
+            id += 100;
         }
+        return ids;
     }
 
-    // Use up to 19 digits (much faster)
-    private static long getFullUniqueId19()
+    /**
+     * Advance the packed (milliseconds * countPerMilli + count) state by 'count' values, lock-free.  The first value
+     * is the first count of the current millisecond, or the last value + 1 if that is higher (same millisecond, or
+     * the clock moved back).  Because the state only moves forward, the IDs are strictly increasing and unique
+     * without remembering the ones already handed out.  When the count for a millisecond is used up, or the clock
+     * moved back, it sleeps until the clock reaches the millisecond of the next value, and after reserving a block
+     * that runs into later milliseconds, it waits for the clock to reach the last one, so that the time within an ID
+     * is never ahead of the clock once the ID is returned.
+     * @param withinMilli true to reserve fewer than 'count' values if needed to stay within the millisecond of the
+     * first one (see leaseEnd()).
+     * @return first of the 'count' reserved state values, all unique and greater than any reserved before for the
+     * same AtomicLong.
+     * @throws IllegalStateException if the clock moved back by more than MAX_CLOCK_REGRESSION_MILLIS.
+     */
+    private static long reserve(AtomicLong state, int countPerMilli, int count, boolean withinMilli)
     {
-        count2++;
-        if (count2 >= 10000)
+        if (count < 1)
         {
-            count2 = 0;
+            throw new IllegalArgumentException("count must be 1 or more, count: " + count);
         }
+        while (true)
+        {
+            final long prev = state.get();
+            final long millis = currentTimeMillis();
+            final long now = millis * countPerMilli;
+            final long first = Math.max(prev + 1, now);
+            if (first - now >= countPerMilli)
+            {   // Count used up for this millisecond (or the clock moved back): sleep until the clock gets there
+                final long behind = first / countPerMilli - millis;
+                if (behind > MAX_CLOCK_REGRESSION_MILLIS)
+                {
+                    throw new IllegalStateException("Clock moved back by " + behind + " ms, more than the " +
+                            MAX_CLOCK_REGRESSION_MILLIS + " ms allowed");
+                }
+                waitForClock(first / countPerMilli);
+            }
+            else
+            {
+                final long end = withinMilli ? leaseEnd(first, countPerMilli, count) : first + count;
+                if (state.compareAndSet(prev, end - 1))
+                {
+                    waitForClock((end - 1) / countPerMilli);
+                    return first;
+                }
+            }
+        }
+    }
 
-        long currentTimeMilliseconds = currentTimeMillis();
+    /**
+     * @return end (exclusive) of a block of up to 'count' state values starting at 'first', cut at the end of the
+     * millisecond of 'first'.
+     */
+    private static long leaseEnd(long first, int countPerMilli, int count)
+    {
+        return Math.min(first + count, (first / countPerMilli + 1) * countPerMilli);
+    }
 
-        if (currentTimeMilliseconds > previousTimeMilliseconds2)
+    /**
+     * Return once currentTimeMillis() has reached 'millis'.
+     */
+    private static void waitForClock(long millis)
+    {
+        boolean interrupted = false;
+        long ahead;
+        while ((ahead = millis - currentTimeMillis()) > 0)
         {
-            count2 = 0;
-            previousTimeMilliseconds2 = currentTimeMilliseconds;
+            if (ahead > 1 && !interrupted)
+            {
+                try
+                {
+                    Thread.sleep(ahead - 1);
+                }
+                catch (InterruptedException e)
+                {   // The IDs are already reserved: finish waiting without sleeping
+                    interrupted = true;
+                }
+            }
+            else
+            {   // Under a millisecond to go: park briefly rather than spin
+                LockSupport.parkNanos(100000L);
+            }
+        }
+        if (interrupted)
+        {   // Keep the interrupt for the caller
+            Thread.currentThread().interrupt();
         }
-
-        return currentTimeMilliseconds * 1000000 + count2 * 100 + clusterId;
     }
 
     /**
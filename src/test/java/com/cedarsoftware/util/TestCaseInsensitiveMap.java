@@ -1536,6 +1536,154 @@ public class TestCaseInsensitiveMap
         return stringMap;
     }
 
+    @Test
+    public void testLookupWithoutWrapping()
+    {
+        List<Map<String, Object>> backings = new ArrayList<>();
+        backings.add(new HashMap<String, Object>());
+        backings.add(new LinkedHashMap<String, Object>());
+        backings.add(new TreeMap<String, Object>());
+        backings.add(new WeakHashMap<String, Object>());
+        backings.add(new ConcurrentHashMap<String, Object>());
+        backings.add(new ConcurrentSkipListMap<String, Object>());
+        backings.add(new TreeMap<String, Object>(new Comparator<Object>()
+        {   // knows only about CaseInsensitiveString (and its own keys)
+            public int compare(Object o1, Object o2)
+            {
+                return ((CaseInsensitiveMap.CaseInsensitiveString) o1).compareTo(o2);
+            }
+        }));
+
+        for (Map<String, Object> backing : backings)
+        {
+            Map<String, Object> map = new CaseInsensitiveMap<>(Collections.<String, Object>emptyMap(), backing);
+            map.put("Content-Type", "json");
+            map.put("Accept", "*/*");
+            map.put("\u0130stanbul", "dotted");
+
+            assert "json".equals(map.get("CONTENT-TYPE"));
+            assert "*/*".equals(map.get("accept"));
+            assert map.containsKey("content-type");
+            assert !map.containsKey("Content-Length");
+            assert map.get("Content-Length") == null;
+            assert "dotted".equals(map.get("\u0130STANBUL"));
+
+            // Stored keys are unaffected by the lookups
+            assert map.keySet().contains("Content-Type");
+            assert "json".equals(map.put("content-TYPE", "xml"));
+            assert map.size() == 3;
+            assert "xml".equals(map.remove("CONTENT-TYPE"));
+            assert map.size() == 2;
+        }
+    }
+
+    @Test
+    public void testNonAsciiKeys()
+    {
+        Map<String, Object> map = new CaseInsensitiveMap<>();
+        map.put("TITLE", 1);
+        map.put("\u00c9t\u00e9", 2);
+        map.put("\u212a", 3);      // KELVIN SIGN
+        assert (Integer) map.get("t\u0131tle") == 1;       // dotless i upper-cases to I
+        assert (Integer) map.get("\u00e9T\u00c9") == 2;
+        assert (Integer) map.get("k") == 3;
+        assert (Integer) map.get("K") == 3;
+        map.put("k", 4);
+        assert map.size() == 3;
+
+        CompactMap<String, Object> compact = new CompactCIHashMap<>();
+        compact.put("TITLE", 1);
+        compact.put("\u212a", 3);
+        assert (Integer) compact.get("t\u0131tle") == 1;
+        assert (Integer) compact.get("k") == 3;
+    }
+
+    @Test
+    public void testInternedKeys()
+    {
+        assert CaseInsensitiveMap.getInternCacheSize() == 1024;
+        CaseInsensitiveMap.CaseInsensitiveString a = CaseInsensitiveMap.CaseInsensitiveString.of(new String("Content-Type"));
+        CaseInsensitiveMap.CaseInsensitiveString b = CaseInsensitiveMap.CaseInsensitiveString.of(new String("Content-Type"));
+        CaseInsensitiveMap.CaseInsensitiveString c = CaseInsensitiveMap.CaseInsensitiveString.of("content-type");
+        assert a == b;
+        assert a != c;
+        assert a.equals(c);
+        assert "content-type".equals(c.toString());
+
+        CaseInsensitiveMap<String, Object> map1 = new CaseInsensitiveMap<>();
+        CaseInsensitiveMap<String, Object> map2 = new CaseInsensitiveMap<>(new HashMap<String, Object>());
+        map1.put("Content-Type", "json");
+        map2.put(new String("Content-Type"), "xml");
+        assert map1.getWrappedMap().keySet().iterator().next() == map2.getWrappedMap().keySet().iterator().next();
+
+        Map<String, Object> copy = new CaseInsensitiveMap<>(new LinkedHashMap<>(map2));
+        assert copy.get("CONTENT-TYPE").equals("xml");
+
+        try
+        {
+            CaseInsensitiveMap.setInternCacheSize(0);
+            assert CaseInsensitiveMap.getInternCacheSize() == 0;
+            assert CaseInsensitiveMap.CaseInsensitiveString.of("id") != CaseInsensitiveMap.CaseInsensitiveString.of("id");
+            map1.put("Content-Type", "text");
+            assert map1.size() == 1;
+            assert "text".equals(map1.get("content-type"));
+
+            CaseInsensitiveMap.setInternCacheSize(100);
+            assert CaseInsensitiveMap.getInternCacheSize() == 128;
+            assert CaseInsensitiveMap.CaseInsensitiveString.of("id") == CaseInsensitiveMap.CaseInsensitiveString.of("id");
+            try
+            {
+                CaseInsensitiveMap.setInternCacheSize(-1);
+                fail();
+            }
+            catch (IllegalArgumentException e) { }
+        }
+        finally
+        {
+            CaseInsensitiveMap.setInternCacheSize(1024);
+        }
+    }
+
+    @Test
+    public void testLookupDoesNotAllocate()
+    {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+        {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+        {
+            return;
+        }
+
+        Map<String, Object> map = new CaseInsensitiveMap<>();
+        String[] keys = new String[16];
+        for (int i=0; i < keys.length; i++)
+        {
+            map.put("Header-" + i, i);
+            keys[i] = "HEADER-" + i;
+        }
+
+        long found = 0;
+        for (int i=0; i < 100000; i++)
+        {   // warm up
+            found += map.containsKey(keys[i & 15]) ? 1 : 0;
+            found += map.get(keys[i & 15]) != null ? 1 : 0;
+        }
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i=0; i < 100000; i++)
+        {
+            found += map.containsKey(keys[i & 15]) ? 1 : 0;
+            found += map.get(keys[i & 15]) != null ? 1 : 0;
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        assert found == 400000;
+        assert allocated < 100000 : "allocated " + allocated + " bytes for 200000 lookups";     // a wrapper each is 4.8MB
+    }
+
     private Map.Entry getEntry(final Object key, final Object value)
     {
         return new Map.Entry()
@@ -576,6 +576,102 @@ public class TestCaseInsensitiveSet
         assert !set.equals(other);
     }
 
+    @Test
+    public void testBulkWithCaseInsensitiveSet()
+    {
+        Set<String> set = new CaseInsensitiveSet<>(get123());
+        Set<String> other = new CaseInsensitiveSet<>();
+        other.add("ONE");
+        other.add("three");
+        other.add(null);
+        assert !set.containsAll(other);
+        other.remove(null);
+        assert set.containsAll(other);
+        other.add("Four");
+        assert !set.containsAll(other);
+
+        assert set.addAll(other);
+        assert set.size() == 4;
+        assert set.contains("FOUR");
+        assert !set.addAll(other);
+        Iterator<String> i = set.iterator();
+        assert "One".equals(i.next());         // existing case is kept
+        assert "Two".equals(i.next());
+        assert "Three".equals(i.next());
+        assert "Four".equals(i.next());
+
+        assert set.retainAll(other);
+        assert set.size() == 3;
+        assert !set.contains("two");
+        assert !set.retainAll(other);
+
+        other.remove("one");
+        assert set.removeAll(other);
+        assert set.size() == 1;
+        assert set.contains("oNe");
+        assert !set.removeAll(other);
+
+        set.add("x");                          // larger than other: other's elements are removed one by one
+        set.add("y");
+        set.add("z");
+        other.add("Y");
+        assert set.removeAll(other);
+        assert set.size() == 3;
+        assert !set.contains("y");
+
+        assert set.equals(new CaseInsensitiveSet<>(Arrays.asList("ONE", "X", "Z")));
+        assert set.removeAll(set);
+        assert set.isEmpty();
+    }
+
+    @Test
+    public void testBulkWithCaseInsensitiveKeySet()
+    {
+        Map<Object, Object> map = new CaseInsensitiveMap<>();
+        map.put("one", 1);
+        map.put("TWO", 2);
+        map.put(7, 7);
+        Set<Object> set = new CaseInsensitiveSet<>();
+        set.add("One");
+        set.add("Three");
+        set.add(7);
+        assert !set.containsAll(map.keySet());
+        assert set.addAll(map.keySet());
+        assert set.size() == 4;
+        assert set.containsAll(map.keySet());
+        assert set.contains("two");
+
+        assert set.retainAll(map.keySet());
+        assert set.size() == 3;
+        assert !set.contains("three");
+
+        map.remove("two");
+        assert set.removeAll(map.keySet());
+        assert set.size() == 1;
+        assert set.contains("Two");
+
+        Set<Object> keys = new CaseInsensitiveSet<>(map.keySet());
+        assert keys.size() == 2;
+        assert keys.contains("ONE");
+        assert keys.contains(7);
+    }
+
+    @Test
+    public void testBulkWithOtherBackingMap()
+    {
+        Set<String> set = new CaseInsensitiveSet<>(get123());
+        Set<String> treeBacked = new CaseInsensitiveSet<>(Arrays.asList("one", "TWO"), new TreeMap());
+        assert set.containsAll(treeBacked);
+        assert set.retainAll(treeBacked);
+        assert set.size() == 2;
+        assert !treeBacked.containsAll(set);   // plain TreeMap is case sensitive
+        assert treeBacked.addAll(get123());
+        assert treeBacked.size() == 5;
+        assert treeBacked.removeAll(set);
+        assert treeBacked.size() == 3;
+        assert treeBacked.contains("one");
+    }
+
     private static Set get123()
     {
         Set set = new CaseInsensitiveSet();
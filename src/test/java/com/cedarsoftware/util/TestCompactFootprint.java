@@ -0,0 +1,213 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestCompactFootprint
+{
+    @Test
+    public void testMapTiers()
+    {
+        CompactMap<String, Object> map = new CompactMap<>();
+        assert CompactFootprint.getTier(map) == CompactFootprint.Tier.EMPTY;
+        long empty = CompactFootprint.estimateSize(map);
+        assert empty > 0;
+
+        map.put("key", "value");    // getSingleValueKey()
+        assert CompactFootprint.getTier(map) == CompactFootprint.Tier.OBJECT;
+        assert CompactFootprint.estimateSize(map) == empty;
+
+        map.clear();
+        map.put("a", 1);
+        assert CompactFootprint.getTier(map) == CompactFootprint.Tier.ENTRY;
+        long entry = CompactFootprint.estimateSize(map);
+        assert entry > empty;
+
+        map.put("b", 2);
+        assert CompactFootprint.getTier(map) == CompactFootprint.Tier.ARRAY;
+        long two = CompactFootprint.estimateSize(map);
+        assert two > entry;
+
+        for (int i=0; i < map.compactSize(); i++)
+        {
+            map.put("k" + i, i);
+        }
+        assert CompactFootprint.getTier(map) == CompactFootprint.Tier.MAP;
+        long backed = CompactFootprint.estimateSize(map);
+
+        CompactMap<String, Object> full = new CompactMap<>();
+        for (int i=0; i < full.compactSize(); i++)
+        {
+            full.put("k" + i, i);
+        }
+        assert CompactFootprint.getTier(full) == CompactFootprint.Tier.ARRAY;
+        long array = CompactFootprint.estimateSize(full);
+        assert array > two;
+        assert backed > array;      // HashMap nodes and table cost more than the Object[]
+    }
+
+    @Test
+    public void testHashIndexAndCaseInsensitiveCostMore()
+    {
+        CompactMap<String, Object> plain = new CompactMap<>();
+        CompactMap<String, Object> indexed = new CompactCILinkedMap<>();
+        for (int i=0; i < 10; i++)
+        {
+            plain.put("k" + i, i);
+            indexed.put("k" + i, i);
+        }
+        assert CompactFootprint.estimateSize(indexed) > CompactFootprint.estimateSize(plain);     // int[] of hashes
+
+        CompactSet<String> plainSet = new CompactSet<>();
+        CompactSet<String> indexedSet = new CompactCIHashSet<>();
+        for (int i=0; i < 10; i++)
+        {
+            plainSet.add("k" + i);
+            indexedSet.add("k" + i);
+        }
+        assert CompactFootprint.getTier(indexedSet) == CompactFootprint.Tier.ARRAY;
+        assert CompactFootprint.estimateSize(indexedSet) > CompactFootprint.estimateSize(plainSet);
+
+        CompactMap<String, Object> hash = new CompactMap<>();
+        CompactMap<String, Object> ci = new CompactCIHashMap<>();
+        for (int i=0; i <= hash.compactSize(); i++)
+        {
+            hash.put("k" + i, i);
+            ci.put("k" + i, i);
+        }
+        assert CompactFootprint.getTier(ci) == CompactFootprint.Tier.MAP;
+        assert CompactFootprint.estimateSize(ci) > CompactFootprint.estimateSize(hash);     // CaseInsensitiveString keys
+    }
+
+    @Test
+    public void testSetTiers()
+    {
+        CompactSet<String> set = new CompactSet<>();
+        assert CompactFootprint.getTier(set) == CompactFootprint.Tier.EMPTY;
+        long empty = CompactFootprint.estimateSize(set);
+        set.add("a");
+        assert CompactFootprint.getTier(set) == CompactFootprint.Tier.ARRAY;
+        assert CompactFootprint.estimateSize(set) > empty;
+
+        CompactSet<String> ciSet = new CompactCIHashSet<>();
+        for (int i=0; i <= set.compactSize(); i++)
+        {
+            set.add("s" + i);
+            ciSet.add("s" + i);
+        }
+        assert CompactFootprint.getTier(set) == CompactFootprint.Tier.MAP;
+        assert CompactFootprint.getTier(ciSet) == CompactFootprint.Tier.MAP;
+        assert CompactFootprint.estimateSize(ciSet) > CompactFootprint.estimateSize(set);
+
+        try
+        {
+            CompactFootprint.getTier(new ArrayList<>());
+            fail();
+        }
+        catch (IllegalArgumentException e) { }
+    }
+
+    @Test
+    public void testHistogram()
+    {
+        List<Object> population = new ArrayList<>();
+        for (int size=0; size < 5; size++)
+        {
+            CompactMap<String, Object> map = new CompactMap<>();
+            for (int i=0; i < size; i++)
+            {
+                map.put("k" + i, i);
+            }
+            population.add(map);
+            population.add(map);
+        }
+        CompactSet<String> set = new CompactSet<>();
+        set.add("x");
+        population.add(set);
+
+        CompactFootprint.Histogram histogram = CompactFootprint.histogram(population);
+        assert histogram.getTotalCount() == 11;
+        assert histogram.getCount(CompactFootprint.Tier.EMPTY) == 2;
+        assert histogram.getCount(CompactFootprint.Tier.ENTRY) == 2;
+        assert histogram.getCount(CompactFootprint.Tier.ARRAY) == 7;
+        assert histogram.getCount(CompactFootprint.Tier.MAP) == 0;
+        assert histogram.getEntries(CompactFootprint.Tier.ARRAY) == 2 * (2 + 3 + 4) + 1;
+        assert histogram.getTotalEntries() == 2 * (1 + 2 + 3 + 4) + 1;
+        assert histogram.getBytesPerEntry(CompactFootprint.Tier.MAP) == 0;
+        assert histogram.getBytesPerEntry(CompactFootprint.Tier.ARRAY) > 0;
+
+        long bytes = 0;
+        for (Object compact : population)
+        {
+            bytes += CompactFootprint.estimateSize(compact);
+        }
+        assert histogram.getTotalBytes() == bytes;
+
+        Map<Integer, Long> sizes = histogram.getSizeCounts();
+        assert sizes.get(0) == 2;
+        assert sizes.get(1) == 3;
+        assert sizes.get(4) == 2;
+        String report = histogram.toString();
+        assert report.contains("ARRAY");
+        assert report.contains("bytes/entry");
+    }
+
+    @Test
+    public void testInstrumentation()
+    {
+        Instrumentation inst = (Instrumentation) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Instrumentation.class}, new InvocationHandler()
+        {
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                if ("getObjectSize".equals(method.getName()))
+                {   // compressed oops layout, arrays measured, everything else 100 bytes
+                    Object o = args[0];
+                    return o instanceof Object[] ? 16L + ((((Object[]) o).length * 4L + 7) & ~7L) : 100L;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+        CompactMap<String, Object> map = new CompactMap<>();
+        map.put("a", 1);
+        assert !CompactFootprint.isInstrumented();
+        try
+        {
+            CompactFootprint.setInstrumentation(inst);
+            assert CompactFootprint.isInstrumented();
+            assert CompactFootprint.estimateSize(map) == 200;      // CompactMap + CompactMapEntry
+        }
+        finally
+        {
+            CompactFootprint.setInstrumentation(null);
+        }
+        assert !CompactFootprint.isInstrumented();
+        assert CompactFootprint.estimateSize(map) < 200;
+    }
+}
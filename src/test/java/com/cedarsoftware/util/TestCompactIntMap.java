@@ -0,0 +1,228 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestCompactIntMap
+{
+    @Test
+    public void testSimpleCases()
+    {
+        CompactIntMap<String> map = new CompactIntMap<>();
+        assert map.isEmpty();
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.EMPTY;
+        assert map.get(0) == null;
+        assert !map.containsKey(0);
+        assert map.remove(0) == null;
+
+        assert map.put(0, "zero") == null;
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ENTRY;
+        assert map.containsKey(0);
+        assert map.containsKey(Integer.valueOf(0));
+        assert !map.containsKey(Long.valueOf(0));
+        assert !map.containsKey(null);
+        assert "zero".equals(map.get(Integer.valueOf(0)));
+        assert "zero".equals(map.put(0, "ZERO"));
+        assert map.size() == 1;
+
+        assert map.put(Integer.MIN_VALUE, null) == null;
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.containsKey(Integer.MIN_VALUE);
+        assert map.get(Integer.MIN_VALUE) == null;
+        assert map.containsValue(null);
+        assert map.containsValue("ZERO");
+        assert !map.containsValue("zero");
+
+        assert "ZERO".equals(map.remove(Integer.valueOf(0)));
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ENTRY;
+        assert map.containsKey(Integer.MIN_VALUE);
+        assert map.remove("foo") == null;
+        map.clear();
+        assert map.isEmpty();
+
+        try
+        {
+            map.put(null, "null");
+            fail();
+        }
+        catch (NullPointerException e) { }
+    }
+
+    @Test
+    public void testTiersAgainstHashMap()
+    {
+        Random random = new Random(42);
+        CompactIntMap<Object> map = new CompactIntMap<Object>()
+        {
+            protected int compactSize() { return 10; }
+        };
+        Map<Integer, Object> expected = new HashMap<>();
+        boolean sawArray = false;
+        boolean sawMap = false;
+
+        for (int i=0; i < 50000; i++)
+        {
+            int key = random.nextInt(40) - 20;
+            if (random.nextInt(8) == 0)
+            {
+                key <<= 24;     // Keys that differ only in the high bits
+            }
+            int op = random.nextInt(10);
+            if (op < 6)
+            {
+                Object value = random.nextInt(10) == 0 ? null : i;
+                assert Objects.equals(expected.put(key, value), map.put(key, value));
+            }
+            else
+            {
+                assert Objects.equals(expected.remove(key), map.remove(key));
+            }
+            assert expected.size() == map.size();
+            assert expected.containsKey(key) == map.containsKey(key);
+            assert Objects.equals(expected.get(key), map.get(key));
+            sawArray |= map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+            sawMap |= map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+
+            if (i % 100 == 0)
+            {
+                assert map.equals(expected);
+                assert expected.equals(map);
+                assert map.hashCode() == expected.hashCode();
+                for (Integer k : expected.keySet())
+                {
+                    assert map.containsKey(k.intValue());
+                }
+            }
+        }
+        assert sawArray;
+        assert sawMap;
+    }
+
+    @Test
+    public void testInsertionOrderWhileCompact()
+    {
+        CompactIntMap<Integer> map = new CompactIntMap<>();
+        Map<Integer, Integer> expected = new LinkedHashMap<>();
+        for (int i=0; i < map.compactSize(); i++)
+        {
+            int key = (i * 7919) % 1000;
+            map.put(key, Integer.valueOf(i));
+            expected.put(key, i);
+        }
+        map.remove(7919 % 1000);
+        expected.remove(7919 % 1000);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert Arrays.equals(map.keys(), toArray(expected));
+        assert Arrays.asList(map.values().toArray()).equals(Arrays.asList(expected.values().toArray()));
+
+        map.put(5000, Integer.valueOf(-1));
+        map.put(5001, Integer.valueOf(-2));
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        assert map.size() == map.compactSize() + 1;
+        map.remove(5000);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.get(5001) == -2;
+    }
+
+    @Test
+    public void testIterator()
+    {
+        CompactIntMap<Integer> map = new CompactIntMap<Integer>()
+        {
+            protected int compactSize() { return 5; }
+        };
+        for (int i=0; i < 20; i++)
+        {
+            map.put(i, Integer.valueOf(i * 10));
+        }
+
+        Iterator<Map.Entry<Integer, Integer>> i = map.entrySet().iterator();
+        try
+        {
+            i.remove();
+            fail();
+        }
+        catch (IllegalStateException e) { }
+
+        while (i.hasNext())
+        {
+            Map.Entry<Integer, Integer> entry = i.next();
+            if (entry.getKey() % 2 == 0)
+            {
+                i.remove();
+            }
+            else
+            {
+                entry.setValue(entry.getValue() + 1);
+            }
+        }
+        try
+        {
+            i.next();
+            fail();
+        }
+        catch (NoSuchElementException e) { }
+
+        assert map.size() == 10;
+        for (int k=0; k < 20; k++)
+        {
+            assert map.containsKey(k) == (k % 2 == 1);
+            if (k % 2 == 1)
+            {
+                assert map.get(k) == k * 10 + 1;
+            }
+        }
+
+        map.keySet().retainAll(Arrays.asList(1, 3, 5));
+        assert map.size() == 3;
+        assert map.entrySet().contains(new AbstractMap.SimpleEntry<>(3, 31));
+        assert map.entrySet().remove(new AbstractMap.SimpleEntry<>(3, 31));
+        assert !map.entrySet().remove(new AbstractMap.SimpleEntry<>(5, 0));
+        assert map.size() == 2;
+
+        CompactIntMap<Integer> copy = new CompactIntMap<>(map);
+        assert copy.equals(map);
+        map.entrySet().clear();
+        assert map.isEmpty();
+        assert copy.size() == 2;
+    }
+
+    private static int[] toArray(Map<Integer, ?> map)
+    {
+        int[] keys = new int[map.size()];
+        int n = 0;
+        for (Integer key : map.keySet())
+        {
+            keys[n++] = key;
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,228 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestCompactLongMap
+{
+    @Test
+    public void testSimpleCases()
+    {
+        CompactLongMap<String> map = new CompactLongMap<>();
+        assert map.isEmpty();
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.EMPTY;
+        assert map.get(0L) == null;
+        assert !map.containsKey(0L);
+        assert map.remove(0L) == null;
+
+        assert map.put(0L, "zero") == null;
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ENTRY;
+        assert map.containsKey(0L);
+        assert map.containsKey(Long.valueOf(0));
+        assert !map.containsKey(Integer.valueOf(0));
+        assert !map.containsKey(null);
+        assert "zero".equals(map.get(Long.valueOf(0)));
+        assert "zero".equals(map.put(0L, "ZERO"));
+        assert map.size() == 1;
+
+        assert map.put(Long.MIN_VALUE, null) == null;
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.containsKey(Long.MIN_VALUE);
+        assert map.get(Long.MIN_VALUE) == null;
+        assert map.containsValue(null);
+        assert map.containsValue("ZERO");
+        assert !map.containsValue("zero");
+
+        assert "ZERO".equals(map.remove(Long.valueOf(0)));
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ENTRY;
+        assert map.containsKey(Long.MIN_VALUE);
+        assert map.remove("foo") == null;
+        map.clear();
+        assert map.isEmpty();
+
+        try
+        {
+            map.put(null, "null");
+            fail();
+        }
+        catch (NullPointerException e) { }
+    }
+
+    @Test
+    public void testTiersAgainstHashMap()
+    {
+        Random random = new Random(42);
+        CompactLongMap<Object> map = new CompactLongMap<Object>()
+        {
+            protected int compactSize() { return 10; }
+        };
+        Map<Long, Object> expected = new HashMap<>();
+        boolean sawArray = false;
+        boolean sawMap = false;
+
+        for (int i=0; i < 50000; i++)
+        {
+            long key = random.nextInt(40) - 20;
+            if (random.nextInt(8) == 0)
+            {
+                key *= 1L << 40;    // Keys that differ only in the high bits
+            }
+            int op = random.nextInt(10);
+            if (op < 6)
+            {
+                Object value = random.nextInt(10) == 0 ? null : i;
+                assert Objects.equals(expected.put(key, value), map.put(key, value));
+            }
+            else
+            {
+                assert Objects.equals(expected.remove(key), map.remove(key));
+            }
+            assert expected.size() == map.size();
+            assert expected.containsKey(key) == map.containsKey(key);
+            assert Objects.equals(expected.get(key), map.get(key));
+            sawArray |= map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+            sawMap |= map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+
+            if (i % 100 == 0)
+            {
+                assert map.equals(expected);
+                assert expected.equals(map);
+                assert map.hashCode() == expected.hashCode();
+                for (Long k : expected.keySet())
+                {
+                    assert map.containsKey(k.longValue());
+                }
+            }
+        }
+        assert sawArray;
+        assert sawMap;
+    }
+
+    @Test
+    public void testInsertionOrderWhileCompact()
+    {
+        CompactLongMap<Integer> map = new CompactLongMap<>();
+        Map<Long, Integer> expected = new LinkedHashMap<>();
+        for (int i=0; i < map.compactSize(); i++)
+        {
+            long key = (i * 7919L) % 1000;
+            map.put(key, Integer.valueOf(i));
+            expected.put(key, i);
+        }
+        map.remove(7919L % 1000);
+        expected.remove(7919L % 1000);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert Arrays.equals(map.keys(), toArray(expected));
+        assert Arrays.asList(map.values().toArray()).equals(Arrays.asList(expected.values().toArray()));
+
+        map.put(5000L, Integer.valueOf(-1));
+        map.put(5001L, Integer.valueOf(-2));
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        assert map.size() == map.compactSize() + 1;
+        map.remove(5000L);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.get(5001L) == -2;
+    }
+
+    @Test
+    public void testIterator()
+    {
+        CompactLongMap<Long> map = new CompactLongMap<Long>()
+        {
+            protected int compactSize() { return 5; }
+        };
+        for (long i=0; i < 20; i++)
+        {
+            map.put(i, Long.valueOf(i * 10));
+        }
+
+        Iterator<Map.Entry<Long, Long>> i = map.entrySet().iterator();
+        try
+        {
+            i.remove();
+            fail();
+        }
+        catch (IllegalStateException e) { }
+
+        while (i.hasNext())
+        {
+            Map.Entry<Long, Long> entry = i.next();
+            if (entry.getKey() % 2 == 0)
+            {
+                i.remove();
+            }
+            else
+            {
+                entry.setValue(entry.getValue() + 1);
+            }
+        }
+        try
+        {
+            i.next();
+            fail();
+        }
+        catch (NoSuchElementException e) { }
+
+        assert map.size() == 10;
+        for (long k=0; k < 20; k++)
+        {
+            assert map.containsKey(k) == (k % 2 == 1);
+            if (k % 2 == 1)
+            {
+                assert map.get(k) == k * 10 + 1;
+            }
+        }
+
+        map.keySet().retainAll(Arrays.asList(1L, 3L, 5L));
+        assert map.size() == 3;
+        assert map.entrySet().contains(new AbstractMap.SimpleEntry<>(3L, 31L));
+        assert map.entrySet().remove(new AbstractMap.SimpleEntry<>(3L, 31L));
+        assert !map.entrySet().remove(new AbstractMap.SimpleEntry<>(5L, 0L));
+        assert map.size() == 2;
+
+        CompactLongMap<Long> copy = new CompactLongMap<>(map);
+        assert copy.equals(map);
+        map.entrySet().clear();
+        assert map.isEmpty();
+        assert copy.size() == 2;
+    }
+
+    private static long[] toArray(Map<Long, ?> map)
+    {
+        long[] keys = new long[map.size()];
+        int n = 0;
+        for (Long key : map.keySet())
+        {
+            keys[n++] = key;
+        }
+        return keys;
+    }
+}
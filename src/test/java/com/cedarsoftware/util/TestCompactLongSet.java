@@ -0,0 +1,209 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestCompactLongSet
+{
+    @Test
+    public void testSimpleCases()
+    {
+        CompactLongSet set = new CompactLongSet();
+        assert set.isEmpty();
+        assert set.getLogicalValueType() == CompactMap.LogicalValueType.EMPTY;
+        assert !set.contains(0L);
+        assert !set.remove(0L);
+
+        assert set.add(0L);
+        assert !set.add(0L);
+        assert set.getLogicalValueType() == CompactMap.LogicalValueType.ENTRY;
+        assert set.contains(0L);
+        assert set.contains(Long.valueOf(0));
+        assert !set.contains(Integer.valueOf(0));
+        assert !set.contains(null);
+        assert set.size() == 1;
+
+        assert set.add(Long.MIN_VALUE);
+        assert set.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert set.contains(Long.MIN_VALUE);
+        assert !set.remove(Integer.valueOf(0));
+        assert set.remove(Long.valueOf(0));
+        assert set.getLogicalValueType() == CompactMap.LogicalValueType.ENTRY;
+        assert Arrays.equals(set.toLongArray(), new long[] {Long.MIN_VALUE});
+
+        try
+        {
+            set.add((Long) null);
+            fail();
+        }
+        catch (NullPointerException e) { }
+
+        set.clear();
+        assert set.isEmpty();
+        assert set.toLongArray().length == 0;
+
+        try
+        {
+            new CompactLongSet()
+            {
+                protected int compactSize() { return 1; }
+            };
+            fail();
+        }
+        catch (IllegalStateException e) { }
+    }
+
+    @Test
+    public void testTiersAgainstHashSet()
+    {
+        Random random = new Random(42);
+        CompactLongSet set = new CompactLongSet()
+        {
+            protected int compactSize() { return 10; }
+        };
+        Set<Long> expected = new HashSet<>();
+        boolean sawArray = false;
+        boolean sawTable = false;
+
+        for (int i=0; i < 50000; i++)
+        {
+            long key = random.nextInt(40) - 20;
+            if (random.nextInt(8) == 0)
+            {
+                key *= 1L << 40;    // Keys that differ only in the high bits
+            }
+            if (random.nextInt(10) < 6)
+            {
+                assert expected.add(key) == set.add(key);
+            }
+            else
+            {
+                assert expected.remove(key) == set.remove(key);
+            }
+            assert expected.size() == set.size();
+            assert expected.contains(key) == set.contains(key);
+            sawArray |= set.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+            sawTable |= set.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+
+            if (i % 100 == 0)
+            {
+                assert set.equals(expected);
+                assert expected.equals(set);
+                assert set.hashCode() == expected.hashCode();
+                for (Long k : expected)
+                {
+                    assert set.contains(k.longValue());
+                }
+            }
+        }
+        assert sawArray;
+        assert sawTable;
+    }
+
+    @Test
+    public void testInsertionOrderWhileCompact()
+    {
+        CompactLongSet set = new CompactLongSet();
+        Set<Long> expected = new LinkedHashSet<>();
+        for (int i=0; i < set.compactSize(); i++)
+        {
+            long key = (i * 7919L) % 1000;
+            set.add(key);
+            expected.add(key);
+        }
+        set.remove(7919L % 1000);
+        expected.remove(7919L % 1000);
+        assert set.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert Arrays.equals(set.toLongArray(), toArray(expected));
+
+        set.add(5000L);
+        set.add(5001L);
+        assert set.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        assert set.size() == set.compactSize() + 1;
+        assert set.contains(0L);
+        set.remove(5000L);
+        assert set.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert set.contains(5001L);
+        assert set.contains(0L);
+        assert set.size() == set.compactSize();
+    }
+
+    @Test
+    public void testIterator()
+    {
+        CompactLongSet set = new CompactLongSet()
+        {
+            protected int compactSize() { return 5; }
+        };
+        for (long i=0; i < 20; i++)
+        {
+            set.add(i);
+        }
+
+        Iterator<Long> i = set.iterator();
+        try
+        {
+            i.remove();
+            fail();
+        }
+        catch (IllegalStateException e) { }
+
+        while (i.hasNext())
+        {
+            if (i.next() % 2 == 0)
+            {
+                i.remove();
+            }
+        }
+        try
+        {
+            i.next();
+            fail();
+        }
+        catch (NoSuchElementException e) { }
+
+        assert set.size() == 10;
+        for (long k=0; k < 20; k++)
+        {
+            assert set.contains(k) == (k % 2 == 1);
+        }
+        assert new CompactLongSet(Arrays.asList(1L, 3L, 5L, 3L)).size() == 3;
+    }
+
+    private static long[] toArray(Set<Long> set)
+    {
+        long[] array = new long[set.size()];
+        int i = 0;
+        for (Long k : set)
+        {
+            array[i++] = k;
+        }
+        return array;
+    }
+}
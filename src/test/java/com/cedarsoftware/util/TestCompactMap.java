@@ -2697,6 +2697,207 @@ public class TestCompactMap
         assert copy.containsKey("foo" + (copy.compactSize() + 3));
     }
 
+    @Test
+    public void testCaseInsensitiveHashIndexedByDefault()
+    {
+        assert !new CompactMap<String, Object>().isHashIndexed();
+        assert !new CompactLinkedMap<String, Object>().isHashIndexed();
+
+        List<CompactMap<Object, Object>> maps = new ArrayList<>();
+        maps.add(new CompactCIHashMap<>());
+        maps.add(new CompactCILinkedMap<>());
+        for (CompactMap<Object, Object> map : maps)
+        {
+            assert map.isHashIndexed();
+            for (int i=0; i < map.compactSize(); i++)
+            {
+                map.put("Content-Type" + i, i);
+            }
+            map.put(16L, "long");
+            map.remove("Content-Type" + (map.compactSize() - 1));
+            assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+
+            for (int i=0; i < map.compactSize() - 1; i++)
+            {
+                assert (Integer) map.get("CONTENT-TYPE" + i) == i;
+                assert map.containsKey("content-type" + i);
+            }
+            assert !map.containsKey("content-type" + (map.compactSize() - 1));
+            assert "long".equals(map.get(16L));
+            assert !map.containsKey(16);
+
+            map.put("CONTENT-type0", "replaced");
+            assert map.size() == map.compactSize();
+            assert "replaced".equals(map.remove("Content-Type0"));
+            assert !map.containsKey("content-type0");
+            assert (Integer) map.get("Content-TYPE1") == 1;
+        }
+    }
+
+    private static class AdaptiveMap extends CompactMap<String, Object>
+    {
+        protected int compactSize() { return 20; }
+        protected boolean isAdaptiveCompactSize() { return true; }
+    }
+
+    @Test
+    public void testAdaptiveCompactSize()
+    {
+        CompactMap<String, Object> map = new CompactMap<String, Object>()
+        {
+            protected int compactSize() { return 20; }
+            protected boolean isAdaptiveCompactSize() { return true; }
+        };
+        AdaptiveCompactSize adaptive = AdaptiveCompactSize.getAdaptiveCompactSize(map.getClass());
+        assert adaptive == AdaptiveCompactSize.of(map);
+        assert adaptive.getThreshold() == 0;
+        assert adaptive.threshold(map) == 20;
+        assert adaptive.getMin() == 5;
+        assert adaptive.getMax() == 40;
+
+        // 1ns per key compared, half the keys compared per lookup, 8ns per Map lookup: break-even at 16 entries
+        feed(adaptive, 10, 10, 20, 8, 16);
+        assert adaptive.getThreshold() == 16;
+        assert adaptive.getNanosPerProbe() == 1.0d;
+        assert adaptive.getProbeFraction() == 0.5d;
+        assert adaptive.getArraySamples() >= AdaptiveCompactSize.MIN_SAMPLES;
+        assert adaptive.getMapSamples() >= AdaptiveCompactSize.MIN_SAMPLES;
+        assert adaptive.toString().contains("threshold=16");
+    }
+
+    @Test
+    public void testAdaptiveCompactSizeSwitchesTiers()
+    {
+        CompactMap<String, Object> map = new AdaptiveMap();
+        AdaptiveCompactSize adaptive = AdaptiveCompactSize.getAdaptiveCompactSize(AdaptiveMap.class);
+        for (int i=0; i < 3; i++)
+        {
+            map.put("k" + i, i);
+        }
+        assert adaptive.getThreshold() == 20;
+
+        // Map lookups cost as much as comparing 2000 keys: threshold held at maxCompactSize()
+        feed(adaptive, 10, 10, 20, 1000, 40);
+        assert adaptive.getThreshold() == 40;
+        for (int i=3; i < 40; i++)
+        {
+            map.put("k" + i, i);
+        }
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        map.put("k40", 40);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+
+        // Other instances of the class share the threshold
+        CompactMap<String, Object> other = new AdaptiveMap();
+        other.putAll(map);
+        assert other.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        other.remove("k40");
+        assert other.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert other.size() == 40;
+
+        // Map lookups cost as much as comparing 2 keys: threshold held at minCompactSize()
+        feed(adaptive, 10, 10, 20, 1, 5);
+        assert adaptive.getThreshold() == 5;
+        for (int i=40; i > 5; i--)
+        {
+            map.remove("k" + i);
+            assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        }
+        map.remove("k5");
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.size() == 5;
+        for (Map.Entry<String, Object> entry : map.entrySet())
+        {
+            assert entry.getKey().equals("k" + entry.getValue());
+        }
+        map.put("k5", 5);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        other.put("k40", 40);
+        assert other.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+    }
+
+    /**
+     * Feed samples (as CompactMap would) until the threshold reaches the expected value, as the samples of lookups
+     * made by the test itself also count.
+     */
+    private static void feed(AdaptiveCompactSize adaptive, long arrayNanos, int probes, int count, long mapNanos, int expected)
+    {
+        for (int i=0; i < 100000 && adaptive.getThreshold() != expected; i++)
+        {
+            adaptive.sampleArray(arrayNanos, probes, count);
+            adaptive.sampleMap(mapNanos);
+        }
+    }
+
+    @Test
+    public void testAdaptiveCompactSizeSampling()
+    {
+        CompactMap<String, Object> map = new CompactMap<String, Object>()
+        {
+            protected int compactSize() { return 10; }
+            protected boolean isAdaptiveCompactSize() { return true; }
+        };
+        AdaptiveCompactSize adaptive = AdaptiveCompactSize.getAdaptiveCompactSize(map.getClass());
+        for (int i=0; i < 10; i++)
+        {
+            map.put("k" + i, i);
+        }
+        for (int i=0; i < 100000 && adaptive.getArraySamples() == 0; i++)
+        {
+            map.get("k" + (i % 10));
+        }
+        assert adaptive.getArraySamples() > 0;
+        assert adaptive.getProbeFraction() > 0;
+
+        map.put("k10", 10);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        for (int i=0; i < 100000 && adaptive.getMapSamples() == 0; i++)
+        {
+            map.containsKey("k" + (i % 11));
+        }
+        assert adaptive.getMapSamples() > 0;
+        assert adaptive.getThreshold() >= adaptive.getMin() && adaptive.getThreshold() <= adaptive.getMax();
+    }
+
+    @Test
+    public void testAdaptiveCompactSizeOff()
+    {
+        CompactMap<String, Object> map = new CompactMap<>();
+        assert !map.isAdaptiveCompactSize();
+        for (int i=0; i < 3; i++)
+        {
+            map.put("k" + i, i);
+        }
+        assert AdaptiveCompactSize.getAdaptiveCompactSize(CompactMap.class).getThreshold() == 0;
+
+        CompactMap<String, Object> sorted = new CompactSortedMap<String, Object>()
+        {
+            protected boolean isAdaptiveCompactSize() { return true; }
+        };
+        for (int i=0; i <= sorted.compactSize(); i++)
+        {
+            sorted.put("k" + i, i);
+        }
+        assert AdaptiveCompactSize.getAdaptiveCompactSize(sorted.getClass()).getThreshold() == 0;
+
+        CompactMap<String, Object> bad = new CompactMap<String, Object>()
+        {
+            protected boolean isAdaptiveCompactSize() { return true; }
+            protected int minCompactSize() { return 1; }
+        };
+        bad.put("a", 1);
+        bad.put("b", 2);
+        try
+        {
+            bad.put("c", 3);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assert e.getMessage().contains("minCompactSize");
+        }
+    }
+
     @Test
     public void testCaseInsensitiveEntries2()
     {
@@ -3241,6 +3442,377 @@ public class TestCompactMap
         assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;    // ensure switch over
     }
 
+    @Test
+    public void testHashIndexed()
+    {
+        CompactMap<Object, Object> map = new CompactMap<Object, Object>()
+        {
+            protected int compactSize() { return 10; }
+            protected boolean isHashIndexed() { return true; }
+        };
+
+        // "Aa" and "BB" have the same hashCode(), so the key compare must still happen after a hash match
+        map.put("Aa", 1);
+        map.put("BB", 2);
+        map.put(null, 3);
+        map.put(7L, 4);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.size() == 4;
+        assert (Integer) map.get("Aa") == 1;
+        assert (Integer) map.get("BB") == 2;
+        assert (Integer) map.get(null) == 3;
+        assert (Integer) map.get(7L) == 4;
+        assert !map.containsKey("aa");
+        assert !map.containsKey(7);
+        assert map.containsValue(4);
+        assert !map.containsValue(5);
+
+        assert (Integer) map.put("BB", 22) == 2;
+        assert (Integer) map.get("BB") == 22;
+        assert map.size() == 4;
+
+        assert (Integer) map.remove("Aa") == 1;
+        assert map.size() == 3;
+        assert !map.containsKey("Aa");
+        assert (Integer) map.get("BB") == 22;
+        assert (Integer) map.get(null) == 3;
+        assert (Integer) map.get(7L) == 4;
+
+        for (int i=0; i < 20; i++)
+        {
+            map.put("key" + i, i);
+        }
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        for (int i=0; i < 20; i++)
+        {
+            map.remove("key" + i);
+        }
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.size() == 3;
+        assert (Integer) map.get("BB") == 22;
+        assert (Integer) map.get(7L) == 4;
+        assert map.containsKey(null);
+
+        Map<Object, Object> copy = new HashMap<>();
+        copy.put("BB", 22);
+        copy.put(null, 3);
+        copy.put(7L, 4);
+        assert map.equals(copy);
+        assert copy.equals(map);
+        assert map.hashCode() == copy.hashCode();
+
+        map.remove(null);
+        map.remove(7L);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ENTRY;
+        assert (Integer) map.get("BB") == 22;
+    }
+
+    @Test
+    public void testHashIndexedCaseInsensitive()
+    {
+        CompactMap<String, Object> map = new CompactMap<String, Object>()
+        {
+            protected boolean isCaseInsensitive() { return true; }
+            protected boolean isHashIndexed() { return true; }
+            protected Map<String, Object> getNewMap() { return new CaseInsensitiveMap<>(); }
+        };
+
+        for (int i=0; i < map.compactSize(); i++)
+        {
+            map.put("Field" + i, i);
+        }
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        for (int i=0; i < map.compactSize(); i++)
+        {
+            assert (Integer) map.get("FIELD" + i) == i;
+            assert map.containsKey("field" + i);
+        }
+        assert map.get("Field" + map.compactSize()) == null;
+
+        map.put("FIELD3", 33);
+        assert map.size() == map.compactSize();
+        assert (Integer) map.get("field3") == 33;
+
+        Iterator<String> i = map.keySet().iterator();
+        while (i.hasNext())
+        {
+            String key = i.next();
+            if (!key.equalsIgnoreCase("field3"))
+            {
+                i.remove();
+            }
+        }
+        assert map.size() == 1;
+        assert (Integer) map.get("Field3") == 33;
+    }
+
+    @Test
+    public void testPutAllSizing()
+    {
+        CompactMap<String, Object> map = new CompactLinkedMap<>();
+        Map<String, Object> source = new LinkedHashMap<>();
+        for (int i=0; i < map.compactSize(); i++)
+        {
+            source.put("k" + i, i);
+        }
+        map.putAll(source);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.equals(source);
+        assert new ArrayList<>(map.keySet()).equals(new ArrayList<>(source.keySet()));
+
+        // One over: straight to backing Map
+        source.put("extra", "x");
+        map = new CompactMap<>(source);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        assert map.equals(source);
+
+        // Overlapping keys: everything fits after all, so it must land back in the Object[]
+        CompactMap<String, Object> ci = new CompactCIHashMap<>();
+        for (int i=0; i < ci.compactSize() - 1; i++)
+        {
+            ci.put("K" + i, i);
+        }
+        Map<String, Object> overlap = new HashMap<>();
+        for (int i=0; i < 10; i++)
+        {
+            overlap.put("k" + i, -i);
+        }
+        ci.putAll(overlap);
+        assert ci.size() == ci.compactSize() - 1;
+        assert ci.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert (Integer) ci.get("K5") == -5;
+
+        // Single entry plus a map holding only that key: must stay a single entry
+        CompactMap<String, Object> single = new CompactMap<>();
+        single.put("key", "value");
+        Map<String, Object> same = new HashMap<>();
+        same.put("key", "value2");
+        single.putAll(same);
+        assert single.size() == 1;
+        assert single.getLogicalValueType() == CompactMap.LogicalValueType.OBJECT;
+        assert "value2".equals(single.get("key"));
+
+        single.putAll(new HashMap<String, Object>());
+        assert single.getLogicalValueType() == CompactMap.LogicalValueType.OBJECT;
+    }
+
+    @Test
+    public void testGrowShrinkAgainstLinkedHashMap()
+    {
+        Random random = new Random(42);
+        for (final boolean hashIndexed : new boolean[] {false, true})
+        {
+            CompactMap<Object, Object> map = new CompactMap<Object, Object>()
+            {
+                protected int compactSize() { return 20; }
+                protected boolean isHashIndexed() { return hashIndexed; }
+                protected Map<Object, Object> getNewMap() { return new LinkedHashMap<>(); }
+            };
+            Map<Object, Object> expected = new LinkedHashMap<>();
+
+            for (int i=0; i < 20000; i++)
+            {
+                Object key = random.nextInt(8) == 0 ? null : "k" + random.nextInt(30);
+                int op = random.nextInt(10);
+                if (op < 5)
+                {
+                    assert Objects.equals(expected.put(key, i), map.put(key, i));
+                }
+                else if (op < 9)
+                {
+                    assert Objects.equals(expected.remove(key), map.remove(key));
+                }
+                else
+                {
+                    Map<Object, Object> bulk = new LinkedHashMap<>();
+                    int count = random.nextInt(8);
+                    for (int j=0; j < count; j++)
+                    {
+                        bulk.put("k" + random.nextInt(30), j);
+                    }
+                    expected.putAll(bulk);
+                    map.putAll(bulk);
+                }
+                assert expected.size() == map.size();
+                assert Objects.equals(expected.get(key), map.get(key));
+                assert expected.containsKey(key) == map.containsKey(key);
+            }
+            assert expected.equals(map);
+            assert map.equals(expected);
+            assert expected.hashCode() == map.hashCode();
+        }
+    }
+
+    @Test
+    public void testCompactSortedMap()
+    {
+        Random random = new Random(7);
+        CompactSortedMap<Integer, Object> map = new CompactSortedMap<Integer, Object>()
+        {
+            protected int compactSize() { return 10; }
+        };
+        TreeMap<Integer, Object> expected = new TreeMap<>();
+
+        for (int i=0; i < 20000; i++)
+        {
+            Integer key = random.nextInt(25);
+            if (random.nextInt(3) > 0)
+            {
+                assert Objects.equals(expected.put(key, i), map.put(key, i));
+            }
+            else
+            {
+                assert Objects.equals(expected.remove(key), map.remove(key));
+            }
+            assert expected.size() == map.size();
+            assert Objects.equals(expected.get(key), map.get(key));
+            if (!expected.isEmpty())
+            {
+                assert expected.firstKey().equals(map.firstKey());
+                assert expected.lastKey().equals(map.lastKey());
+            }
+            assert new ArrayList<>(expected.keySet()).equals(new ArrayList<>(map.keySet()));
+        }
+        assert map.equals(expected);
+        assert DeepEquals.deepEquals(map, expected);
+        assert DeepEquals.deepEquals(expected, map);
+
+        map.clear();
+        try
+        {
+            map.firstKey();
+            fail();
+        }
+        catch (NoSuchElementException e) { }
+
+        map.put(5, "five");
+        map.put(1, "one");
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.firstKey() == 1;
+        assert map.lastKey() == 5;
+        map.put(3, "three");
+        assert new ArrayList<>(map.values()).equals(Arrays.asList("one", "three", "five"));
+        assert map.comparator() == null;
+    }
+
+    @Test
+    public void testCompactSortedMapViews()
+    {
+        CompactSortedMap<String, Integer> map = new CompactSortedMap<>();
+        for (int i=0; i < 10; i++)
+        {
+            map.put("k" + i, i);
+        }
+
+        SortedMap<String, Integer> head = map.headMap("k3");
+        assert head.size() == 3;
+        assert head.firstKey().equals("k0");
+        assert head.lastKey().equals("k2");
+        assert head.containsKey("k2");
+        assert !head.containsKey("k3");
+        assert head.get("k5") == null;
+
+        SortedMap<String, Integer> tail = map.tailMap("k7");
+        assert new ArrayList<>(tail.keySet()).equals(Arrays.asList("k7", "k8", "k9"));
+
+        SortedMap<String, Integer> sub = map.subMap("k2", "k6");
+        assert sub.size() == 4;
+        assert sub.headMap("k4").size() == 2;
+        sub.put("k4a", 44);
+        assert map.containsKey("k4a");
+        assert sub.size() == 5;
+        assert sub.remove("k3") == 3;
+        assert !map.containsKey("k3");
+        assert sub.remove("k8") == null;
+        assert map.containsKey("k8");
+
+        try
+        {
+            sub.put("k9", 9);
+            fail();
+        }
+        catch (IllegalArgumentException e) { }
+
+        try
+        {
+            map.subMap("k5", "k1");
+            fail();
+        }
+        catch (IllegalArgumentException e) { }
+
+        Iterator<Map.Entry<String, Integer>> i = sub.entrySet().iterator();
+        while (i.hasNext())
+        {
+            if (i.next().getValue() % 2 == 0)
+            {
+                i.remove();
+            }
+        }
+        assert new ArrayList<>(sub.keySet()).equals(Arrays.asList("k5"));
+        assert map.size() == 7;
+        head.clear();
+        assert map.firstKey().equals("k5");
+    }
+
+    @Test
+    public void testCompactSortedMapEqualsOtherKeyType()
+    {   // Keys the Comparator cannot compare: not equal, rather than ClassCastException
+        CompactSortedMap<String, Object> map = new CompactSortedMap<>();
+        Map<Integer, Object> ints = new HashMap<>();
+        Map<String, Object> withNull = new HashMap<>();
+        for (int i=0; i < 3; i++)
+        {
+            map.put("k" + i, i);
+            ints.put(i, i);
+            withNull.put(i == 0 ? null : "k" + i, i);
+        }
+        assert !map.equals(ints);
+        assert !ints.equals(map);
+        assert !map.equals(withNull);
+
+        // Same with the single entry and the backing Map storage
+        CompactSortedMap<String, Object> one = new CompactSortedMap<>();
+        one.put("a", 1);
+        assert !one.equals(Collections.singletonMap(1, 1));
+        for (int i=3; i <= map.compactSize(); i++)
+        {
+            map.put("k" + i, i);
+            ints.put(i, i);
+        }
+        assert map.size() == ints.size();
+        assert !map.equals(ints);
+    }
+
+    @Test
+    public void testCompactSortedMapCaseInsensitive()
+    {
+        CompactSortedMap<String, Object> map = new CompactSortedMap<String, Object>()
+        {
+            public Comparator<? super String> comparator() { return String.CASE_INSENSITIVE_ORDER; }
+            protected boolean isCaseInsensitive() { return true; }
+        };
+        map.put("Charlie", 3);
+        map.put("alpha", 1);
+        map.put("BRAVO", 2);
+        assert new ArrayList<>(map.keySet()).equals(Arrays.asList("alpha", "BRAVO", "Charlie"));
+        assert (Integer) map.get("ALPHA") == 1;
+        assert (Integer) map.get("bravo") == 2;
+        assert map.containsKey("charlie");
+        map.put("Bravo", 22);
+        assert map.size() == 3;
+        assert (Integer) map.remove("BrAvO") == 22;
+        assert map.firstKey().equals("alpha");
+        assert map.lastKey().equals("Charlie");
+
+        for (int i=0; i < map.compactSize() + 5; i++)
+        {
+            map.put("Key" + i, i);
+        }
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        assert (Integer) map.get("KEY12") == 12;
+        assert map.firstKey().equals("alpha");
+    }
+
     @Ignore
     @Test
     public void testPerformance()
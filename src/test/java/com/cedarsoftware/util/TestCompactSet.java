@@ -5,6 +5,7 @@ import org.junit.Test;
 
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -447,6 +448,173 @@ public class TestCompactSet
         System.out.println("HashSet = " + totals[totals.length - 1] / 1000000.0d);
     }
 
+    @Test
+    public void testHashIndexed()
+    {
+        CompactSet<Object> indexed = new CompactSet<Object>()
+        {
+            protected int compactSize() { return 5; }
+            protected boolean isHashIndexed() { return true; }
+        };
+        Set<Object> expected = new HashSet<>();
+        Object[] items = {"Aa", "BB", null, 7, 7L, new int[] {1}, "aa", "x", "y", "z"};     // "Aa" and "BB" have the same hash
+        Random random = new Random(42);
+        for (int i=0; i < 2000; i++)
+        {
+            Object item = items[random.nextInt(items.length)];
+            if (random.nextInt(3) == 0)
+            {
+                assert indexed.remove(item) == expected.remove(item);
+            }
+            else
+            {
+                assert indexed.add(item) == expected.add(item);
+            }
+            assert indexed.size() == expected.size();
+            for (Object o : items)
+            {
+                assert indexed.contains(o) == expected.contains(o);
+            }
+            assert indexed.equals(expected);
+        }
+
+        indexed.clear();
+        indexed.add("a");
+        Object[] storage = (Object[]) indexed.getStorage();
+        assert storage.length == 2;
+        assert ((int[]) storage[1])[0] == 1;
+        assert ((int[]) storage[1])[1] == "a".hashCode();
+        assert !new CompactSet<String>().isHashIndexed();
+    }
+
+    @Test
+    public void testGrowAndShrink()
+    {
+        for (final boolean hashIndexed : new boolean[] {false, true})
+        {
+            CompactSet<Object> set = new CompactSet<Object>()
+            {
+                protected int compactSize() { return 10; }
+                protected boolean isHashIndexed() { return hashIndexed; }
+            };
+
+            // Grows by 1.5x (at least 2), capped at compactSize(), rather than on every add()
+            int[] capacities = {1, 3, 3, 5, 5, 7, 7, 10, 10, 10};
+            for (int i=0; i < 10; i++)
+            {
+                Object[] before = i == 0 ? null : (Object[]) set.getStorage();
+                assert set.add("k" + i);
+                assert !set.add("k" + i);
+                Object[] storage = (Object[]) set.getStorage();
+                assert storage.length - 1 == capacities[i];
+                assert before == null || (storage == before) == (capacities[i] == capacities[i - 1]);
+                checkStorage(set, i + 1);
+            }
+            set.add("k10");
+            assert set.getStorage() instanceof Set;
+
+            // Back to the Object[] at compactSize(), then shrinks once less than half full
+            assert set.remove("k10");
+            Object[] storage = (Object[]) set.getStorage();
+            assert storage.length - 1 == 10;
+            checkStorage(set, 10);
+            int[] shrunk = {10, 10, 10, 10, 10, 6, 6, 3, 3, 0};    // capacity after removing down to 9, 8, ... 0 items
+            for (int i=0; i < 10; i++)
+            {
+                assert set.remove("k" + i);
+                assert !set.remove("k" + i);
+                assert !set.contains("k" + i);
+                if (set.isEmpty())
+                {
+                    assert shrunk[i] == 0;
+                    continue;
+                }
+                storage = (Object[]) set.getStorage();
+                assert storage.length - 1 == shrunk[i];
+                checkStorage(set, 9 - i);
+                for (int j=i + 1; j < 10; j++)
+                {
+                    assert set.contains("k" + j);
+                }
+            }
+
+            // Grow again from a shrunken array
+            for (int i=0; i < 4; i++)
+            {
+                set.add(i);
+            }
+            assert set.remove(1);
+            assert set.add("x");
+            assert set.add(null);
+            checkStorage(set, 5);
+            assert set.contains(0) && set.contains(2) && set.contains(3) && set.contains("x") && set.contains(null);
+            assert !set.contains(1);
+        }
+    }
+
+    /**
+     * Check the Object[] storage: 'count' items, unused slots cleared, and each hash matching its item.
+     */
+    private static void checkStorage(CompactSet<Object> set, int count)
+    {
+        Object[] storage = (Object[]) set.getStorage();
+        Object tail = storage[storage.length - 1];
+        assert set.size() == count;
+        assert count <= storage.length - 1;
+        assert count >= (storage.length - 1) >> 1;
+        assert (tail instanceof int[]) == set.isHashIndexed();
+        if (tail instanceof int[])
+        {
+            int[] meta = (int[]) tail;
+            assert meta.length == storage.length;
+            assert meta[0] == count;
+            for (int i=0; i < count; i++)
+            {
+                assert meta[i + 1] == set.computeItemHashCode(storage[i]);
+            }
+        }
+        else
+        {
+            assert (Integer) tail == count;
+        }
+        for (int i=count; i < storage.length - 1; i++)
+        {
+            assert storage[i] == null;
+        }
+    }
+
+    @Test
+    public void testCaseInsensitiveHashIndexed()
+    {
+        CompactSet<String> set = new CompactCILinkedSet<>();
+        assert set.isHashIndexed();
+        set.add("Content-Type");
+        set.add("TITLE");
+        set.add("Straße");
+        assert set.contains("content-type");
+        assert set.contains("t\u0131tle");
+        assert set.contains("STRAßE");
+        assert !set.add("CONTENT-TYPE");
+        assert set.size() == 3;
+        assert set.remove("title");
+        assert !set.contains("TITLE");
+        Iterator<String> i = set.iterator();
+        assert "Content-Type".equals(i.next());
+        assert "Straße".equals(i.next());
+
+        for (int j=0; j < set.compactSize() * 2; j++)
+        {
+            set.add("Key" + j);
+        }
+        while (set.size() > 2)
+        {
+            set.remove("KEY" + (set.size() - 3));
+        }
+        assert set.getStorage() instanceof Object[];
+        assert set.contains("content-TYPE");
+        assert set.contains("straße");
+    }
+
     private void clearViaIterator(Set set)
     {
         Iterator i = set.iterator();
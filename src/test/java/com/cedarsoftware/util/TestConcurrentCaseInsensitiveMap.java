@@ -0,0 +1,211 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestConcurrentCaseInsensitiveMap
+{
+    @Test
+    public void testBasics()
+    {
+        ConcurrentMap<String, Object> map = new ConcurrentCaseInsensitiveMap<>();
+        map.put("Content-Type", "json");
+        map.put("userId", 42);
+        assert "json".equals(map.get("CONTENT-TYPE"));
+        assert map.containsKey("USERID");
+        assert map.size() == 2;
+        assert map.keySet().contains("content-type");
+        assert map.keySet().iterator().next() instanceof String;
+        assert map.equals(new CaseInsensitiveMap<>(map));
+
+        Map<String, Object> source = new HashMap<>();
+        source.put("One", 1);
+        source.put("Two", 2);
+        ConcurrentCaseInsensitiveMap<String, Object> copy = new ConcurrentCaseInsensitiveMap<>(source);
+        assert (Integer) copy.get("ONE") == 1;
+        assert copy.equals(source);
+
+        try
+        {
+            map.put("nothing", null);
+            fail();
+        }
+        catch (NullPointerException e) { }
+        try
+        {
+            map.put(null, "value");
+            fail();
+        }
+        catch (NullPointerException e) { }
+    }
+
+    @Test
+    public void testConditionalOperations()
+    {
+        ConcurrentMap<String, Object> map = new ConcurrentCaseInsensitiveMap<>(16);
+        assert map.putIfAbsent("Session", "a") == null;
+        assert "a".equals(map.putIfAbsent("SESSION", "b"));
+        assert "a".equals(map.get("session"));
+        assert map.keySet().contains("Session");
+
+        assert !map.replace("session", "b", "c");
+        assert map.replace("SESSION", "a", "c");
+        assert "c".equals(map.replace("Session", "d"));
+        assert map.replace("missing", "x") == null;
+        assert !map.containsKey("missing");
+
+        assert !map.remove("SESSION", "c");
+        assert map.remove("SESSION", "d");
+        assert map.isEmpty();
+
+        ConcurrentMap<Object, Object> mixed = new ConcurrentCaseInsensitiveMap<>();
+        mixed.putIfAbsent("Key", 1);
+        mixed.putIfAbsent(7L, "long");
+        assert "long".equals(mixed.get(7L));
+        assert mixed.remove(7L, "long");
+        assert mixed.size() == 1;
+    }
+
+    @Test
+    public void testEntrySetRemovesOnlyMatchingValues()
+    {
+        ConcurrentCaseInsensitiveMap<String, Object> map = new ConcurrentCaseInsensitiveMap<>();
+        map.put("A", 1);
+        map.put("B", 2);
+        map.put("C", 3);
+        map.put("D", 4);
+
+        assert !map.entrySet().remove(new AbstractMap.SimpleEntry<>("a", 9));
+        assert map.entrySet().remove(new AbstractMap.SimpleEntry<>("a", 1));
+        assert !map.containsKey("A");
+
+        assert map.entrySet().removeAll(Arrays.asList(new AbstractMap.SimpleEntry<>("b", 2), new AbstractMap.SimpleEntry<>("c", 0)));
+        assert map.size() == 2;
+
+        assert map.entrySet().retainAll(Arrays.asList(new AbstractMap.SimpleEntry<>("c", 3)));
+        assert map.size() == 1;
+        assert (Integer) map.get("c") == 3;
+        assert !map.entrySet().retainAll(Arrays.asList(new AbstractMap.SimpleEntry<>("C", 3)));
+
+        Map.Entry<String, Object> entry = map.entrySet().iterator().next();
+        assert "C".equals(entry.getKey());
+        entry.setValue(30);
+        assert (Integer) map.get("c") == 30;
+    }
+
+    @Test
+    public void testWeaklyConsistentIterators()
+    {
+        ConcurrentCaseInsensitiveMap<String, Object> map = new ConcurrentCaseInsensitiveMap<>();
+        for (int i=0; i < 100; i++)
+        {
+            map.put("Key" + i, i);
+        }
+
+        int seen = 0;
+        Iterator<Map.Entry<String, Object>> i = map.entrySet().iterator();
+        while (i.hasNext())
+        {
+            Map.Entry<String, Object> entry = i.next();
+            map.remove(entry.getKey().toUpperCase());     // no ConcurrentModificationException
+            map.put("Added" + seen, seen);
+            seen++;
+        }
+        assert seen >= 100;
+
+        for (String key : map.keySet())
+        {
+            assert key.startsWith("Added");
+            map.remove(key);
+        }
+        assert map.isEmpty();
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception
+    {
+        final ConcurrentMap<String, Integer> map = new ConcurrentCaseInsensitiveMap<>();
+        final int threads = 8;
+        final int increments = 5000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t=0; t < threads; t++)
+        {
+            final boolean upper = (t & 1) == 0;
+            Thread thread = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i=0; i < increments; i++)
+                        {
+                            String key = "Counter" + (i % 50);
+                            key = upper ? key.toUpperCase() : key.toLowerCase();     // same keys, different case
+                            while (true)
+                            {
+                                Integer old = map.putIfAbsent(key, 1);
+                                if (old == null || map.replace(key, old, old + 1))
+                                {
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        failed.set(true);
+                    }
+                }
+            };
+            workers.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : workers)
+        {
+            thread.join();
+        }
+
+        assert !failed.get();
+        assert map.size() == 50;
+        int total = 0;
+        for (int i=0; i < 50; i++)
+        {
+            total += map.get("counter" + i);
+        }
+        assert total == threads * increments;
+    }
+}
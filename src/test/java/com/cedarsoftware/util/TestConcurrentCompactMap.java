@@ -0,0 +1,254 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestConcurrentCompactMap
+{
+    @Test
+    public void testSimpleCases()
+    {
+        ConcurrentCompactMap<String, Object> map = new ConcurrentCompactMap<>();
+        assert map.isEmpty();
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.EMPTY;
+        assert map.get("a") == null;
+        assert map.remove("a") == null;
+
+        assert map.put("a", 1) == null;
+        assert map.put("b", 2) == null;
+        assert (Integer) map.put("a", 11) == 1;
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        assert map.size() == 2;
+        assert map.containsKey("b");
+        assert map.containsValue(11);
+        assert !map.containsValue(1);
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("a", 11);
+        expected.put("b", 2);
+        assert map.equals(expected);
+        assert expected.equals(map);
+        assert map.hashCode() == expected.hashCode();
+
+        assert (Integer) map.remove("a") == 11;
+        assert (Integer) map.remove("b") == 2;
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.EMPTY;
+
+        try
+        {
+            map.put(null, 1);
+            fail();
+        }
+        catch (NullPointerException e) { }
+
+        try
+        {
+            map.put("a", null);
+            fail();
+        }
+        catch (NullPointerException e) { }
+
+        try
+        {
+            map.get(null);
+            fail();
+        }
+        catch (NullPointerException e) { }
+    }
+
+    @Test
+    public void testConcurrentMapOperations()
+    {
+        for (int size : new int[] {3, 100})
+        {   // Both the Object[] and the ConcurrentHashMap states
+            ConcurrentMap<String, Integer> map = new ConcurrentCompactMap<String, Integer>()
+            {
+                protected int compactSize() { return 10; }
+            };
+            for (int i=0; i < size; i++)
+            {
+                map.put("k" + i, i);
+            }
+
+            assert map.putIfAbsent("k1", 100) == 1;
+            assert map.get("k1") == 1;
+            assert map.putIfAbsent("new", 5) == null;
+            assert map.get("new") == 5;
+
+            assert map.replace("absent", 1) == null;
+            assert !map.containsKey("absent");
+            assert map.replace("k1", 10) == 1;
+            assert map.get("k1") == 10;
+
+            assert !map.replace("k1", 1, 20);
+            assert map.replace("k1", 10, 20);
+            assert map.get("k1") == 20;
+            assert !map.replace("absent", 1, 2);
+
+            assert !map.remove("k1", 10);
+            assert map.remove("k1", 20);
+            assert !map.containsKey("k1");
+            assert !map.remove("k1", 20);
+            assert map.size() == size;
+        }
+    }
+
+    @Test
+    public void testSwitchToConcurrentHashMap()
+    {
+        ConcurrentCompactMap<Integer, Integer> map = new ConcurrentCompactMap<>();
+        for (int i=0; i < map.compactSize(); i++)
+        {
+            map.put(i, i);
+        }
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        map.put(-1, -1);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+        assert map.size() == map.compactSize() + 1;
+        for (int i=0; i < map.compactSize(); i++)
+        {
+            assert map.get(i) == i;
+        }
+
+        ConcurrentCompactMap<Integer, Integer> copy = new ConcurrentCompactMap<>(map);
+        assert copy.equals(map);
+
+        map.remove(-1);
+        map.remove(0);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;     // one way
+        map.clear();
+        assert map.isEmpty();
+    }
+
+    @Test
+    public void testIteratorIsSnapshot()
+    {
+        ConcurrentCompactMap<String, Integer> map = new ConcurrentCompactMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+
+        List<String> seen = new ArrayList<>();
+        Iterator<Map.Entry<String, Integer>> i = map.entrySet().iterator();
+        try
+        {
+            i.remove();
+            fail();
+        }
+        catch (IllegalStateException e) { }
+
+        while (i.hasNext())
+        {
+            Map.Entry<String, Integer> entry = i.next();
+            seen.add(entry.getKey());
+            map.put("z" + entry.getKey(), 0);   // Not seen by this iterator
+            if (entry.getKey().equals("b"))
+            {
+                i.remove();
+            }
+            else
+            {
+                entry.setValue(entry.getValue() * 10);
+            }
+        }
+        assert seen.size() == 3;
+        assert map.size() == 5;
+        assert map.get("a") == 10;
+        assert !map.containsKey("b");
+        assert map.get("c") == 30;
+        assert map.entrySet().contains(new AbstractMap.SimpleEntry<>("c", 30));
+        assert map.entrySet().remove(new AbstractMap.SimpleEntry<>("c", 30));
+        assert !map.entrySet().remove(new AbstractMap.SimpleEntry<>("a", 1));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception
+    {
+        final ConcurrentCompactMap<String, Integer> map = new ConcurrentCompactMap<>();
+        final int threads = 8;
+        final int increments = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t=0; t < threads; t++)
+        {
+            final int id = t;
+            Thread thread = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i=0; i < increments; i++)
+                        {
+                            String key = "counter" + (i % 60);     // Crosses compactSize() while contended
+                            while (true)
+                            {
+                                Integer old = map.putIfAbsent(key, 1);
+                                if (old == null || map.replace(key, old, old + 1))
+                                {
+                                    break;
+                                }
+                            }
+                            map.put("thread" + id, i);
+                            if (map.get("thread" + id) == null)
+                            {
+                                failed.set(true);
+                            }
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        failed.set(true);
+                    }
+                }
+            };
+            workers.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : workers)
+        {
+            thread.join();
+        }
+
+        assert !failed.get();
+        int total = 0;
+        for (int i=0; i < 60; i++)
+        {
+            total += map.get("counter" + i);
+        }
+        assert total == threads * increments;
+        assert map.size() == 60 + threads;
+    }
+}
@@ -9,6 +9,7 @@ import java.math.BigInteger;
 import java.util.List;
 import java.util.*;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -554,6 +555,235 @@ public class TestDeepEquals
         assert one == two;
     }
 
+    @Test
+    public void testLargeCyclicGraph()
+    {
+        Link a = buildRing(20000);
+        Link b = buildRing(20000);
+        assertTrue(deepEquals(a, b));
+
+        Link x = b;
+        for (int i = 0; i < 12345; i++)
+        {
+            x = x.next;
+        }
+        x.value = -1;
+        assertFalse(deepEquals(a, b));
+    }
+
+    @Test
+    public void testHashCodeNotUsedToTrackVisited()
+    {
+        Link a = buildRing(100);
+        Link b = buildRing(100);
+        a.refs.add(new NoHash(a));
+        b.refs.add(new NoHash(b));
+        assertTrue(deepEquals(a, b));
+    }
+
+    @Test
+    public void testPrimitiveFields()
+    {
+        AllPrimitives a = new AllPrimitives();
+        AllPrimitives b = new AllPrimitives();
+        assertTrue(deepEquals(a, b));
+        assertEquals(deepHashCode(a), deepHashCode(b));
+
+        b.d = a.d + 1e-17;      // within tolerance
+        b.f = a.f + 1e-8f;
+        assertTrue(deepEquals(a, b));
+
+        b = new AllPrimitives(); b.i++;
+        assertFalse(deepEquals(a, b));
+        b = new AllPrimitives(); b.l++;
+        assertFalse(deepEquals(a, b));
+        b = new AllPrimitives(); b.d += 0.001;
+        assertFalse(deepEquals(a, b));
+        b = new AllPrimitives(); b.f += 0.001f;
+        assertFalse(deepEquals(a, b));
+        b = new AllPrimitives(); b.z = !b.z;
+        assertFalse(deepEquals(a, b));
+        b = new AllPrimitives(); b.c++;
+        assertFalse(deepEquals(a, b));
+        b = new AllPrimitives(); b.s++;
+        assertFalse(deepEquals(a, b));
+        b = new AllPrimitives(); b.b++;
+        assertFalse(deepEquals(a, b));
+        b = new AllPrimitives(); b.name = null;
+        assertFalse(deepEquals(a, b));
+        assertFalse(deepEquals(b, a));
+    }
+
+    @Test
+    public void testHashOfRepeatedPrimitives()
+    {   // Equal values are counted once per graph, whether held in primitive fields, boxed, or in arrays
+        assertEquals(130, deepHashCode(new RepeatedPrimitives()));      // 5 + 'x'.hashCode() (120) + 5L
+        assertEquals(3, deepHashCode(Arrays.asList(new OneInt(3), new OneInt(3))));
+        assertEquals(deepHashCode(new int[] {4, 4, 4}), deepHashCode(new ThreeInts()));
+        assertEquals(4, deepHashCode(new ThreeInts()));
+        assertEquals(deepHashCode(new Object[] {5, 5, 5.0, "x", "x"}), deepHashCode(new RepeatedPrimitives()));
+    }
+
+    @Test
+    public void testPrimitiveArraysOfEachType()
+    {
+        assertTrue(deepEquals(new int[] {1, 2, 3}, new int[] {1, 2, 3}));
+        assertFalse(deepEquals(new int[] {1, 2, 3}, new int[] {1, 2, 4}));
+        assertFalse(deepEquals(new int[] {1, 2, 3}, new long[] {1, 2, 3}));
+        assertTrue(deepEquals(new long[] {5}, new long[] {5}));
+        assertFalse(deepEquals(new long[] {5}, new long[] {6}));
+        assertTrue(deepEquals(new double[] {1.0, 2.0}, new double[] {1.0, 2.0 + 1e-17}));
+        assertFalse(deepEquals(new double[] {1.0, 2.0}, new double[] {1.0, 2.001}));
+        assertTrue(deepEquals(new float[] {1.0f}, new float[] {1.0f + 1e-8f}));
+        assertFalse(deepEquals(new float[] {1.0f}, new float[] {1.01f}));
+        assertTrue(deepEquals(new boolean[] {true, false}, new boolean[] {true, false}));
+        assertFalse(deepEquals(new boolean[] {true, false}, new boolean[] {true, true}));
+        assertTrue(deepEquals(new char[] {'a'}, new char[] {'a'}));
+        assertFalse(deepEquals(new char[] {'a'}, new char[] {'b'}));
+        assertTrue(deepEquals(new short[] {7}, new short[] {7}));
+        assertFalse(deepEquals(new byte[] {7}, new byte[] {8}));
+        assertTrue(deepEquals(new int[][] {{1}, {2, 3}}, new int[][] {{1}, {2, 3}}));
+        assertFalse(deepEquals(new int[][] {{1}, {2, 3}}, new int[][] {{1}, {2, 4}}));
+    }
+
+    @Test
+    public void testParallel()
+    {
+        Map<String, Object> options = new HashMap<>();
+        options.put(DeepEquals.PARALLEL, true);
+
+        Link a = buildRing(20000);
+        Link b = buildRing(20000);
+        assertTrue(deepEquals(a, b, options));
+
+        List<Object> list1 = new ArrayList<>();
+        List<Object> list2 = new ArrayList<>();
+        Map<String, Object> map1 = new HashMap<>();
+        Map<String, Object> map2 = new HashMap<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            list1.add(new AllPrimitives());
+            list2.add(new AllPrimitives());
+            map1.put("k" + i, new Object[] {i, new AllPrimitives()});
+            map2.put("k" + i, new Object[] {i, new AllPrimitives()});
+        }
+        Object[] graph1 = {a, list1, map1};
+        Object[] graph2 = {b, list2, map2};
+        assertTrue(deepEquals(graph1, graph2, options));
+
+        ((AllPrimitives) list2.get(4321)).i = -1;
+        assertFalse(deepEquals(graph1, graph2, options));
+        ((AllPrimitives) list2.get(4321)).i = 1;
+        ((AllPrimitives) ((Object[]) map2.get("k2999"))[1]).name = "other";
+        assertFalse(deepEquals(graph1, graph2, options));
+        assertFalse(deepEquals(graph1, graph2));
+    }
+
+    @Test
+    public void testParallelOwnPool()
+    {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            Map<String, Object> options = new HashMap<>();
+            options.put(DeepEquals.PARALLEL, pool);
+            for (int n : new int[] {2, 100, 30000})
+            {
+                Link a = buildRing(n);
+                Link b = buildRing(n);
+                assertTrue(deepEquals(a, b, options));
+                b.next.value = -1;
+                assertFalse(deepEquals(a, b, options));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private static Link buildRing(int count)
+    {   // Each Link points to the next, the last one back to the first, and all of them to the first and an empty List
+        Link first = new Link(0);
+        Link last = first;
+        for (int i = 1; i < count; i++)
+        {
+            Link link = new Link(i);
+            link.refs.add(first);
+            last.next = link;
+            last = link;
+        }
+        last.next = first;
+        return first;
+    }
+
+    static class Link
+    {
+        int value;
+        Link next;
+        List<Object> refs = new ArrayList<>();
+        List<Object> empty = new ArrayList<>();
+
+        Link(int value)
+        {
+            this.value = value;
+        }
+    }
+
+    static class AllPrimitives
+    {
+        int i = 1;
+        long l = 2;
+        double d = 3.5;
+        float f = 4.5f;
+        boolean z = true;
+        char c = 'c';
+        short s = 6;
+        byte b = 7;
+        String name = "prims";
+    }
+
+    static class RepeatedPrimitives
+    {
+        int a = 5;
+        int b = 5;
+        double d = 5.0;
+        String s = "x";
+        String t = "x";
+    }
+
+    static class OneInt
+    {
+        int value;
+
+        OneInt(int value)
+        {
+            this.value = value;
+        }
+    }
+
+    static class ThreeInts
+    {
+        int x = 4;
+        int y = 4;
+        int z = 4;
+    }
+
+    static class NoHash
+    {
+        Link link;
+
+        NoHash(Link link)
+        {
+            this.link = link;
+        }
+
+        public int hashCode()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     static class DumbHash
     {
         String s;
@@ -0,0 +1,286 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestFlatCaseInsensitiveMap
+{
+    @Test
+    public void testCaseInsensitive()
+    {
+        Map<String, Object> map = new FlatCaseInsensitiveMap<>();
+        assert map.isEmpty();
+        assert map.get("a") == null;
+        assert map.put("Content-Type", "json") == null;
+        assert "json".equals(map.get("CONTENT-TYPE"));
+        assert map.containsKey("content-type");
+        assert "json".equals(map.put("content-TYPE", "xml"));
+        assert map.size() == 1;
+        assert "Content-Type".equals(map.keySet().iterator().next());     // original case retained
+        assert "xml".equals(map.remove("CONTENT-type"));
+        assert map.isEmpty();
+        assert map.remove("Content-Type") == null;
+    }
+
+    @Test
+    public void testNullsAndOtherKeys()
+    {
+        Map<Object, Object> map = new FlatCaseInsensitiveMap<>();
+        map.put(null, "null key");
+        map.put("nullValue", null);
+        map.put(16L, "long");
+        map.put(16, "int");
+        assert map.size() == 4;
+        assert "null key".equals(map.get(null));
+        assert map.containsKey(null);
+        assert map.containsKey("NULLVALUE");
+        assert map.get("NULLVALUE") == null;
+        assert map.containsValue(null);
+        assert "long".equals(map.get(16L));
+        assert "int".equals(map.get(16));
+        assert "null key".equals(map.remove(null));
+        assert !map.containsKey(null);
+        assert map.size() == 3;
+    }
+
+    @Test
+    public void testInsertionOrderAndGrowth()
+    {
+        FlatCaseInsensitiveMap<String, Integer> map = new FlatCaseInsensitiveMap<>();
+        for (int i=0; i < 1000; i++)
+        {
+            map.put("Key" + i, i);
+        }
+        assert map.size() == 1000;
+        for (int i=0; i < 1000; i++)
+        {
+            assert map.get("KEY" + i) == i;
+        }
+        for (int i=0; i < 1000; i += 2)
+        {
+            assert map.remove("key" + i) == i;
+        }
+        for (int i=1000; i < 1500; i++)
+        {   // fills the holes left by the removes
+            map.put("Key" + i, i);
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i=1; i < 1000; i += 2)
+        {
+            expected.add(i);
+        }
+        for (int i=1000; i < 1500; i++)
+        {
+            expected.add(i);
+        }
+        List<Integer> actual = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : map.entrySet())
+        {
+            assert entry.getKey().equals("Key" + entry.getValue());
+            actual.add(entry.getValue());
+        }
+        assert actual.equals(expected);
+        assert map.size() == 1000;
+    }
+
+    @Test
+    public void testSmallInitialCapacity()
+    {   // Full with no removed entries: must grow, even from 1 to 3 slots
+        for (int capacity=0; capacity < 5; capacity++)
+        {
+            FlatCaseInsensitiveMap<String, Integer> map = new FlatCaseInsensitiveMap<>(capacity);
+            for (int i=0; i < 20; i++)
+            {
+                assert map.put("Key" + i, i) == null;
+            }
+            assert map.size() == 20;
+            for (int i=0; i < 20; i++)
+            {
+                assert map.get("KEY" + i) == i;
+            }
+        }
+
+        // One removed entry in a full table of 2: compacts in place, then grows
+        FlatCaseInsensitiveMap<String, Integer> map = new FlatCaseInsensitiveMap<>(2);
+        map.put("a", 1);
+        map.put("b", 2);
+        map.remove("a");
+        map.put("c", 3);
+        map.put("d", 4);
+        assert map.size() == 3;
+        assert new ArrayList<>(map.keySet()).equals(Arrays.asList("b", "c", "d"));
+    }
+
+    @Test
+    public void testSmallMapConstructor()
+    {
+        FlatCaseInsensitiveMap<String, Integer> map = new FlatCaseInsensitiveMap<>(Collections.singletonMap("a", 1));
+        assert map.put("b", 2) == null;
+        assert map.put("c", 3) == null;
+        assert map.size() == 3;
+        assert map.get("A") == 1;
+        assert map.get("B") == 2;
+        assert map.get("C") == 3;
+
+        Map<String, Integer> three = new LinkedHashMap<>();
+        three.put("x", 1);
+        three.put("y", 2);
+        three.put("z", 3);
+        map = new FlatCaseInsensitiveMap<>(three);
+        map.put("w", 4);
+        assert map.size() == 4;
+        assert map.containsKey("W");
+
+        map = new FlatCaseInsensitiveMap<>(new HashMap<String, Integer>());
+        map.put("a", 1);
+        assert map.get("A") == 1;
+    }
+
+    @Test
+    public void testMatchesLinkedHashMap()
+    {
+        Random random = new Random(42);
+        Map<String, Integer> flat = new FlatCaseInsensitiveMap<>();
+        Map<String, Integer> ci = new CaseInsensitiveMap<>();
+        for (int i=0; i < 100000; i++)
+        {
+            String key = "field" + random.nextInt(300);
+            if (random.nextBoolean())
+            {
+                key = key.toUpperCase();
+            }
+            int op = random.nextInt(10);
+            if (op < 5)
+            {
+                assert equal(flat.put(key, i), ci.put(key, i));
+            }
+            else if (op < 8)
+            {
+                assert equal(flat.remove(key), ci.remove(key));
+            }
+            else
+            {
+                assert equal(flat.get(key), ci.get(key));
+            }
+            assert flat.size() == ci.size();
+        }
+        assert flat.equals(ci);
+        assert ci.equals(flat);
+        assert flat.hashCode() == ci.hashCode();
+        assert new ArrayList<>(flat.keySet()).equals(new ArrayList<>(ci.keySet()));
+        assert new ArrayList<>(flat.values()).equals(new ArrayList<>(ci.values()));
+        flat.clear();
+        assert flat.isEmpty();
+        assert !flat.containsKey("field1");
+    }
+
+    @Test
+    public void testViews()
+    {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("One", 1);
+        source.put("Two", 2);
+        source.put("Three", 3);
+        Map<String, Object> map = new FlatCaseInsensitiveMap<>(source);
+        assert map.equals(source);
+        assert map.keySet().contains("ONE");
+        assert map.keySet().remove("two");
+        assert !map.keySet().remove("two");
+        assert map.values().contains(3);
+        assert map.entrySet().contains(new HashMap.SimpleEntry<String, Object>("three", 3));
+        assert !map.entrySet().remove(new HashMap.SimpleEntry<String, Object>("three", 4));
+        assert map.entrySet().remove(new HashMap.SimpleEntry<String, Object>("THREE", 3));
+        assert map.size() == 1;
+
+        Map.Entry<String, Object> entry = map.entrySet().iterator().next();
+        entry.setValue("uno");
+        assert "uno".equals(map.get("one"));
+        assert "{One=uno}".equals(map.toString());
+    }
+
+    @Test
+    public void testIterators()
+    {
+        Map<String, Object> map = new FlatCaseInsensitiveMap<>(4);
+        for (int i=0; i < 10; i++)
+        {
+            map.put("k" + i, i);
+        }
+
+        Iterator<String> i = map.keySet().iterator();
+        try
+        {
+            i.remove();
+            fail();
+        }
+        catch (IllegalStateException e) { }
+
+        List<String> kept = new ArrayList<>();
+        while (i.hasNext())
+        {
+            String key = i.next();
+            if (key.endsWith("3") || key.endsWith("9"))
+            {
+                kept.add(key);
+            }
+            else
+            {
+                i.remove();
+            }
+        }
+        assert kept.equals(new ArrayList<>(map.keySet()));
+        assert map.size() == 2;
+
+        Iterator<Object> values = map.values().iterator();
+        values.next();
+        map.put("new", 10);
+        try
+        {
+            values.next();
+            fail();
+        }
+        catch (ConcurrentModificationException e) { }
+
+        try
+        {
+            new FlatCaseInsensitiveMap<String, Object>(-1);
+            fail();
+        }
+        catch (IllegalArgumentException e) { }
+    }
+
+    private static boolean equal(Object a, Object b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,173 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestFrozenMap
+{
+    @Test
+    public void testCopyOfMatchesSource()
+    {
+        Random random = new Random(42);
+        for (int size : new int[] {0, 1, 2, 3, 7, 8, 9, 100, 1000})
+        {
+            Map<Object, Object> source = new LinkedHashMap<>();
+            for (int i=0; i < size; i++)
+            {
+                source.put(random.nextInt(4) == 0 ? (Object) (long) i : "key" + i, i % 5 == 0 ? null : i);
+            }
+            if (size > 2)
+            {
+                source.put(null, "null key");
+                source.put("Aa", 1);     // same hashCode() as "BB"
+                source.put("BB", 2);
+            }
+
+            FrozenMap<Object, Object> frozen = FrozenMap.copyOf(source);
+            assert !frozen.isCaseInsensitive();
+            assert frozen.size() == source.size();
+            assert frozen.equals(source);
+            assert source.equals(frozen);
+            assert frozen.hashCode() == source.hashCode();
+            assert frozen.entrySet().equals(source.entrySet());
+            assert Arrays.equals(frozen.keySet().toArray(), source.keySet().toArray());     // iteration order kept
+            assert Arrays.equals(frozen.values().toArray(), source.values().toArray());
+            for (Map.Entry<Object, Object> entry : source.entrySet())
+            {
+                assert frozen.containsKey(entry.getKey());
+                assert frozen.get(entry.getKey()) == entry.getValue();
+                assert frozen.containsValue(entry.getValue());
+            }
+            assert !frozen.containsKey("KEY1");
+            assert !frozen.containsKey("missing");
+            assert frozen.get(-1L) == null;
+            assert !frozen.containsValue("missing");
+            assert FrozenMap.copyOf(frozen) == frozen;
+        }
+    }
+
+    @Test
+    public void testCaseInsensitive()
+    {
+        CaseInsensitiveMap<String, Object> ci = new CaseInsensitiveMap<>();
+        ci.put("Content-Type", "json");
+        ci.put("TITLE", 1);
+        ci.put("Straße", 2);
+        FrozenMap<String, Object> frozen = ci.freeze();
+        assert frozen.isCaseInsensitive();
+        assert "json".equals(frozen.get("content-type"));
+        assert frozen.containsKey("tıtle");
+        assert frozen.containsKey("STRAßE");
+        assert !frozen.containsKey("Content_Type");
+        assert frozen.equals(ci);
+        assert ci.equals(frozen);
+        assert frozen.hashCode() == ci.hashCode();
+        assert frozen.keySet().iterator().next().equals("Content-Type");      // original case kept
+
+        Map<String, Object> other = new HashMap<>();
+        other.put("content-type", "json");
+        other.put("title", 1);
+        other.put("STRASSE", 2);
+        assert !frozen.equals(other);
+        other.remove("STRASSE");
+        other.put("straße", 2);
+        assert frozen.equals(other);
+
+        CompactMap<String, Object> compact = new CompactCILinkedMap<>();
+        compact.putAll(ci);
+        assert compact.freeze().isCaseInsensitive();
+        assert compact.freeze().equals(frozen);
+        assert !new CompactMap<String, Object>().freeze().isCaseInsensitive();
+
+        FlatCaseInsensitiveMap<String, Object> flat = new FlatCaseInsensitiveMap<>(ci);
+        assert FrozenMap.copyOf(flat).containsKey("TITLE");
+        assert !FrozenMap.copyOf(new HashMap<>(ci)).containsKey("title");
+    }
+
+    @Test
+    public void testCompactMapTiers()
+    {
+        CompactMap<String, Object> compact = new CompactMap<>();
+        CompactMap<String, Object> linked = new CompactLinkedMap<>();
+        assert compact.freeze().isEmpty();
+        for (int i=0; i <= compact.compactSize() + 1; i++)
+        {
+            FrozenMap<String, Object> frozen = compact.freeze();
+            assert frozen.equals(compact);
+            assert frozen.keySet().equals(compact.keySet());
+            assert Arrays.equals(linked.freeze().keySet().toArray(), linked.keySet().toArray());
+            compact.put("field" + i, i);
+            linked.put("field" + i, i);
+        }
+
+        CompactMap<String, Object> sorted = new CompactSortedMap<>();
+        sorted.put("c", 3);
+        sorted.put("a", 1);
+        sorted.put("b", 2);
+        assert Arrays.equals(sorted.freeze().keySet().toArray(), new Object[] {"a", "b", "c"});
+
+        Map<String, Object> tree = new CaseInsensitiveMap<>(new TreeMap<String, Object>());
+        tree.put("b", 2);
+        tree.put("A", 1);
+        assert Arrays.equals(FrozenMap.copyOf(tree).keySet().toArray(), new Object[] {"A", "b"});
+    }
+
+    @Test
+    public void testReadOnly()
+    {
+        Map<String, Object> source = new LinkedHashMap<>();
+        source.put("a", 1);
+        source.put("b", 2);
+        FrozenMap<String, Object> frozen = FrozenMap.copyOf(source);
+        source.put("c", 3);
+        assert frozen.size() == 2;      // a snapshot, not a view
+
+        try { frozen.put("c", 3); fail(); } catch (UnsupportedOperationException e) { }
+        try { frozen.putAll(source); fail(); } catch (UnsupportedOperationException e) { }
+        try { frozen.remove("a"); fail(); } catch (UnsupportedOperationException e) { }
+        try { frozen.clear(); fail(); } catch (UnsupportedOperationException e) { }
+        try { frozen.keySet().remove("a"); fail(); } catch (UnsupportedOperationException e) { }
+        try { frozen.values().clear(); fail(); } catch (UnsupportedOperationException e) { }
+        try { frozen.entrySet().iterator().next().setValue(5); fail(); } catch (UnsupportedOperationException e) { }
+        try { frozen.keySet().retainAll(Collections.singleton("a")); fail(); } catch (UnsupportedOperationException e) { }
+
+        Iterator<Map.Entry<String, Object>> i = frozen.entrySet().iterator();
+        Map.Entry<String, Object> entry = i.next();
+        try { i.remove(); fail(); } catch (UnsupportedOperationException e) { }
+        assert entry.equals(new java.util.AbstractMap.SimpleEntry<>("a", 1));
+        assert "a=1".equals(entry.toString());
+        assert frozen.entrySet().contains(entry);
+        i.next();
+        try { i.next(); fail(); } catch (NoSuchElementException e) { }
+        assert frozen.size() == 2;
+        assert "{a=1, b=2}".equals(frozen.toString());
+    }
+}
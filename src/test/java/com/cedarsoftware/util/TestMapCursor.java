@@ -0,0 +1,283 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestMapCursor
+{
+    @Test
+    public void testAllTiers()
+    {
+        CompactMap<String, Object> map = new CompactMap<String, Object>()
+        {
+            protected String getSingleValueKey() { return "id"; }
+            protected int compactSize() { return 10; }
+        };
+        MapCursor<String, Object> cursor = new MapCursor<>();
+
+        assert !cursor.reset(map).advance();
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.EMPTY;
+
+        map.put("id", 7);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.OBJECT;
+        assert walk(cursor.reset(map)).equals(map);
+
+        map.clear();
+        map.put("a", 1);
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ENTRY;
+        assert walk(cursor.reset(map)).equals(map);
+
+        for (int i=0; i < 10; i++)
+        {
+            map.put("k" + i, i);
+            assert walk(cursor.reset(map)).equals(map);
+        }
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.MAP;
+
+        map.clear();
+        for (int i=0; i < 5; i++)
+        {
+            map.put("k" + i, i);
+        }
+        assert map.getLogicalValueType() == CompactMap.LogicalValueType.ARRAY;
+        cursor.reset(map);
+        int i = 0;
+        while (cursor.advance())
+        {   // Object[] storage is walked in insertion order
+            assert cursor.key().equals("k" + i);
+            assert cursor.value().equals(i);
+            i++;
+        }
+        assert i == 5;
+    }
+
+    @Test
+    public void testSortedAndCaseInsensitive()
+    {
+        CompactMap<String, Object> sorted = new CompactSortedMap<>();
+        CompactMap<String, Object> ci = new CompactCILinkedMap<>();
+        for (String key : new String[] {"c", "A", "b"})
+        {
+            sorted.put(key, key);
+            ci.put(key, key);
+        }
+        ci.put("a", "lower");
+
+        MapCursor<String, Object> cursor = sorted.cursor();
+        StringBuilder keys = new StringBuilder();
+        while (cursor.advance())
+        {
+            keys.append(cursor.key());
+        }
+        assert "Abc".equals(keys.toString());
+
+        Map<String, Object> walked = walk(ci.cursor());
+        assert walked.size() == 3;
+        assert "lower".equals(walked.get("A"));
+    }
+
+    @Test
+    public void testOtherMaps()
+    {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("x", 1);
+        map.put("y", 2);
+        MapCursor<String, Object> cursor = new MapCursor<>(map);
+        assert cursor.advance();
+        assert "x".equals(cursor.key());
+        assert cursor.advance();
+        assert "y".equals(cursor.key());
+        assert (Integer) cursor.value() == 2;
+        assert !cursor.advance();
+
+        assert !cursor.reset(null).advance();
+        assert !cursor.reset(new HashMap<String, Object>()).advance();
+    }
+
+    @Test
+    public void testNotPositioned()
+    {
+        CompactMap<String, Object> map = new CompactMap<>();
+        map.put("a", 1);
+        MapCursor<String, Object> cursor = map.cursor();
+        try
+        {
+            cursor.key();
+            fail();
+        }
+        catch (NoSuchElementException e) { }
+
+        assert cursor.advance();
+        assert !cursor.advance();
+        try
+        {
+            cursor.value();
+            fail();
+        }
+        catch (NoSuchElementException e) { }
+        assert !cursor.advance();
+    }
+
+    @Test
+    public void testModifiedWhileWalking()
+    {
+        CompactMap<String, Object> map = new CompactMap<>();
+        for (int i=0; i < 5; i++)
+        {
+            map.put("k" + i, i);
+        }
+
+        MapCursor<String, Object> cursor = map.cursor();
+        assert cursor.advance();
+        map.put("k0", "replaced");      // value replacement is allowed
+        assert cursor.advance();
+        assert "k1".equals(cursor.key());
+        map.put("new", 5);
+        try
+        {
+            cursor.advance();
+            fail();
+        }
+        catch (ConcurrentModificationException e) { }
+
+        cursor.reset(map);
+        assert cursor.advance();
+        map.remove("k3");
+        try
+        {
+            cursor.advance();
+            fail();
+        }
+        catch (ConcurrentModificationException e) { }
+
+        CompactMap<String, Object> single = new CompactMap<>();
+        single.put("a", 1);
+        cursor.reset(single);
+        single.remove("a");
+        try
+        {
+            cursor.advance();
+            fail();
+        }
+        catch (ConcurrentModificationException e) { }
+
+        // Remove then add a key: same Object[] and same count, but the entries have moved
+        CompactMap<String, Object> six = new CompactMap<>();
+        for (int i=0; i < 6; i++)
+        {
+            six.put("k" + i, i);
+        }
+        cursor.reset(six);
+        assert cursor.advance();
+        assert cursor.advance();
+        six.remove("k0");
+        six.put("zz", 99);
+        try
+        {
+            cursor.advance();
+            fail();
+        }
+        catch (ConcurrentModificationException e) { }
+
+        // Remove an entry that was visited, then add it back (it moves to the end)
+        cursor.reset(six);
+        assert cursor.advance();
+        assert cursor.advance();
+        Object saved = six.remove(cursor.key());
+        six.put(cursor.key(), saved);
+        try
+        {
+            cursor.advance();
+            fail();
+        }
+        catch (ConcurrentModificationException e) { }
+
+        // Changes after the entries visited do not disturb the walk
+        cursor.reset(six);
+        assert cursor.advance();
+        String first = cursor.key();
+        six.remove("zz");
+        six.put("yy", 98);
+        Map<String, Object> rest = walk(cursor);
+        assert rest.size() == 5 && !rest.containsKey(first) && rest.containsKey("yy");
+
+        // Key order (binary searched) storage: an insert before the entries visited moves them
+        CompactMap<String, Object> sorted = new CompactSortedMap<>();
+        for (int i=1; i < 6; i++)
+        {
+            sorted.put("k" + i, i);
+        }
+        cursor.reset(sorted);
+        assert cursor.advance();
+        assert cursor.advance();
+        sorted.remove("k5");
+        sorted.put("k0", 0);
+        try
+        {
+            cursor.advance();
+            fail();
+        }
+        catch (ConcurrentModificationException e) { }
+
+        // Replace the single entry with another key before walking it: the walk sees the current entry
+        single.put("a", 1);
+        cursor.reset(single);
+        single.remove("a");
+        single.put("b", 2);
+        assert cursor.advance();
+        assert "b".equals(cursor.key());
+        assert !cursor.advance();
+
+        // Backing Map storage
+        CompactMap<String, Object> big = new CompactMap<>();
+        for (int i=0; i < 100; i++)
+        {
+            big.put("k" + i, i);
+        }
+        cursor.reset(big);
+        assert cursor.advance();
+        big.put("k5", "replaced");      // value replacement is allowed
+        assert cursor.advance();
+        big.remove("k7");
+        try
+        {
+            cursor.advance();
+            fail();
+        }
+        catch (ConcurrentModificationException e) { }
+    }
+
+    private static Map<String, Object> walk(MapCursor<String, Object> cursor)
+    {
+        Map<String, Object> walked = new HashMap<>();
+        while (cursor.advance())
+        {
+            walked.put(cursor.key(), cursor.value());
+        }
+        return walked;
+    }
+}
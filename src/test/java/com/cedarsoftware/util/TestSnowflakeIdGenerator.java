@@ -0,0 +1,286 @@
+package com.cedarsoftware.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.lang.System.currentTimeMillis;
+import static org.junit.Assert.fail;
+
+/**
+ * @author John DeRegnaucourt (jdereg@gmail.com)
+ *         <br>
+ *         Copyright (c) Cedar Software LLC
+ *         <br><br>
+ *         Licensed under the Apache License, Version 2.0 (the "License");
+ *         you may not use this file except in compliance with the License.
+ *         You may obtain a copy of the License at
+ *         <br><br>
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *         <br><br>
+ *         Unless required by applicable law or agreed to in writing, software
+ *         distributed under the License is distributed on an "AS IS" BASIS,
+ *         WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *         See the License for the specific language governing permissions and
+ *         limitations under the License.
+ */
+public class TestSnowflakeIdGenerator
+{
+    @Test
+    public void testDefaultLayout()
+    {
+        SnowflakeIdGenerator gen = new SnowflakeIdGenerator(1023);
+        assert gen.getEpoch() == SnowflakeIdGenerator.DEFAULT_EPOCH;
+        assert gen.getTimestampBits() == 41;
+        assert gen.getNodeBits() == 10;
+        assert gen.getSequenceBits() == 12;
+        assert gen.getNodeId() == 1023;
+
+        long start = currentTimeMillis();
+        long id = gen.nextId();
+        long done = currentTimeMillis();
+        assert id > 0;
+        assert gen.getNodeId(id) == 1023;
+        assert gen.getTimestamp(id) >= start && gen.getTimestamp(id) <= done;
+        assert gen.getDate(id).getTime() == gen.getTimestamp(id);
+        assert gen.getSequence(id) < 4096;
+    }
+
+    @Test
+    public void testStrictlyIncreasing()
+    {
+        SnowflakeIdGenerator gen = new SnowflakeIdGenerator(5);
+        long start = currentTimeMillis();
+        long prev = gen.nextId();
+        for (int i=0; i < 200000; i++)
+        {   // 4,096 per millisecond: runs through many sequence roll-overs
+            long id = gen.nextId();
+            assert id > prev;
+            assert gen.getNodeId(id) == 5;
+            assert gen.getTimestamp(id) >= gen.getTimestamp(prev);
+            assert gen.getTimestamp(id) != gen.getTimestamp(prev) || gen.getSequence(id) == gen.getSequence(prev) + 1;
+            prev = id;
+        }
+        assert gen.getTimestamp(prev) >= start + 200000 / 4096;     // at most 4,096 IDs in a millisecond
+        assert gen.getTimestamp(prev) <= currentTimeMillis();
+    }
+
+    @Test
+    public void testCustomLayout()
+    {
+        long epoch = currentTimeMillis() - 1000;
+        SnowflakeIdGenerator gen = new SnowflakeIdGenerator(epoch, 35, 20, 8, 1000000);
+        long id = gen.nextId();
+        assert id > 0;
+        assert gen.getNodeId(id) == 1000000;
+        assert gen.getTimestamp(id) >= epoch + 1000 && gen.getTimestamp(id) <= currentTimeMillis();
+        assert id >>> 28 < 10000;      // about 1,000 milliseconds since the epoch
+
+        // Nodes do not collide: same time and sequence, different node id
+        Set<Long> ids = new HashSet<>();
+        for (int node=0; node < 300; node++)
+        {
+            SnowflakeIdGenerator g = new SnowflakeIdGenerator(epoch, 35, 20, 8, node);
+            for (int i=0; i < 100; i++)
+            {
+                long x = g.nextId();
+                assert g.getNodeId(x) == node;
+                assert ids.add(x);
+            }
+        }
+    }
+
+    @Test
+    public void testFullWidth()
+    {   // No node bits, and all 63 bits used
+        SnowflakeIdGenerator gen = new SnowflakeIdGenerator(0, 42, 0, 21, 0);
+        long id = gen.nextId();
+        assert id > 0;
+        assert gen.getNodeId(id) == 0;
+        assert gen.getTimestamp(id) <= currentTimeMillis();
+        assert gen.nextId() > id;
+    }
+
+    @Test
+    public void testBadLayout()
+    {
+        badLayout(0, 0, 10, 12, 0);
+        badLayout(0, 41, -1, 12, 0);
+        badLayout(0, 41, 10, 0, 0);
+        badLayout(0, 42, 10, 12, 0);
+        badLayout(0, 41, 10, 12, 1024);
+        badLayout(0, 41, 10, 12, -1);
+        badLayout(currentTimeMillis() + 100000, 41, 10, 12, 0);
+        new SnowflakeIdGenerator(0, 41, 10, 12, 1023);
+    }
+
+    @Test
+    public void testTimestampBitsUsedUp()
+    {
+        SnowflakeIdGenerator gen = new SnowflakeIdGenerator(SnowflakeIdGenerator.DEFAULT_EPOCH, 20, 10, 12, 1);
+        try
+        {
+            gen.nextId();
+            fail();
+        }
+        catch (IllegalStateException expected)
+        { }
+    }
+
+    @Test
+    public void testClockRegression()
+    {
+        final long[] clock = {1000000};
+        SnowflakeIdGenerator gen = new SnowflakeIdGenerator(0, 41, 10, 12, 3)
+        {
+            long millis()
+            {
+                return clock[0];
+            }
+        };
+        long id1 = gen.nextId();
+        assert gen.getTimestamp(id1) == 1000000;
+
+        // Clock moves back 6 seconds, more than the 5,000 ms allowed: fails rather than wait
+        clock[0] -= 6000;
+        try
+        {
+            gen.nextId();
+            fail();
+        }
+        catch (IllegalStateException expected)
+        { }
+
+        // Clock caught up
+        clock[0] = 1000000;
+        long id2 = gen.nextId();
+        assert id2 > id1;
+        assert gen.getTimestamp(id2) == 1000000;
+        assert gen.getSequence(id2) == gen.getSequence(id1) + 1;
+    }
+
+    @Test
+    public void testSmallClockRegressionWaits()
+    {
+        final long real = currentTimeMillis();
+        final long[] offset = {0};
+        SnowflakeIdGenerator gen = new SnowflakeIdGenerator(0, 41, 10, 12, 3)
+        {
+            long millis()
+            {
+                return System.currentTimeMillis() - offset[0];
+            }
+        };
+        long id1 = gen.nextId();
+        offset[0] = 20;     // Clock moves back 20 ms: waits until it passes the time of id1
+        long id2 = gen.nextId();
+        assert id2 > id1;
+        assert gen.getTimestamp(id2) >= gen.getTimestamp(id1);
+        assert currentTimeMillis() - 20 >= gen.getTimestamp(id1);
+        assert gen.getTimestamp(id1) >= real;
+    }
+
+    @Test
+    public void testManyThreads() throws Exception
+    {
+        final SnowflakeIdGenerator gen = new SnowflakeIdGenerator(77);
+        final int threads = 16;
+        final int perThread = 20000;
+        final long[][] ids = new long[threads][perThread];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t=0; t < threads; t++)
+        {
+            final long[] mine = ids[t];
+            futures.add(executor.submit(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        e.printStackTrace();
+                    }
+                    for (int i=0; i < perThread; i++)
+                    {
+                        mine[i] = gen.nextId();
+                    }
+                }
+            }));
+        }
+        startLatch.countDown();
+        for (Future<?> future : futures)
+        {
+            future.get();
+        }
+        executor.shutdown();
+        long done = currentTimeMillis();
+
+        Set<Long> all = new HashSet<>(threads * perThread);
+        for (long[] mine : ids)
+        {
+            for (int i=0; i < perThread; i++)
+            {
+                assert i == 0 || mine[i] > mine[i - 1];
+                assert all.add(mine[i]);
+                assert gen.getTimestamp(mine[i]) <= done;
+                assert gen.getNodeId(mine[i]) == 77;
+            }
+        }
+    }
+
+    @Test
+    public void testFromEnvironment()
+    {
+        String saved = System.getProperty("JAVA_UTIL_NODEID");
+        try
+        {
+            System.setProperty("JAVA_UTIL_NODEID", "513");
+            SnowflakeIdGenerator gen = SnowflakeIdGenerator.fromEnvironment();
+            assert gen.getNodeId() == 513;
+            assert gen.getNodeId(gen.nextId()) == 513;
+
+            System.setProperty("JAVA_UTIL_NODEID", "abc");
+            try
+            {
+                SnowflakeIdGenerator.fromEnvironment();
+                fail();
+            }
+            catch (IllegalStateException expected)
+            { }
+        }
+        finally
+        {
+            if (saved == null)
+            {
+                System.clearProperty("JAVA_UTIL_NODEID");
+            }
+            else
+            {
+                System.setProperty("JAVA_UTIL_NODEID", saved);
+            }
+        }
+    }
+
+    private static void badLayout(long epoch, int timestampBits, int nodeBits, int sequenceBits, long nodeId)
+    {
+        try
+        {
+            new SnowflakeIdGenerator(epoch, timestampBits, nodeBits, sequenceBits, nodeId);
+            fail();
+        }
+        catch (IllegalArgumentException expected)
+        { }
+    }
+}
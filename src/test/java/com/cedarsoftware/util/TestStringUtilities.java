@@ -350,5 +350,41 @@ public class TestStringUtilities
 
         assert hashCodeIgnoreCase(null) == 0;
         assert hashCodeIgnoreCase("") == 0;
+        assert hashCodeIgnoreCase("content-type") == "content-type".hashCode();
+        assert hashCodeIgnoreCase("Content-Type") == "content-type".hashCode();
+    }
+
+    @Test
+    public void testEqualsIgnoreCaseMatchesJdk()
+    {
+        String[] strings = {"", "a", "A", "@", "`", "[", "{", "Content-Type", "CONTENT-TYPE", "content-typf", "content_type",
+                "\u00e9t\u00e9", "\u00c9T\u00c9", "Stra\u00dfe", "STRASSE", "k", "K", "\u212a", "i", "I", "\u0131", "\u0130",
+                "s", "\u017f", "\u03c3", "\u03a3", "\u03c2", "abc\u212a", "ABCk", "\ud801\udc00", "\ud801\udc28"};
+        for (String s1 : strings)
+        {
+            for (String s2 : strings)
+            {
+                boolean expected = s1.equalsIgnoreCase(s2);
+                assert StringUtilities.equalsIgnoreCase(s1, s2) == expected : s1 + " vs " + s2;
+                assert StringUtilities.equalsIgnoreCase(new String(s1), s2) == expected;
+                if (expected)
+                {   // hash consistent with equals
+                    assert hashCodeIgnoreCase(s1) == hashCodeIgnoreCase(s2) : s1 + " vs " + s2;
+                }
+            }
+        }
+
+        for (char c1 = 0; c1 < 0x80; c1++)
+        {
+            for (char c2 = 0; c2 < 0x80; c2++)
+            {
+                String s1 = "x" + c1;
+                String s2 = "x" + c2;
+                assert StringUtilities.equalsIgnoreCase(s1, s2) == s1.equalsIgnoreCase(s2);
+            }
+        }
+        assert StringUtilities.equalsIgnoreCase(null, null);
+        assert !StringUtilities.equalsIgnoreCase("a", null);
+        assert !StringUtilities.equalsIgnoreCase(null, "a");
     }
 }
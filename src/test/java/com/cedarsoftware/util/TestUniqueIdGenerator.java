@@ -2,19 +2,27 @@ package com.cedarsoftware.util;
 
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.cedarsoftware.util.UniqueIdGenerator.*;
 import static java.lang.Math.abs;
 import static java.lang.System.currentTimeMillis;
 import static java.lang.System.out;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * @author John DeRegnaucourt (jdereg@gmail.com)
@@ -271,6 +279,239 @@ public class TestUniqueIdGenerator
         executor.shutdown();
     }
 
+    @Test
+    public void testManyThreads() throws Exception
+    {
+        final int threads = 16;
+        final int perThread = 20000;
+        final long[][] ids = new long[threads][perThread];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t=0; t < threads; t++)
+        {
+            final long[] mine = ids[t];
+            futures.add(executor.submit(new Runnable()
+            {
+                public void run()
+                {
+                    await(startLatch);
+                    for (int i=0; i < perThread; i++)
+                    {
+                        mine[i] = getUniqueId19();
+                    }
+                }
+            }));
+        }
+        startLatch.countDown();
+        for (Future<?> future : futures)
+        {
+            future.get();
+        }
+        executor.shutdown();
+        long done = currentTimeMillis();
+
+        Set<Long> all = new HashSet<>(threads * perThread);
+        for (long[] mine : ids)
+        {
+            for (int i=0; i < perThread; i++)
+            {
+                assert i == 0 || mine[i] > mine[i - 1];     // strictly increasing within each thread
+                assert all.add(mine[i]);                   // unique across threads
+                assert getDate19(mine[i]).getTime() <= done;   // time within the ID never ahead of the clock
+            }
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception
+    {
+        long before = getUniqueId19();
+        long[] ids = getUniqueIds19(25000);      // spans at least 3 milliseconds
+        long after = getUniqueId19();
+        assert ids.length == 25000;
+        assert ids[0] > before;
+        assert after > ids[ids.length - 1];
+        assert getDate19(ids[ids.length - 1]).getTime() <= currentTimeMillis();
+        for (int i=1; i < ids.length; i++)
+        {
+            assert ids[i] == ids[i - 1] + 100;      // contiguous
+        }
+        assert ids[0] % 100 == before % 100;        // same cluster id
+
+        long[] ids18 = getUniqueIds(1500);
+        assert ids18.length == 1500;
+        assert ids18[1499] - ids18[0] == 1499 * 100;
+        assert String.valueOf(ids18[0]).length() == 18;
+        assert getDate(ids18[1499]).getTime() <= currentTimeMillis();
+        assert getUniqueId() > ids18[1499];
+        assert getUniqueIds19(1).length == 1;
+
+        try
+        {
+            getUniqueIds19(0);
+            fail();
+        }
+        catch (IllegalArgumentException e) { }
+    }
+
+    @Test
+    public void testBatchesAndSinglesInterleaved() throws Exception
+    {
+        final int threads = 8;
+        final long[][] batches = new long[threads][];
+        final long[][] singles = new long[threads][1000];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t=0; t < threads; t++)
+        {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable()
+            {
+                public void run()
+                {
+                    await(startLatch);
+                    List<Long> mine = new ArrayList<>();
+                    for (int i=0; i < 1000; i++)
+                    {
+                        singles[thread][i] = getUniqueId19();
+                        if (i % 100 == 0)
+                        {
+                            for (long id : getUniqueIds19(1 + i))
+                            {
+                                mine.add(id);
+                            }
+                        }
+                    }
+                    batches[thread] = new long[mine.size()];
+                    for (int i=0; i < mine.size(); i++)
+                    {
+                        batches[thread][i] = mine.get(i);
+                    }
+                }
+            }));
+        }
+        startLatch.countDown();
+        for (Future<?> future : futures)
+        {
+            future.get();
+        }
+        executor.shutdown();
+
+        Set<Long> all = new HashSet<>();
+        for (int t=0; t < threads; t++)
+        {
+            for (long id : singles[t])
+            {
+                assert all.add(id);
+            }
+            for (long id : batches[t])
+            {
+                assert all.add(id);
+            }
+        }
+    }
+
+    @Test
+    public void testSharded() throws Exception
+    {
+        final int threads = 16;
+        final int perThread = 20000;
+        final long[][] sharded = new long[threads][perThread];
+        final long[][] plain = new long[threads][perThread / 10];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = currentTimeMillis();
+        for (int t=0; t < threads; t++)
+        {
+            final int thread = t;
+            futures.add(executor.submit(new Runnable()
+            {
+                public void run()
+                {
+                    await(startLatch);
+                    for (int i=0; i < perThread; i++)
+                    {
+                        sharded[thread][i] = getShardedUniqueId19();
+                        if (i % 10 == 0)
+                        {   // Mixed with the shared counter
+                            plain[thread][i / 10] = getUniqueId19();
+                        }
+                    }
+                }
+            }));
+        }
+        startLatch.countDown();
+        for (Future<?> future : futures)
+        {
+            future.get();
+        }
+        executor.shutdown();
+        long done = currentTimeMillis();
+
+        Set<Long> all = new HashSet<>(threads * perThread * 11 / 10);
+        for (int t=0; t < threads; t++)
+        {
+            long[] mine = sharded[t];
+            for (int i=0; i < perThread; i++)
+            {
+                assert i == 0 || mine[i] > mine[i - 1];     // strictly increasing within each thread
+                assert all.add(mine[i]);                   // unique across threads
+                assert String.valueOf(mine[i]).length() == 19;
+                long time = getDate19(mine[i]).getTime();
+                assert time >= start && time <= done;
+            }
+            for (long id : plain[t])
+            {
+                assert all.add(id);
+            }
+        }
+    }
+
+    @Test
+    public void testClockRegression() throws Exception
+    {
+        Field field = UniqueIdGenerator.class.getDeclaredField("last19");
+        field.setAccessible(true);
+        AtomicLong state = (AtomicLong) field.get(null);
+        final long saved = state.get();
+        try
+        {   // IDs handed out 10 seconds ahead of the clock: too far to wait for
+            state.set(Math.max(saved, (currentTimeMillis() + 10000) * 10000));
+            try
+            {
+                getUniqueId19();
+                fail();
+            }
+            catch (IllegalStateException expected)
+            { }
+            try
+            {
+                getUniqueIds19(5);
+                fail();
+            }
+            catch (IllegalStateException expected)
+            { }
+        }
+        finally
+        {   // Nothing was reserved
+            state.set(saved);
+        }
+
+        // IDs handed out 300 ms ahead of the clock: sleeps (rather than spins) until the clock gets there
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        boolean cpuTime = threadBean.isCurrentThreadCpuTimeSupported();
+        long ahead = currentTimeMillis() + 300;
+        state.set(Math.max(state.get(), ahead * 10000));
+        long cpuStart = cpuTime ? threadBean.getCurrentThreadCpuTime() : 0;
+        long id = getUniqueId19();
+        assert getDate19(id).getTime() >= ahead;
+        assert currentTimeMillis() >= getDate19(id).getTime();
+        assert !cpuTime || threadBean.getCurrentThreadCpuTime() - cpuStart < 150000000L;
+    }
+
     private void await(CountDownLatch latch)
     {
         try